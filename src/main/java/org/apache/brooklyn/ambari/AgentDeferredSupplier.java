@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import brooklyn.entity.Entity;
+import brooklyn.management.Task;
+import brooklyn.management.internal.BrooklynTaskTags;
+import brooklyn.util.task.DeferredSupplier;
+import brooklyn.util.task.Tasks;
+
+/**
+ * Agent config that depends on which agent is reading it, so it is resolved in the agent's own task, whose
+ * context entity is the agent.
+ */
+abstract class AgentDeferredSupplier<T> implements DeferredSupplier<T> {
+
+    protected final AmbariCluster cluster;
+
+    AgentDeferredSupplier(AmbariCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    @Override
+    public T get() {
+        Task<?> task = Tasks.current();
+        Entity agent = task == null ? null : BrooklynTaskTags.getContextEntity(task);
+        if (agent == null) {
+            throw new IllegalStateException(getClass().getSimpleName() + " must be resolved in an agent's task");
+        }
+        return get(agent);
+    }
+
+    protected abstract T get(Entity agent);
+}
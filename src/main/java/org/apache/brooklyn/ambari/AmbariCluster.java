@@ -21,6 +21,8 @@ package org.apache.brooklyn.ambari;
 import brooklyn.catalog.Catalog;
 import brooklyn.config.ConfigKey;
 import brooklyn.entity.Entity;
+import brooklyn.entity.annotation.Effector;
+import brooklyn.entity.annotation.EffectorParam;
 import brooklyn.entity.basic.ConfigKeys;
 import brooklyn.entity.group.Cluster;
 import brooklyn.entity.group.DynamicCluster;
@@ -28,12 +30,21 @@ import brooklyn.entity.proxying.EntitySpec;
 import brooklyn.entity.proxying.ImplementedBy;
 import brooklyn.entity.trait.Startable;
 import brooklyn.event.AttributeSensor;
+import brooklyn.event.basic.BasicAttributeSensor;
 import brooklyn.event.basic.BasicConfigKey;
+import brooklyn.event.basic.PortAttributeSensorAndConfigKey;
 import brooklyn.event.basic.Sensors;
 import brooklyn.util.flags.SetFromFlag;
+import brooklyn.util.time.Duration;
+import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.TypeToken;
+import org.apache.brooklyn.ambari.agent.AmbariAgent;
+import org.apache.brooklyn.ambari.mirror.AmbariRepoMirror;
 import org.apache.brooklyn.ambari.server.AmbariServer;
 
+import java.util.List;
+import java.util.Map;
+
 @Catalog(name = "Ambari Cluster", description = "Ambari Cluster: Made up of one or more Ambari Server and One or more Ambari Agents")
 @ImplementedBy(AmbariClusterImpl.class)
 public interface AmbariCluster extends Entity, Startable {
@@ -49,10 +60,174 @@ public interface AmbariCluster extends Entity, Startable {
             .defaultValue(EntitySpec.create(AmbariServer.class))
             .build();
 
+    @SetFromFlag("hostRegistrationRateWindow")
+    ConfigKey<Duration> HOST_REGISTRATION_RATE_WINDOW = ConfigKeys.newConfigKey(Duration.class,
+            "ambaricluster.hostRegistrationRateWindow", "Window over which the host registration rate is measured", Duration.minutes(5));
+
+    @SetFromFlag("serverCount")
+    ConfigKey<Integer> SERVER_COUNT = ConfigKeys.newIntegerConfigKey(
+            "ambaricluster.servers.count", "Number of Ambari servers, each owning a shard of the agents and its own Hadoop cluster", 1);
+
+    @SetFromFlag("clusterName")
+    ConfigKey<String> CLUSTER_NAME = ConfigKeys.newStringConfigKey(
+            "ambaricluster.install.clusterName", "Name of the Hadoop cluster to install; with several servers, suffixed with each shard's number", "Cluster1");
+
+    @SetFromFlag("blueprintName")
+    ConfigKey<String> BLUEPRINT_NAME = ConfigKeys.newStringConfigKey(
+            "ambaricluster.install.blueprintName", "Name of the blueprint created from Ambari's recommendations", "mybp");
+
+    @SetFromFlag("services")
+    ConfigKey<List<String>> HADOOP_SERVICES = ConfigKeys.newConfigKey(new TypeToken<List<String>>() {},
+            "ambaricluster.install.services", "Services to install on the cluster", ImmutableList.of("ZOOKEEPER", "HDFS"));
+
+    @SetFromFlag("installQuorum")
+    ConfigKey<Double> INSTALL_QUORUM = ConfigKeys.newDoubleConfigKey(
+            "ambaricluster.install.quorum", "Fraction of the expected agent hosts that must register before the install starts", 0.8);
+
+    @SetFromFlag("installDeadline")
+    ConfigKey<Duration> INSTALL_DEADLINE = ConfigKeys.newConfigKey(Duration.class,
+            "ambaricluster.install.deadline", "Time after the last batch of agents is requested at which the install starts with whichever hosts have registered", Duration.minutes(15));
+
+    @SetFromFlag("installRetryDelay")
+    ConfigKey<Duration> INSTALL_RETRY_DELAY = ConfigKeys.newConfigKey(Duration.class,
+            "ambaricluster.install.retryDelay", "Time after a shard's install or scale-out fails at which it is tried again", Duration.ONE_MINUTE);
+
+    @SetFromFlag("installRequestTimeout")
+    ConfigKey<Duration> INSTALL_REQUEST_TIMEOUT = ConfigKeys.newConfigKey(Duration.class,
+            "ambaricluster.install.requestTimeout", "Time to wait for Ambari to finish installing a shard's cluster before it counts as failed", Duration.hours(2));
+
+    @SetFromFlag("repoMirrorSource")
+    ConfigKey<String> REPO_MIRROR_SOURCE = ConfigKeys.newStringConfigKey(
+            "ambaricluster.repoMirror.source", "If set, the cluster starts an AmbariRepoMirror seeded from this directory "
+                    + "or tarball and installs Ambari and HDP from it; see AmbariRepoMirror.MIRROR_SOURCE");
+
+    @SetFromFlag("repoMirrorUrl")
+    ConfigKey<String> REPO_MIRROR_URL = AmbariRepoMirror.REPO_MIRROR_URL;
+
+    @SetFromFlag("installBundleUrl")
+    ConfigKey<String> INSTALL_BUNDLE_URL = AmbariAgent.INSTALL_BUNDLE_URL;
+
+    @SetFromFlag("installBundleSha256")
+    ConfigKey<String> INSTALL_BUNDLE_SHA256 = AmbariAgent.INSTALL_BUNDLE_SHA256;
+
+    @SetFromFlag("installBundlePort")
+    PortAttributeSensorAndConfigKey INSTALL_BUNDLE_PORT = AmbariAgent.INSTALL_BUNDLE_PORT;
+
+    @SetFromFlag("installBundleSeeds")
+    ConfigKey<Integer> INSTALL_BUNDLE_SEEDS = ConfigKeys.newIntegerConfigKey(
+            "ambaricluster.installBundle.seeds", "Number of agents that copy the install bundle from Brooklyn; every "
+                    + "other agent fetches it from an earlier agent", 3);
+
+    @SetFromFlag("installBundleFanOut")
+    ConfigKey<Integer> INSTALL_BUNDLE_FAN_OUT = ConfigKeys.newIntegerConfigKey(
+            "ambaricluster.installBundle.fanOut", "Maximum number of agents each agent forwards the install bundle to", 4);
+
+    @SetFromFlag("hostGroupPlacement")
+    ConfigKey<String> HOST_GROUP_PLACEMENT = ConfigKeys.newStringConfigKey(
+            "ambaricluster.install.hostGroupPlacement", "How each Ambari server binds hosts to host groups; see "
+                    + "AmbariServer.HOST_GROUP_PLACEMENT", "RECOMMENDED");
+
+    @SetFromFlag("scaleOutHostGroup")
+    ConfigKey<String> SCALE_OUT_HOST_GROUP = ConfigKeys.newStringConfigKey(
+            "ambaricluster.scaleOut.hostGroup", "Blueprint host group that hosts registering after the install started join; "
+                    + "defaults to the host group bound to the most hosts at install");
+
+    @SetFromFlag("agentMaxConcurrency")
+    ConfigKey<Integer> AGENT_MAX_CONCURRENCY = ConfigKeys.newIntegerConfigKey(
+            "ambaricluster.agents.maxConcurrency", "Maximum number of agents provisioning or waiting to register at once", 50);
+
+    @SetFromFlag("agentBatchSize")
+    ConfigKey<Integer> AGENT_BATCH_SIZE = ConfigKeys.newIntegerConfigKey(
+            "ambaricluster.agents.batchSize", "Maximum number of agents provisioned in one batch", 10);
+
+    @SetFromFlag("agentBatchDelay")
+    ConfigKey<Duration> AGENT_BATCH_DELAY = ConfigKeys.newConfigKey(Duration.class,
+            "ambaricluster.agents.batchDelay", "Minimum delay between agent batches", Duration.seconds(5));
+
+    @SetFromFlag("agentRegistrationTargetLatency")
+    ConfigKey<Duration> AGENT_REGISTRATION_TARGET_LATENCY = ConfigKeys.newConfigKey(Duration.class,
+            "ambaricluster.agents.registrationTargetLatency", "Registration latency above which batches shrink and the delay between them grows", Duration.minutes(10));
+
+    @SetFromFlag("agentRegistrationTimeout")
+    ConfigKey<Duration> AGENT_REGISTRATION_TIMEOUT = ConfigKeys.newConfigKey(Duration.class,
+            "ambaricluster.agents.registrationTimeout", "Time after which an agent that has not registered no longer counts against the concurrency, "
+                    + "and after which the start fails if no agent has registered at all", Duration.minutes(30));
+
     AttributeSensor<AmbariServer> AMBARI_SERVER = Sensors.newSensor(
             AmbariServer.class, "ambaricluster.configservers", "Config servers");
 
+    AttributeSensor<AmbariRepoMirror> REPO_MIRROR = Sensors.newSensor(
+            AmbariRepoMirror.class, "ambaricluster.repoMirror", "Package mirror started for the cluster, if any");
+
+    AttributeSensor<List<AmbariServer>> AMBARI_SERVERS = new BasicAttributeSensor(
+            List.class, "ambaricluster.servers", "Ambari servers, one per shard");
+
+    AttributeSensor<Map<String, String>> AGENT_SHARDS = new BasicAttributeSensor(
+            Map.class, "ambaricluster.agents.shards", "Id of the server owning each agent's shard, by agent id");
+
     AttributeSensor<DynamicCluster> AMBARI_AGENT = Sensors.newSensor(
             DynamicCluster.class, "ambaricluster.configagents", "Config agents");
 
+    AttributeSensor<Integer> AGENTS_IN_FLIGHT = Sensors.newIntegerSensor(
+            "ambaricluster.agents.inFlight", "Number of agents provisioning or waiting to register");
+
+    AttributeSensor<Integer> AGENT_CURRENT_BATCH_SIZE = Sensors.newIntegerSensor(
+            "ambaricluster.agents.currentBatchSize", "Size of the next agent batch, adapted to registration latency");
+
+    AttributeSensor<Double> AGENT_REGISTRATION_LATENCY = Sensors.newDoubleSensor(
+            "ambaricluster.agents.registrationLatency", "Moving average time from an agent's batch starting to a host registering, in milliseconds");
+
+    AttributeSensor<Integer> REGISTERED_HOST_COUNT = Sensors.newIntegerSensor(
+            "ambaricluster.hosts.registered", "Number of hosts registered with the Ambari server");
+
+    AttributeSensor<Double> HOST_REGISTRATION_RATE = Sensors.newDoubleSensor(
+            "ambaricluster.hosts.registrationRate", "Hosts registered per minute over the rate window, as of the last registration or loss");
+
+    AttributeSensor<String> INSTALL_STATE = Sensors.newStringSensor(
+            "ambaricluster.install.state", "WAITING_FOR_HOSTS, INSTALLING, INSTALLED or FAILED");
+
+    AttributeSensor<Map<String, String>> SHARD_INSTALL_STATES = new BasicAttributeSensor(
+            Map.class, "ambaricluster.install.shardStates", "Install state of each shard's Hadoop cluster, by server id");
+
+    AttributeSensor<Integer> INSTALL_REQUIRED_HOSTS = Sensors.newIntegerSensor(
+            "ambaricluster.install.requiredHosts", "Number of hosts that must register with a server before its install starts ahead of the deadline");
+
+    AttributeSensor<Long> INSTALL_DEADLINE_TIME = Sensors.newLongSensor(
+            "ambaricluster.install.deadlineTime", "Time at which the install starts regardless of quorum, in UTC milliseconds; set once the last batch of agents is requested");
+
+    AttributeSensor<List<String>> INSTALLED_HOSTS = new BasicAttributeSensor(
+            List.class, "ambaricluster.install.hosts", "Hosts in the installed cluster, including those added after the install started");
+
+    AttributeSensor<Integer> CLUSTER_ALERTS_CRITICAL = Sensors.newIntegerSensor(
+            "ambaricluster.alerts.critical", "Critical alerts summed across shards");
+
+    AttributeSensor<Integer> CLUSTER_ALERTS_WARNING = Sensors.newIntegerSensor(
+            "ambaricluster.alerts.warning", "Warning alerts summed across shards");
+
+    AttributeSensor<Integer> CLUSTER_QUEUED_EFFECTORS = Sensors.newIntegerSensor(
+            "ambaricluster.effectors.queued", "Server effector calls waiting for their server to be up, summed across shards");
+
+    AttributeSensor<Long> CLUSTER_API_RETRIES = Sensors.newLongSensor(
+            "ambaricluster.api.retries", "Ambari API retries summed across shards");
+
+    AttributeSensor<Double> CLUSTER_REQUEST_PROGRESS_PERCENT = Sensors.newDoubleSensor(
+            "ambaricluster.request.progressPercent", "Progress of each shard's most recently tracked Ambari request, averaged across shards");
+
+    AttributeSensor<Double> CLUSTER_CPU_PERCENT = Sensors.newDoubleSensor(
+            "ambaricluster.cpu.percent", "Mean across hosts of each host's recent average CPU utilisation");
+
+    AttributeSensor<Double> CLUSTER_CPU_PERCENT_MAX = Sensors.newDoubleSensor(
+            "ambaricluster.cpu.percent.max", "Highest recent average CPU utilisation of any host");
+
+    AttributeSensor<Double> CLUSTER_MEMORY_USED_PERCENT = Sensors.newDoubleSensor(
+            "ambaricluster.memory.usedPercent", "Mean across hosts of each host's recent average memory used");
+
+    AttributeSensor<Double> CLUSTER_DISK_USED_PERCENT = Sensors.newDoubleSensor(
+            "ambaricluster.disk.usedPercent", "Mean across hosts of each host's recent average disk used");
+
+    AttributeSensor<Double> CLUSTER_DISK_USED_PERCENT_MAX = Sensors.newDoubleSensor(
+            "ambaricluster.disk.usedPercent.max", "Highest recent average disk used of any host");
+
+    @Effector(description = "Changes the number of Ambari servers, moving the agents whose shard changes to their new server")
+    public void resizeShards(@EffectorParam(name = "serverCount", description = "Number of Ambari servers") Integer serverCount);
 }
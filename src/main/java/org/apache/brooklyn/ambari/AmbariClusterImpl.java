@@ -18,97 +18,859 @@
  */
 package org.apache.brooklyn.ambari;
 
+import brooklyn.enricher.Enrichers;
+import brooklyn.entity.Entity;
+import brooklyn.entity.basic.AbstractGroup;
 import brooklyn.entity.basic.BasicStartableImpl;
+import brooklyn.entity.basic.Entities;
+import brooklyn.entity.basic.EntityLocal;
 import brooklyn.entity.basic.SoftwareProcess;
 import brooklyn.entity.group.DynamicCluster;
 import brooklyn.entity.proxying.EntitySpec;
-import brooklyn.entity.software.ssh.SshCommandSensor;
+import brooklyn.entity.trait.Startable;
 import brooklyn.event.SensorEvent;
+import brooklyn.event.AttributeSensor;
 import brooklyn.event.SensorEventListener;
 import brooklyn.location.Location;
-import brooklyn.util.config.ConfigBag;
+import brooklyn.location.basic.PortRanges;
+import brooklyn.management.Task;
+import brooklyn.util.task.Tasks;
 import brooklyn.util.time.Duration;
+import brooklyn.util.time.Time;
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.brooklyn.ambari.agent.AmbariAgent;
+import org.apache.brooklyn.ambari.mirror.AmbariRepoMirror;
+import org.apache.brooklyn.ambari.rest.AmbariApiError;
 import org.apache.brooklyn.ambari.server.AmbariServer;
+import org.apache.brooklyn.ambari.server.HostMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static brooklyn.event.basic.DependentConfiguration.attributeWhenReady;
+import static com.google.common.base.Preconditions.checkArgument;
 
 public class AmbariClusterImpl extends BasicStartableImpl implements AmbariCluster {
 
-    //TODO is there an issue with rebind here?  On rebind should be populated from somewhere else?
-    private final ConcurrentHashMap<String, Boolean> registeredHosts = new ConcurrentHashMap<String, Boolean>();
+    private static final Logger LOG = LoggerFactory.getLogger(AmbariClusterImpl.class);
+
+    private static final int SHARD_RING_POINTS_PER_SERVER = 100;
+
+    private static final Map<String, AttributeSensor<Double>> AGENT_METRIC_SENSORS = ImmutableMap.<String, AttributeSensor<Double>>builder()
+            .put(HostMetrics.average(HostMetrics.CPU_PERCENT), AmbariAgent.HOST_CPU_PERCENT)
+            .put(HostMetrics.p95(HostMetrics.CPU_PERCENT), AmbariAgent.HOST_CPU_PERCENT_P95)
+            .put(HostMetrics.average(HostMetrics.MEMORY_USED_PERCENT), AmbariAgent.HOST_MEMORY_USED_PERCENT)
+            .put(HostMetrics.average(HostMetrics.DISK_USED_PERCENT), AmbariAgent.HOST_DISK_USED_PERCENT)
+            .put(HostMetrics.average(HostMetrics.NETWORK_BYTES_IN), AmbariAgent.HOST_NETWORK_BYTES_IN)
+            .put(HostMetrics.average(HostMetrics.NETWORK_BYTES_OUT), AmbariAgent.HOST_NETWORK_BYTES_OUT)
+            .build();
+
+    private static final Map<String, AttributeSensor<Double>> CLUSTER_METRIC_SENSORS = ImmutableMap.<String, AttributeSensor<Double>>builder()
+            .put(HostMetrics.average(HostMetrics.CPU_PERCENT), CLUSTER_CPU_PERCENT)
+            .put(HostMetrics.max(HostMetrics.CPU_PERCENT), CLUSTER_CPU_PERCENT_MAX)
+            .put(HostMetrics.average(HostMetrics.MEMORY_USED_PERCENT), CLUSTER_MEMORY_USED_PERCENT)
+            .put(HostMetrics.average(HostMetrics.DISK_USED_PERCENT), CLUSTER_DISK_USED_PERCENT)
+            .put(HostMetrics.max(HostMetrics.DISK_USED_PERCENT), CLUSTER_DISK_USED_PERCENT_MAX)
+            .build();
+
+    private static final String WAITING_FOR_HOSTS = "WAITING_FOR_HOSTS";
+    private static final String INSTALLING = "INSTALLING";
+    private static final String INSTALLED = "INSTALLED";
+    private static final String FAILED = "FAILED";
+
+    private volatile HostRegistry hostRegistry;
+    private volatile InstallQuorum installQuorum;
+    private final AtomicBoolean installRetryScheduled = new AtomicBoolean();
+    private final Object treeIndexLock = new Object();
+    private int nextTreeIndex = -1;
+    private volatile ProvisioningScheduler provisioningScheduler;
+    private volatile ScheduledExecutorService installer;
+    private final ConcurrentMap<String, Map<String, Map<String, Double>>> shardHostMetrics = Maps.newConcurrentMap();
 
     @Override
     public void init() {
         super.init();
 
         setDisplayName("Ambari Cluster");
-        Integer initialSize = getConfig(INITIAL_SIZE);
+        hostRegistry = new HostRegistry(getConfig(HOST_REGISTRATION_RATE_WINDOW));
         //TODO need to do something better with security groups here
         Object securityGroup = getConfig(SECURITY_GROUP);
-        ImmutableMap<String, Object> serverProvisioningProperties = ImmutableMap.<String, Object>of(
-                "inboundPorts", ImmutableList.of(8080, 22),
-                "securityGroups", securityGroup,
-                "minRam", 4096);
 
-        SshCommandSensor<String> hostnameSensor = new SshCommandSensor<String>(ConfigBag.newInstance()
-                .configure(SshCommandSensor.SENSOR_PERIOD, Duration.seconds(1))
-                .configure(SshCommandSensor.SENSOR_NAME, "fqdn")
-                .configure(SshCommandSensor.SENSOR_COMMAND, "hostname -s"
-                ));
-        AmbariServer val = addChild(getConfig(SERVER_SPEC)
-                        .configure(SoftwareProcess.PROVISIONING_PROPERTIES, serverProvisioningProperties)
-                        .displayName("Ambari Server")
-                        .addInitializer(hostnameSensor)
-        );
-        setAttribute(AMBARI_SERVER, val);
-
-
-        ImmutableMap<String, Object> agentProvisioningProperties = ImmutableMap.<String, Object>of(
-                "minRam", 4096,
-                "osFamily", "ubuntu",
-                "osVersionRegex", "12.*",
-                "securityGroups", securityGroup);
+        if (getConfig(REPO_MIRROR_SOURCE) != null) {
+            setAttribute(REPO_MIRROR, addChild(EntitySpec.create(AmbariRepoMirror.class)
+                    .configure(AmbariRepoMirror.MIRROR_SOURCE, getConfig(REPO_MIRROR_SOURCE))
+                    .configure(SoftwareProcess.PROVISIONING_PROPERTIES, ImmutableMap.<String, Object>of(
+                            "inboundPorts", ImmutableList.of(8081, 22),
+                            "securityGroups", securityGroup))
+                    .displayName("Ambari Repo Mirror")));
+        }
+
+        List<AmbariServer> servers = Lists.newArrayList();
+        for (int shard = 0; shard < Math.max(1, getConfig(SERVER_COUNT)); shard++) {
+            servers.add(addChild(newServerSpec(shard)));
+        }
+        setAttribute(AMBARI_SERVERS, ImmutableList.copyOf(servers));
+        setAttribute(AMBARI_SERVER, servers.get(0));
+
+
+        ImmutableMap.Builder<String, Object> agentProvisioningProperties = ImmutableMap.<String, Object>builder()
+                .put("minRam", 4096)
+                .put("osFamily", "ubuntu")
+                .put("osVersionRegex", "12.*")
+                .put("securityGroups", securityGroup);
 
         EntitySpec<AmbariAgent> agentEntitySpec = EntitySpec.create(AmbariAgent.class)
-                .configure(AmbariAgent.AMBARI_SERVER_FQDN, attributeWhenReady(getAttribute(AMBARI_SERVER), AmbariServer.HOSTNAME))
+                .configure(AmbariAgent.AMBARI_SERVER_FQDN, new ShardServerHostname((AmbariCluster) getProxyIfAvailable()))
                         //TODO shouldn't use default os
-                .addInitializer(hostnameSensor)
-                .configure(SoftwareProcess.PROVISIONING_PROPERTIES, agentProvisioningProperties);
+                .addInitializer(new HostnameSensor());
+        configureRepoMirror(agentEntitySpec);
+        if (getConfig(INSTALL_BUNDLE_URL) != null) {
+            // One port rather than the range, so that the port opened is the one the agent serves on
+            int installBundlePort = Iterables.getFirst(getConfig(INSTALL_BUNDLE_PORT), 8082);
+            agentProvisioningProperties.put("inboundPorts", ImmutableList.of(installBundlePort, 22));
+            agentEntitySpec.configure(AmbariAgent.INSTALL_BUNDLE_PORT, PortRanges.fromInteger(installBundlePort))
+                    .configure(AmbariAgent.INSTALL_BUNDLE_PARENT, new InstallBundleParent((AmbariCluster) getProxyIfAvailable()));
+        }
+        agentEntitySpec.configure(SoftwareProcess.PROVISIONING_PROPERTIES, agentProvisioningProperties.build());
 
         setAttribute(AMBARI_AGENT, addChild(EntitySpec.create(DynamicCluster.class)
-                        //TODO should probably change option to hadoop cluster size
-                        .configure(DynamicCluster.INITIAL_SIZE, initialSize - 1)
+                        // grown to INITIAL_SIZE - 1 in batches by provisionAgents
+                        .configure(DynamicCluster.INITIAL_SIZE, 0)
                         .configure(DynamicCluster.MEMBER_SPEC, agentEntitySpec)
                         .displayName("All Nodes")
         ));
+
+        aggregateShards(AmbariServer.ALERTS_CRITICAL, CLUSTER_ALERTS_CRITICAL);
+        aggregateShards(AmbariServer.ALERTS_WARNING, CLUSTER_ALERTS_WARNING);
+        aggregateShards(AmbariServer.QUEUED_EFFECTORS, CLUSTER_QUEUED_EFFECTORS);
+        aggregateShards(AmbariServer.API_RETRIES, CLUSTER_API_RETRIES);
+        addEnricher(Enrichers.builder()
+                .aggregating(AmbariServer.REQUEST_PROGRESS_PERCENT)
+                .publishing(CLUSTER_REQUEST_PROGRESS_PERCENT)
+                .fromChildren()
+                .entityFilter(Predicates.instanceOf(AmbariServer.class))
+                .computingAverage()
+                .build());
+    }
+
+    private EntitySpec<? extends AmbariServer> newServerSpec(int shard) {
+        ImmutableMap<String, Object> serverProvisioningProperties = ImmutableMap.<String, Object>of(
+                "inboundPorts", ImmutableList.of(8080, 22),
+                "securityGroups", getConfig(SECURITY_GROUP),
+                "minRam", 4096);
+        return configureRepoMirror(EntitySpec.create(getConfig(SERVER_SPEC))
+                .configure(SoftwareProcess.PROVISIONING_PROPERTIES, serverProvisioningProperties)
+                .configure(AmbariServer.HOST_GROUP_PLACEMENT, getConfig(HOST_GROUP_PLACEMENT))
+                .displayName(shard == 0 ? "Ambari Server" : "Ambari Server " + (shard + 1))
+                .addInitializer(new HostnameSensor()));
+    }
+
+    /**
+     * Points the spec's installs at the cluster's package mirror, if it started one. A {@link #REPO_MIRROR_URL}
+     * configured on the cluster instead is inherited by the servers and agents as it is.
+     */
+    private <T extends Entity> EntitySpec<T> configureRepoMirror(EntitySpec<T> spec) {
+        AmbariRepoMirror mirror = getAttribute(REPO_MIRROR);
+        if (mirror != null) {
+            spec.configure(AmbariRepoMirror.REPO_MIRROR_URL, new RepoMirrorUrl(mirror));
+        }
+        return spec;
+    }
+
+    private <T extends Number> void aggregateShards(AttributeSensor<T> serverSensor, AttributeSensor<T> clusterSensor) {
+        addEnricher(Enrichers.builder()
+                .aggregating(serverSensor)
+                .publishing(clusterSensor)
+                .fromChildren()
+                .entityFilter(Predicates.instanceOf(AmbariServer.class))
+                .computingSum()
+                .build());
+    }
+
+    /**
+     * @return a ring assigning agents, by entity id, to the given servers
+     */
+    static ConsistentHashRing<AmbariServer> shardRing(List<AmbariServer> servers) {
+        ConsistentHashRing<AmbariServer> ring = new ConsistentHashRing<AmbariServer>(SHARD_RING_POINTS_PER_SERVER);
+        for (AmbariServer server : servers) {
+            ring.add(server.getId(), server);
+        }
+        return ring;
     }
 
     @Override
     public void start(Collection<? extends Location> locations) {
-        super.start(locations);
+        setAttribute(INSTALL_STATE, WAITING_FOR_HOSTS);
+        startInstaller();
+        provisioningScheduler = new ProvisioningScheduler(getConfig(AGENT_MAX_CONCURRENCY), getConfig(AGENT_BATCH_SIZE),
+                getConfig(AGENT_BATCH_DELAY), getConfig(AGENT_REGISTRATION_TARGET_LATENCY), getConfig(AGENT_REGISTRATION_TIMEOUT));
+        subscribeToHosts();
 
-        subscribe(getAttribute(AMBARI_SERVER), AmbariServer.REGISTERED_HOSTS, registeredHostsEventListener);
+        super.start(locations);
+        provisionAgents(getConfig(INITIAL_SIZE) - 1);
 
         setAttribute(SERVICE_UP, Boolean.TRUE);
     }
 
-    final SensorEventListener<List<String>> registeredHostsEventListener = new SensorEventListener<List<String>>() {
+    /**
+     * Grows the agent cluster to the target size in batches sized by the provisioning scheduler, rather than
+     * starting every agent at once. Each batch is a {@link DynamicCluster#resize}, so the agent cluster places the
+     * new members across its locations or zones and discards those that fail to start; agents started but not yet
+     * registered count against the scheduler's concurrency. Agents that fail to start are replaced by later batches.
+     *
+     * @throws IllegalStateException if no agent starts, more agents fail than were wanted, or agents have started
+     * but none has registered within the {@link #AGENT_REGISTRATION_TIMEOUT}.
+     */
+    private void provisionAgents(int targetSize) {
+        DynamicCluster agents = getAttribute(AMBARI_AGENT);
+        Long firstBatchTime = null;
+        int failed = 0;
+        while (agents.getCurrentSize() < targetSize) {
+            long now = System.currentTimeMillis();
+            if (firstBatchTime != null) {
+                checkAgentsRegistering(firstBatchTime, now);
+            }
+            int remaining = targetSize - agents.getCurrentSize();
+            int batch = provisioningScheduler.nextBatch(remaining, now);
+            if (batch == 0) {
+                Time.sleep(Duration.ONE_SECOND);
+                continue;
+            }
+            if (firstBatchTime == null) {
+                firstBatchTime = now;
+            }
+            provisioningScheduler.onBatchStarted(batch, now);
+            publishProvisioning();
+            if (batch == remaining) {
+                startInstallDeadline();
+            }
+
+            int sizeBefore = agents.getCurrentSize();
+            try {
+                agents.resize(sizeBefore + batch);
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to start some of a batch of " + batch + " agents; replacing them", e);
+            }
+            int batchFailed = batch - Math.max(0, agents.getCurrentSize() - sizeBefore);
+            for (int i = 0; i < batchFailed; i++) {
+                provisioningScheduler.onStartFailed(now);
+            }
+            failed += batchFailed;
+            if (agents.getCurrentSize() == 0 && failed > 0) {
+                throw new IllegalStateException("Failed to start any of " + failed + " agents");
+            }
+            if (failed > targetSize) {
+                throw new IllegalStateException("Failed to start " + failed + " agents, more than the " + targetSize + " wanted");
+            }
+            if (agents.getCurrentSize() < targetSize) {
+                Time.sleep(provisioningScheduler.getBatchDelay());
+            }
+        }
+        startInstallDeadline();
+    }
+
+    /**
+     * Fails, rather than provisioning batch after batch, once agents have been starting for the
+     * {@link #AGENT_REGISTRATION_TIMEOUT} and none has registered. The {@link #AGENT_REGISTRATION_TARGET_LATENCY}
+     * only slows the batches down.
+     */
+    private void checkAgentsRegistering(long firstBatchTime, long now) {
+        Duration timeout = getConfig(AGENT_REGISTRATION_TIMEOUT);
+        if (!provisioningScheduler.hasRegistrations() && now - firstBatchTime > timeout.toMilliseconds()) {
+            throw new IllegalStateException("Agents started but none registered with the Ambari server within " + timeout);
+        }
+    }
+
+    /**
+     * Starts the {@link #INSTALL_DEADLINE} once the last batch of agents has been requested, so that it does not
+     * run down while earlier batches are still provisioning; does nothing if it has already started.
+     */
+    private synchronized void startInstallDeadline() {
+        if (getAttribute(INSTALL_DEADLINE_TIME) != null) {
+            return;
+        }
+        setAttribute(INSTALL_DEADLINE_TIME, System.currentTimeMillis() + getConfig(INSTALL_DEADLINE).toMilliseconds());
+        installQuorum = newInstallQuorum();
+        scheduleDeadlineCheck();
+    }
+
+    private void scheduleDeadlineCheck() {
+        ScheduledExecutorService installer = this.installer;
+        if (installer != null && !installer.isShutdown()) {
+            installer.schedule(installCheck, Math.max(0, installQuorum.getDeadline() - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void publishProvisioning() {
+        setAttribute(AGENTS_IN_FLIGHT, provisioningScheduler.getInFlight());
+        setAttribute(AGENT_CURRENT_BATCH_SIZE, provisioningScheduler.getBatchSize());
+        double latency = provisioningScheduler.getAverageLatencyMillis();
+        if (!Double.isNaN(latency)) {
+            setAttribute(AGENT_REGISTRATION_LATENCY, latency);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (installer != null) installer.shutdownNow();
+        super.stop();
+    }
+
+    /**
+     * Adds or removes servers, then moves to its new server each agent whose shard changed, which is about one in
+     * every (number of servers) of them. Moved hosts register with their new server and join its cluster through
+     * the same quorum and scale-out path as new hosts. Removed servers are stopped once their agents have moved.
+     * <p>
+     * Only agents not yet installed are moved: an agent whose host is in, or being installed into, its server's
+     * Hadoop cluster stays with that server, as the host cannot be in two clusters. So a server cannot be removed
+     * once hosts have been installed into its cluster.
+     */
+    @Override
+    public synchronized void resizeShards(Integer serverCount) {
+        checkArgument(serverCount != null && serverCount >= 1, "serverCount must be at least 1, was %s", serverCount);
+        List<AmbariServer> oldServers = getAttribute(AMBARI_SERVERS);
+        for (AmbariServer server : oldServers.subList(Math.min(serverCount, oldServers.size()), oldServers.size())) {
+            if (!installedHosts(server).isEmpty() || INSTALLING.equals(getShardInstallState(server))) {
+                throw new IllegalStateException("Cannot remove " + server + " as hosts have been installed into its Hadoop cluster");
+            }
+        }
+        List<AmbariServer> servers = Lists.newArrayList(oldServers);
+        List<AmbariServer> added = Lists.newArrayList();
+        while (servers.size() < serverCount) {
+            AmbariServer server = addChild(newServerSpec(servers.size()));
+            Entities.manage(server);
+            servers.add(server);
+            added.add(server);
+        }
+        List<AmbariServer> removed = ImmutableList.copyOf(servers.subList(serverCount, servers.size()));
+        servers = ImmutableList.copyOf(servers.subList(0, serverCount));
+        if (!added.isEmpty()) {
+            for (AmbariServer server : added) {
+                subscribeToServer(server);
+            }
+            Entities.invokeEffectorList(this, added, Startable.START, ImmutableMap.of("locations", getLocations())).getUnchecked();
+        }
+
+        setAttribute(AMBARI_SERVERS, servers);
+        setAttribute(AMBARI_SERVER, servers.get(0));
+        installQuorum = newInstallQuorum();
+        setAttribute(INSTALL_REQUIRED_HOSTS, installQuorum.getRequiredHosts());
+        rebalanceAgents(oldServers, shardRing(servers));
+
+        if (!removed.isEmpty()) {
+            Entities.invokeEffectorList(this, removed, Startable.STOP).getUnchecked();
+            for (AmbariServer server : removed) {
+                unsubscribe(server);
+                shardHostMetrics.remove(server.getId());
+                setShardInstallState(server, null);
+                Entities.unmanage(server);
+            }
+        }
+        scheduleInstallCheck();
+    }
+
+    private void rebalanceAgents(List<AmbariServer> oldServers, ConsistentHashRing<AmbariServer> newRing) {
+        ConsistentHashRing<AmbariServer> oldRing = shardRing(oldServers);
+        List<Task<?>> moves = Lists.newArrayList();
+        for (Entity agent : getAttribute(AMBARI_AGENT).getMembers()) {
+            AmbariServer oldServer = shardOf(agent, oldServers, oldRing);
+            AmbariServer server = shardOf(agent, oldServers, newRing);
+            if (!server.equals(oldServer)) {
+                moves.add(Entities.invokeEffector(this, agent, AmbariAgent.SET_AMBARI_SERVER,
+                        ImmutableMap.of("ambariServerFQDN", server.getAttribute(AmbariServer.HOSTNAME))));
+            }
+        }
+        for (Task<?> move : moves) {
+            move.getUnchecked();
+        }
+        publishAgentShards();
+    }
+
+    private void publishAgentShards() {
+        List<AmbariServer> servers = getAttribute(AMBARI_SERVERS);
+        ConsistentHashRing<AmbariServer> ring = shardRing(servers);
+        Map<String, String> agentShards = Maps.newLinkedHashMap();
+        for (Entity agent : getAttribute(AMBARI_AGENT).getMembers()) {
+            agentShards.put(agent.getId(), shardOf(agent, servers, ring).getId());
+        }
+        setAttribute(AGENT_SHARDS, agentShards);
+    }
+
+    /**
+     * @return the server last published as owning the agent's shard, if it is one of {@code servers} and the agent
+     * is installed, or being installed, into its Hadoop cluster; otherwise the server {@code ring} chooses.
+     */
+    private AmbariServer shardOf(Entity agent, List<AmbariServer> servers, ConsistentHashRing<AmbariServer> ring) {
+        Map<String, String> agentShards = getAttribute(AGENT_SHARDS);
+        String ownerId = agentShards == null ? null : agentShards.get(agent.getId());
+        for (AmbariServer server : servers) {
+            if (server.getId().equals(ownerId) && isInstalledOn(agent, server)) {
+                return server;
+            }
+        }
+        return ring.get(agent.getId());
+    }
+
+    private boolean isInstalledOn(Entity agent, AmbariServer server) {
+        String hostName = agent.getAttribute(HostnameSensor.HOSTNAME);
+        if (hostName == null) {
+            return false;
+        }
+        Iterable<String> hosts = INSTALLING.equals(getShardInstallState(server)) ? registeredHosts(server) : installedHosts(server);
+        for (String host : hosts) {
+            if (HostRegistry.shortHostName(host).equals(HostRegistry.shortHostName(hostName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restores the host registry from the hosts each server last reported and the host names of the agents, which
+     * are persisted on those entities already.
+     */
+    @Override
+    public void rebind() {
+        super.rebind();
+        hostRegistry = new HostRegistry(getConfig(HOST_REGISTRATION_RATE_WINDOW));
+        Set<String> hosts = Sets.newLinkedHashSet();
+        for (AmbariServer server : getAttribute(AMBARI_SERVERS)) {
+            hosts.addAll(registeredHosts(server));
+        }
+        hostRegistry.restore(hosts);
+        // initializers are not applied again on rebind
+        for (AmbariServer server : getAttribute(AMBARI_SERVERS)) {
+            new HostnameSensor().apply((EntityLocal) server);
+        }
+        for (Entity agent : getAttribute(AMBARI_AGENT).getMembers()) {
+            new HostnameSensor().apply((EntityLocal) agent);
+            String hostName = agent.getAttribute(HostnameSensor.HOSTNAME);
+            if (hostName != null) {
+                hostRegistry.mapAgent(hostName, agent.getId());
+            }
+        }
+        List<AmbariServer> installing = Lists.newArrayList();
+        for (AmbariServer server : getAttribute(AMBARI_SERVERS)) {
+            if (INSTALLING.equals(getShardInstallState(server))) {
+                if (server.getAttribute(AmbariServer.REQUEST_ID) != null && server.getAttribute(AmbariServer.CLUSTER_NAME) != null) {
+                    // Ambari started installing the cluster, so carry on waiting for it
+                    installing.add(server);
+                } else {
+                    // the install effector was interrupted part way through, so whether the cluster exists is unknown
+                    setShardInstallState(server, FAILED);
+                }
+            }
+        }
+        if (getAttribute(INSTALL_STATE) != null) {
+            publishInstallState();
+            startInstaller();
+            subscribeToHosts();
+            for (AmbariServer server : installing) {
+                awaitInstall(server, server.getAttribute(AmbariServer.CLUSTER_NAME), server.getAttribute(AmbariServer.REQUEST_ID));
+            }
+        }
+    }
+
+    /**
+     * Checks each shard for a quorum as each host registers and once more at the deadline. All checks, and so the
+     * installs and the adding of late hosts, run one at a time on a single thread; hosts registering while one
+     * runs are picked up together by the next.
+     */
+    private void startInstaller() {
+        installQuorum = newInstallQuorum();
+        setAttribute(INSTALL_REQUIRED_HOSTS, installQuorum.getRequiredHosts());
+        installer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ambari-cluster-installer-%d").setDaemon(true).build());
+        installer.execute(installCheck);
+        if (getAttribute(INSTALL_DEADLINE_TIME) != null) {
+            scheduleDeadlineCheck();
+        }
+    }
+
+    /**
+     * Each shard expects an equal share of the agents. There is no deadline until the last batch of agents has
+     * been requested.
+     */
+    private InstallQuorum newInstallQuorum() {
+        int servers = getAttribute(AMBARI_SERVERS).size();
+        int expectedHosts = (getConfig(INITIAL_SIZE) - 1 + servers - 1) / servers;
+        Long deadline = getAttribute(INSTALL_DEADLINE_TIME);
+        return new InstallQuorum(expectedHosts, getConfig(INSTALL_QUORUM), deadline == null ? Long.MAX_VALUE : deadline);
+    }
+
+    private void scheduleInstallCheck() {
+        ScheduledExecutorService installer = this.installer;
+        if (installer != null && !installer.isShutdown()) {
+            installer.execute(installCheck);
+        }
+    }
+
+    /**
+     * A FAILED shard is installed again by the next check that finds its quorum, which the failure schedules after
+     * the {@link #INSTALL_RETRY_DELAY}. A failure because the blueprint or cluster already exists is not retried,
+     * as every retry would be rejected the same way. Nothing is allowed to escape, as that would silently cancel
+     * the deadline check.
+     */
+    final Runnable installCheck = new Runnable() {
         @Override
-        public void onEvent(SensorEvent<List<String>> event) {
-            for (String host : event.getValue()) {
-                registeredHosts.putIfAbsent(host, true);
+        public void run() {
+            try {
+                List<AmbariServer> servers = getAttribute(AMBARI_SERVERS);
+                for (int shard = 0; shard < servers.size(); shard++) {
+                    AmbariServer server = servers.get(shard);
+                    String state = getShardInstallState(server);
+                    try {
+                        if ((WAITING_FOR_HOSTS.equals(state) || FAILED.equals(state))
+                                && installQuorum.isReached(registeredHosts(server).size(), System.currentTimeMillis())) {
+                            installHdp(server, servers.size() == 1 ? getConfig(CLUSTER_NAME) : getConfig(CLUSTER_NAME) + "-" + (shard + 1));
+                        } else if (INSTALLED.equals(state)) {
+                            addLateHosts(server);
+                        }
+                    } catch (RuntimeException e) {
+                        if (AmbariApiError.isConflict(e)) {
+                            LOG.warn("Failed to install the Hadoop cluster of " + server + " as its blueprint or cluster already exists; not retrying", e);
+                        } else {
+                            LOG.warn("Failed to install or extend the Hadoop cluster of " + server + "; retrying in " + getConfig(INSTALL_RETRY_DELAY), e);
+                            scheduleInstallRetry();
+                        }
+                    }
+                }
+                publishInstallState();
+            } catch (Exception e) {
+                LOG.warn("Failed to check whether to install the Hadoop clusters of " + AmbariClusterImpl.this, e);
             }
         }
     };
 
-    private void createCluster() {
-        getAttribute(AMBARI_SERVER).installHDP("Cluster1", "mybp", ImmutableList.<String>copyOf(registeredHosts.keySet()), ImmutableList.<String>of("ZOOKEEPER", "HDFS"));
+    /**
+     * Schedules at most one retry at a time, however many checks fail meanwhile.
+     */
+    private void scheduleInstallRetry() {
+        ScheduledExecutorService installer = this.installer;
+        if (installer != null && !installer.isShutdown() && installRetryScheduled.compareAndSet(false, true)) {
+            installer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    installRetryScheduled.set(false);
+                    installCheck.run();
+                }
+            }, getConfig(INSTALL_RETRY_DELAY).toMilliseconds(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void installHdp(AmbariServer server, String clusterName) {
+        List<String> hosts = registeredHosts(server);
+        setShardInstallState(server, INSTALLING);
+        Integer requestId;
+        try {
+            requestId = server.installHDP(clusterName, getConfig(BLUEPRINT_NAME), hosts, getConfig(HADOOP_SERVICES), hostRacks(hosts));
+        } catch (RuntimeException e) {
+            setShardInstallState(server, FAILED);
+            throw e;
+        }
+        if (requestId == null) {
+            setShardInstallState(server, INSTALLED);
+            addLateHosts(server);
+        } else {
+            awaitInstall(server, clusterName, requestId);
+        }
+    }
+
+    /**
+     * Leaves the shard INSTALLING until Ambari's request installing its cluster finishes, then marks it INSTALLED,
+     * so that late hosts are added by the next check, or FAILED. The wait runs in a task of its own rather than
+     * holding the installer thread, which other shards' installs need meanwhile. A failed request is not retried
+     * on a schedule, as Ambari rejects creating the cluster again.
+     */
+    private void awaitInstall(final AmbariServer server, final String clusterName, final int requestId) {
+        Entities.submit(this, Tasks.<Void>builder()
+                .name("waiting for " + clusterName + " to install")
+                .body(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        String status;
+                        try {
+                            status = server.waitForRequest(clusterName, requestId, getConfig(INSTALL_REQUEST_TIMEOUT));
+                        } catch (RuntimeException e) {
+                            LOG.warn("Failed waiting for request " + requestId + " installing " + clusterName + " on " + server, e);
+                            status = null;
+                        }
+                        onInstallFinished(server, clusterName, requestId, status);
+                        return null;
+                    }
+                })
+                .build());
+    }
+
+    private void onInstallFinished(final AmbariServer server, final String clusterName, final int requestId, final String status) {
+        ScheduledExecutorService installer = this.installer;
+        if (installer == null || installer.isShutdown()) {
+            return;
+        }
+        // On the installer thread, like every other change of install state
+        installer.execute(new Runnable() {
+            @Override
+            public void run() {
+                if ("COMPLETED".equals(status)) {
+                    setShardInstallState(server, INSTALLED);
+                    // adds the hosts that registered meanwhile
+                    installCheck.run();
+                } else {
+                    LOG.warn("Request {} installing {} on {} finished {}", new Object[] {requestId, clusterName, server, status});
+                    setShardInstallState(server, FAILED);
+                    publishInstallState();
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds hosts that registered with the server after its install started, whether late from the initial
+     * provisioning, new members from a resize or moved from another shard, to the {@link #SCALE_OUT_HOST_GROUP}
+     * of the cluster's blueprint. Ambari installs and starts that host group's components on them. Hosts that
+     * fail to be added are retried on the next check.
+     */
+    private void addLateHosts(AmbariServer server) {
+        List<String> lateHosts = Lists.newArrayList(registeredHosts(server));
+        lateHosts.removeAll(installedHosts(server));
+        if (lateHosts.isEmpty()) {
+            return;
+        }
+        server.addHostsToHostGroup(server.getAttribute(AmbariServer.CLUSTER_NAME), getConfig(BLUEPRINT_NAME), getScaleOutHostGroup(server), lateHosts, hostRacks(lateHosts));
+    }
+
+    /**
+     * Racks of the given hosts as detected by their agents; hosts whose agent is unknown or has no rack are
+     * left out.
+     */
+    private Map<String, String> hostRacks(List<String> hosts) {
+        Map<String, String> hostRacks = Maps.newLinkedHashMap();
+        for (String host : hosts) {
+            String agentId = hostRegistry.getAgentId(host);
+            Entity agent = agentId == null ? null : getManagementContext().getEntityManager().getEntity(agentId);
+            String rack = agent == null ? null : agent.getAttribute(AmbariAgent.HOST_RACK);
+            if (rack != null) {
+                hostRacks.put(host, rack);
+            }
+        }
+        return hostRacks;
+    }
+
+    private static List<String> registeredHosts(AmbariServer server) {
+        List<String> hosts = server.getAttribute(AmbariServer.REGISTERED_HOSTS);
+        return hosts == null ? ImmutableList.<String>of() : hosts;
+    }
+
+    private static Set<String> installedHosts(AmbariServer server) {
+        Set<String> hosts = Sets.newLinkedHashSet();
+        Map<String, List<String>> hostGroups = server.getAttribute(AmbariServer.HOST_GROUPS);
+        if (hostGroups != null) {
+            for (List<String> groupHosts : hostGroups.values()) {
+                hosts.addAll(groupHosts);
+            }
+        }
+        return hosts;
+    }
+
+    private String getShardInstallState(AmbariServer server) {
+        Map<String, String> states = getAttribute(SHARD_INSTALL_STATES);
+        String state = states == null ? null : states.get(server.getId());
+        return state == null ? WAITING_FOR_HOSTS : state;
+    }
+
+    private synchronized void setShardInstallState(AmbariServer server, String state) {
+        Map<String, String> states = getAttribute(SHARD_INSTALL_STATES) == null
+                ? Maps.<String, String>newLinkedHashMap() : Maps.newLinkedHashMap(getAttribute(SHARD_INSTALL_STATES));
+        if (state == null) {
+            states.remove(server.getId());
+        } else {
+            states.put(server.getId(), state);
+        }
+        setAttribute(SHARD_INSTALL_STATES, states);
+    }
+
+    /**
+     * The cluster is FAILED if any shard is, INSTALLED once every shard is, and otherwise INSTALLING once any shard is.
+     */
+    private void publishInstallState() {
+        Set<String> states = Sets.newHashSet();
+        Set<String> hosts = Sets.newLinkedHashSet();
+        for (AmbariServer server : getAttribute(AMBARI_SERVERS)) {
+            states.add(getShardInstallState(server));
+            hosts.addAll(installedHosts(server));
+        }
+        String state = states.contains(FAILED) ? FAILED
+                : states.equals(ImmutableSet.of(INSTALLED)) ? INSTALLED
+                : states.contains(INSTALLING) || states.contains(INSTALLED) ? INSTALLING
+                : WAITING_FOR_HOSTS;
+        setAttribute(INSTALL_STATE, state);
+        setAttribute(INSTALLED_HOSTS, ImmutableList.copyOf(hosts));
+    }
+
+    private String getScaleOutHostGroup(AmbariServer server) {
+        String hostGroup = getConfig(SCALE_OUT_HOST_GROUP);
+        if (hostGroup != null) {
+            return hostGroup;
+        }
+        Map<String, List<String>> hostGroups = server.getAttribute(AmbariServer.HOST_GROUPS);
+        if (hostGroups == null || hostGroups.isEmpty()) {
+            throw new IllegalStateException("No host groups recorded for the installed cluster; set " + SCALE_OUT_HOST_GROUP.getName());
+        }
+        String largest = null;
+        for (Map.Entry<String, List<String>> group : hostGroups.entrySet()) {
+            if (largest == null || group.getValue().size() > hostGroups.get(largest).size()) {
+                largest = group.getKey();
+            }
+        }
+        return largest;
+    }
+
+    private void subscribeToHosts() {
+        for (AmbariServer server : getAttribute(AMBARI_SERVERS)) {
+            subscribeToServer(server);
+        }
+        subscribeToMembers(getAttribute(AMBARI_AGENT), HostnameSensor.HOSTNAME, agentHostNameEventListener);
+        // Every member, whether added by provisionAgents or by resizing the agent cluster directly
+        subscribe(getAttribute(AMBARI_AGENT), AbstractGroup.MEMBER_ADDED, new SensorEventListener<Entity>() {
+            @Override
+            public void onEvent(SensorEvent<Entity> event) {
+                assignTreeIndex(event.getValue());
+            }
+        });
+    }
+
+    /**
+     * Gives the agent the next {@link AmbariAgent#INSTALL_BUNDLE_TREE_INDEX}, unless it has one, so that its place
+     * in the fan-out tree stays the same as other agents leave.
+     */
+    private void assignTreeIndex(Entity agent) {
+        synchronized (treeIndexLock) {
+            if (agent.getAttribute(AmbariAgent.INSTALL_BUNDLE_TREE_INDEX) != null) {
+                return;
+            }
+            if (nextTreeIndex < 0) {
+                // First since start or rebind
+                nextTreeIndex = 0;
+                for (Entity member : getAttribute(AMBARI_AGENT).getMembers()) {
+                    Integer index = member.getAttribute(AmbariAgent.INSTALL_BUNDLE_TREE_INDEX);
+                    if (index != null) {
+                        nextTreeIndex = Math.max(nextTreeIndex, index + 1);
+                    }
+                }
+            }
+            ((EntityLocal) agent).setAttribute(AmbariAgent.INSTALL_BUNDLE_TREE_INDEX, nextTreeIndex++);
+        }
+    }
+
+    private void subscribeToServer(AmbariServer server) {
+        subscribe(server, AmbariServer.HOST_REGISTERED, hostRegisteredEventListener);
+        subscribe(server, AmbariServer.HOST_LOST, hostLostEventListener);
+        subscribe(server, AmbariServer.HOST_METRICS, hostMetricsEventListener);
+    }
+
+    /**
+     * Publishes counts only; copying the registry into attributes would persist every host per event.
+     */
+    private void publishHostRegistry() {
+        setAttribute(REGISTERED_HOST_COUNT, hostRegistry.size());
+        setAttribute(HOST_REGISTRATION_RATE, hostRegistry.getRegistrationsPerMinute(System.currentTimeMillis()));
+    }
+
+    /**
+     * A host moving between shards may register with its new server before its old one reports it lost, so every
+     * registration prompts an install check, not only those new to the cluster.
+     */
+    final SensorEventListener<String> hostRegisteredEventListener = new SensorEventListener<String>() {
+        @Override
+        public void onEvent(SensorEvent<String> event) {
+            if (hostRegistry.register(event.getValue(), System.currentTimeMillis())) {
+                publishHostRegistry();
+                if (provisioningScheduler != null) {
+                    provisioningScheduler.onRegistered(System.currentTimeMillis());
+                    publishProvisioning();
+                }
+            }
+            scheduleInstallCheck();
+        }
+    };
+
+    final SensorEventListener<String> hostLostEventListener = new SensorEventListener<String>() {
+        @Override
+        public void onEvent(SensorEvent<String> event) {
+            if (!isRegisteredElsewhere(event.getValue(), event.getSource()) && hostRegistry.deregister(event.getValue())) {
+                publishHostRegistry();
+            }
+        }
+    };
+
+    private boolean isRegisteredElsewhere(String host, Entity lostBy) {
+        for (AmbariServer server : getAttribute(AMBARI_SERVERS)) {
+            if (!server.equals(lostBy) && registeredHosts(server).contains(host)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    final SensorEventListener<String> agentHostNameEventListener = new SensorEventListener<String>() {
+        @Override
+        public void onEvent(SensorEvent<String> event) {
+            if (event.getValue() != null && hostRegistry.mapAgent(event.getValue(), event.getSource().getId()) != null) {
+                publishAgentShards();
+            }
+        }
+    };
+
+    /**
+     * Pushes each host's windowed metrics onto the agent the host registry maps it to, and the rollups across the
+     * latest metrics of every shard onto this entity.
+     */
+    final SensorEventListener<Map<String, Map<String, Double>>> hostMetricsEventListener = new SensorEventListener<Map<String, Map<String, Double>>>() {
+        @Override
+        public void onEvent(SensorEvent<Map<String, Map<String, Double>>> event) {
+            Map<String, Map<String, Double>> hostMetrics = event.getValue();
+            if (hostMetrics == null) {
+                return;
+            }
+            for (Map.Entry<String, Map<String, Double>> host : hostMetrics.entrySet()) {
+                String agentId = hostRegistry.getAgentId(host.getKey());
+                Entity agent = agentId == null ? null : getManagementContext().getEntityManager().getEntity(agentId);
+                if (agent != null) {
+                    setMetrics((EntityLocal) agent, AGENT_METRIC_SENSORS, host.getValue());
+                }
+            }
+            shardHostMetrics.put(event.getSource().getId(), hostMetrics);
+            Map<String, Map<String, Double>> allHostMetrics = Maps.newHashMap();
+            for (Map<String, Map<String, Double>> shardMetrics : shardHostMetrics.values()) {
+                allHostMetrics.putAll(shardMetrics);
+            }
+            setMetrics(AmbariClusterImpl.this, CLUSTER_METRIC_SENSORS, HostMetrics.rollup(allHostMetrics));
+        }
+    };
+
+    private static void setMetrics(EntityLocal entity, Map<String, AttributeSensor<Double>> sensors, Map<String, Double> metrics) {
+        for (Map.Entry<String, AttributeSensor<Double>> sensor : sensors.entrySet()) {
+            Double value = metrics.get(sensor.getKey());
+            if (value != null) {
+                entity.setAttribute(sensor.getValue(), value);
+            }
+        }
     }
 }
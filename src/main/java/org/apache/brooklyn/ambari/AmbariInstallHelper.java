@@ -22,4 +22,10 @@ import brooklyn.location.basic.SshMachineLocation;
 
 public interface AmbariInstallHelper {
     public String installAmbariRequirements(SshMachineLocation machine);
+
+    /**
+     * @return a command that points the HDP stack repositories of an installed Ambari server at the package mirror,
+     * if there is one, before the server reads them
+     */
+    public String mirrorStackRepositories();
 }
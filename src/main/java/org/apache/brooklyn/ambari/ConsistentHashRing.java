@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Assigns keys to nodes by consistent hashing: each node owns several points on a ring of hashes, and a key
+ * belongs to the node owning the first point at or after the key's hash. Adding or removing a node only moves
+ * the keys whose points it takes or gives up, about one in every (number of nodes) of them.
+ */
+class ConsistentHashRing<T> {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final int pointsPerNode;
+    private final TreeMap<Long, String> ring = new TreeMap<Long, String>();
+    private final Map<String, T> nodes = new TreeMap<String, T>();
+
+    ConsistentHashRing(int pointsPerNode) {
+        checkArgument(pointsPerNode > 0, "pointsPerNode must be positive, was %s", pointsPerNode);
+        this.pointsPerNode = pointsPerNode;
+    }
+
+    synchronized void add(String nodeId, T node) {
+        if (nodes.put(nodeId, node) == null) {
+            for (int i = 0; i < pointsPerNode; i++) {
+                ring.put(hash(nodeId + "#" + i), nodeId);
+            }
+        }
+    }
+
+    synchronized void remove(String nodeId) {
+        if (nodes.remove(nodeId) != null) {
+            for (int i = 0; i < pointsPerNode; i++) {
+                ring.remove(hash(nodeId + "#" + i));
+            }
+        }
+    }
+
+    /**
+     * @return the node owning {@code key}, or null if the ring is empty
+     */
+    synchronized T get(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        SortedMap<Long, String> tail = ring.tailMap(hash(key));
+        return nodes.get(tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey()));
+    }
+
+    synchronized int size() {
+        return nodes.size();
+    }
+
+    private static long hash(String value) {
+        return HASH.hashString(value, Charsets.UTF_8).asLong();
+    }
+}
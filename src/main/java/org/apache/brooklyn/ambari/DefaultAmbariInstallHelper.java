@@ -21,11 +21,14 @@ package org.apache.brooklyn.ambari;
 import brooklyn.location.OsDetails;
 import brooklyn.location.basic.SshMachineLocation;
 import brooklyn.util.ssh.BashCommands;
+import org.apache.brooklyn.ambari.mirror.AmbariRepoMirror;
 
 import static brooklyn.util.ssh.BashCommands.*;
 
 public class DefaultAmbariInstallHelper implements AmbariInstallHelper {
 
+    public static final String AMBARI_VERSION = "1.7.0";
+
     private static final String CENTOS_6_AMBARI_REPO_LOCATION = "http://public-repo-1.hortonworks.com/ambari/centos6/1.x/updates/1.7.0/ambari.repo";
     private static final String CENTOS_REPO_LIST_LOCATION = "/etc/yum.repos.d/ambari.repo";
     private static final String CENTOS_5_AMBARI_REPO_LOCATION = "http://public-repo-1.hortonworks.com/ambari/centos5/1.x/updates/1.7.0/ambari.repo";
@@ -35,9 +38,24 @@ public class DefaultAmbariInstallHelper implements AmbariInstallHelper {
     private static final String UBUNTU_REPO_LIST_LOCATION = "/etc/apt/sources.list.d/ambari.list";
 
     private static final String UBUNTU_AMBARI_REPO_LOCATION = "http://public-repo-1.hortonworks.com/ambari/ubuntu12/1.x/updates/1.7.0/ambari.list";
+    private static final String UBUNTU_AMBARI_KEY_ID = "B9733A7A07513CAD";
+    private static final String UBUNTU_AMBARI_KEY_LOCATION = "/tmp/ambari.gpg.key";
     private static final String INSTALL_NTP = installExecutable("ntp");
 
+    private static final String AMBARI_SERVER_STACK_REPOS_LOCATION = "/var/lib/ambari-server/resources/stacks/HDP/*/repos/repoinfo.xml";
+
+    private final String repoMirrorUrl;
+
     public DefaultAmbariInstallHelper() {
+        this(null);
+    }
+
+    /**
+     * @param repoMirrorUrl base URL of an {@link AmbariRepoMirror} to install Ambari and HDP packages from, or null
+     *                      to install from the public repositories
+     */
+    public DefaultAmbariInstallHelper(String repoMirrorUrl) {
+        this.repoMirrorUrl = repoMirrorUrl;
     }
 
     @Override
@@ -48,16 +66,45 @@ public class DefaultAmbariInstallHelper implements AmbariInstallHelper {
                 createCommandToAddAmbariToRepositoriesList(machine));
     }
 
+    @Override
+    public String mirrorStackRepositories() {
+        return repoMirrorUrl == null ? "true" : rewriteRepoUrls(AMBARI_SERVER_STACK_REPOS_LOCATION);
+    }
+
+    /**
+     * @return the URL of the same file on the mirror, if there is one and the URL is on the public repositories;
+     * otherwise the URL itself
+     */
+    String repoUrl(String url) {
+        if (repoMirrorUrl == null || !url.startsWith(AmbariRepoMirror.PUBLIC_REPO_URL)) {
+            return url;
+        }
+        return repoMirrorUrl.replaceAll("/+$", "") + url.substring(AmbariRepoMirror.PUBLIC_REPO_URL.length());
+    }
+
     private String createCommandToAddAmbariToRepositoriesList(SshMachineLocation sshMachineLocation) {
         return alternatives(getAptRepo(), setupCentos6Repo(sshMachineLocation), setupSuseRepo());
     }
 
     private String getAptRepo() {
         return ifExecutableElse1("apt-get", chainGroup(wget(UBUNTU_AMBARI_REPO_LOCATION, UBUNTU_REPO_LIST_LOCATION),
-                sudo("apt-key adv --recv-keys --keyserver keyserver.ubuntu.com B9733A7A07513CAD"),
+                addAptKey(),
                 sudo("apt-get update")));
     }
 
+    /**
+     * Imports the Ambari repository's signing key from the mirror when there is one, as its nodes may have no route
+     * to a keyserver.
+     */
+    private String addAptKey() {
+        if (repoMirrorUrl == null) {
+            return sudo("apt-key adv --recv-keys --keyserver keyserver.ubuntu.com " + UBUNTU_AMBARI_KEY_ID);
+        }
+        return chainGroup(
+                sudo("wget " + repoMirrorUrl.replaceAll("/+$", "") + "/" + AmbariRepoMirror.APT_KEY_PATH + " -O " + UBUNTU_AMBARI_KEY_LOCATION),
+                sudo("apt-key add " + UBUNTU_AMBARI_KEY_LOCATION));
+    }
+
     private String setupCentos6Repo(SshMachineLocation sshMachineLocation) {
         // Doesn't check machine name as may refer to redhat, centos, or oracle
         String osDetailsVersion = getOsVersion(sshMachineLocation);
@@ -73,7 +120,15 @@ public class DefaultAmbariInstallHelper implements AmbariInstallHelper {
     }
 
     private String wget(String remoteLocation, String fileSystemLocation) {
-        return sudo("wget " + remoteLocation + " -O " + fileSystemLocation);
+        String download = sudo("wget " + repoUrl(remoteLocation) + " -O " + fileSystemLocation);
+        return repoMirrorUrl == null ? download : chainGroup(download, rewriteRepoUrls(fileSystemLocation));
+    }
+
+    /**
+     * Points the base URLs and GPG keys of the repo definitions in the given files at the mirror.
+     */
+    private String rewriteRepoUrls(String fileSystemLocation) {
+        return sudo("sed -i 's#" + AmbariRepoMirror.PUBLIC_REPO_URL + "#" + repoMirrorUrl.replaceAll("/+$", "") + "#g' " + fileSystemLocation);
     }
 
     private String getOsVersion(SshMachineLocation sshMachineLocation) {
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Arranges nodes, by the order they joined, in a tree through which an install bundle is forwarded. The first
+ * {@code seeds} nodes fetch it from Brooklyn and every later node from its parent, which is always an earlier
+ * node, so a node's parent does not change as nodes are appended and the depth grows with the log of the size.
+ */
+class FanOutTree {
+
+    private final int seeds;
+    private final int fanOut;
+
+    FanOutTree(int seeds, int fanOut) {
+        checkArgument(seeds > 0, "seeds must be positive, was %s", seeds);
+        checkArgument(fanOut > 0, "fanOut must be positive, was %s", fanOut);
+        this.seeds = seeds;
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * @return the index of the node's parent, or null if the node is a seed
+     */
+    Integer parentOf(int index) {
+        checkArgument(index >= 0, "index must not be negative, was %s", index);
+        return index < seeds ? null : (index - seeds) / fanOut;
+    }
+
+    /**
+     * @return the number of hops from Brooklyn to the node, one for a seed
+     */
+    int depthOf(int index) {
+        int depth = 1;
+        for (Integer parent = parentOf(index); parent != null; parent = parentOf(parent)) {
+            depth++;
+        }
+        return depth;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import brooklyn.util.time.Duration;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The hosts registered with the cluster's Ambari server, updated one registration or loss at a time. Records
+ * which agent entity runs on each host, and when recent registrations happened for the rate. It is not persisted
+ * itself: on rebind the cluster restores it from the hosts its servers report and the host names of its agents,
+ * which are persisted already. When each host registered is not kept across rebind.
+ */
+class HostRegistry {
+
+    private final Set<String> hosts = new LinkedHashSet<String>();
+    private final Map<String, String> agentIds = new HashMap<String, String>();
+    private final Map<String, String> hostsByShortName = new HashMap<String, String>();
+    private final Map<String, String> agentIdsByShortName = new HashMap<String, String>();
+    private final LinkedList<Long> recentRegistrations = new LinkedList<Long>();
+    private final long rateWindowMillis;
+
+    HostRegistry(Duration rateWindow) {
+        this.rateWindowMillis = rateWindow.toMilliseconds();
+    }
+
+    /**
+     * Replaces the registered hosts with {@code hosts}. They are not counted in the registration rate, as when they
+     * really registered is not known.
+     */
+    synchronized void restore(Collection<String> hosts) {
+        clear();
+        for (String host : hosts) {
+            add(host);
+        }
+    }
+
+    /**
+     * @return whether {@code host} was not already registered.
+     */
+    synchronized boolean register(String host, long now) {
+        if (hosts.contains(host)) {
+            return false;
+        }
+        add(host);
+        recentRegistrations.add(now);
+        trimRecentRegistrations(now);
+        return true;
+    }
+
+    /**
+     * @return whether {@code host} was registered.
+     */
+    synchronized boolean deregister(String host) {
+        if (!hosts.remove(host)) {
+            return false;
+        }
+        agentIds.remove(host);
+        hostsByShortName.remove(shortHostName(host));
+        return true;
+    }
+
+    /**
+     * Records that agent {@code agentId} runs on {@code agentHostName} (short or fully qualified), mapping it to
+     * the registered host of the same short name now or when that host registers.
+     *
+     * @return the registered host that was mapped, or null if none has registered yet.
+     */
+    @Nullable
+    synchronized String mapAgent(String agentHostName, String agentId) {
+        String shortName = shortHostName(agentHostName);
+        agentIdsByShortName.put(shortName, agentId);
+        String host = hostsByShortName.get(shortName);
+        if (host != null) {
+            agentIds.put(host, agentId);
+        }
+        return host;
+    }
+
+    @Nullable
+    synchronized String getAgentId(String host) {
+        return agentIds.get(host);
+    }
+
+    @VisibleForTesting
+    synchronized List<String> getHosts() {
+        return ImmutableList.copyOf(hosts);
+    }
+
+    synchronized int size() {
+        return hosts.size();
+    }
+
+    /**
+     * @return hosts registered per minute over the rate window ending at {@code now}.
+     */
+    synchronized double getRegistrationsPerMinute(long now) {
+        trimRecentRegistrations(now);
+        return recentRegistrations.size() * 60000.0 / rateWindowMillis;
+    }
+
+    static String shortHostName(String hostName) {
+        int dot = hostName.indexOf('.');
+        return dot < 0 ? hostName : hostName.substring(0, dot);
+    }
+
+    private void add(String host) {
+        hosts.add(host);
+        hostsByShortName.put(shortHostName(host), host);
+        String agentId = agentIdsByShortName.get(shortHostName(host));
+        if (agentId != null) {
+            agentIds.put(host, agentId);
+        }
+    }
+
+    private void clear() {
+        hosts.clear();
+        agentIds.clear();
+        hostsByShortName.clear();
+        recentRegistrations.clear();
+    }
+
+    private void trimRecentRegistrations(long now) {
+        while (!recentRegistrations.isEmpty() && now - recentRegistrations.getFirst() > rateWindowMillis) {
+            recentRegistrations.removeFirst();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import brooklyn.entity.Effector;
+import brooklyn.entity.basic.Entities;
+import brooklyn.entity.basic.EntityInternal;
+import brooklyn.entity.basic.EntityLocal;
+import brooklyn.entity.effector.EffectorBody;
+import brooklyn.entity.effector.Effectors;
+import brooklyn.entity.proxying.EntityInitializer;
+import brooklyn.entity.trait.Startable;
+import brooklyn.event.AttributeSensor;
+import brooklyn.event.SensorEvent;
+import brooklyn.event.SensorEventListener;
+import brooklyn.event.basic.Sensors;
+import brooklyn.location.basic.Machines;
+import brooklyn.location.basic.SshMachineLocation;
+import brooklyn.util.collections.MutableMap;
+import brooklyn.util.config.ConfigBag;
+import brooklyn.util.guava.Maybe;
+import brooklyn.util.task.Tasks;
+import brooklyn.util.time.Duration;
+import brooklyn.util.time.Time;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the short host name of an entity's machine. The name is read over SSH once the entity first comes up,
+ * in a task of its own so that the subscription thread is never held on SSH, retrying with backoff while the
+ * machine is not yet reachable; it is then kept, and persisted with the entity's other attributes. The
+ * {@link #REFRESH_HOSTNAME} effector reads it again on demand. Commands run through the machine location, which
+ * reuses its pooled SSH sessions.
+ * <p>
+ * Initializers are not applied again on rebind, so whatever added this one must {@link #apply} it to the rebound
+ * entity itself; that restores the effector and the subscription, and reads a name that was never read.
+ */
+public class HostnameSensor implements EntityInitializer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HostnameSensor.class);
+
+    public static final AttributeSensor<String> HOSTNAME = Sensors.newStringSensor("fqdn", "Short host name of the entity's machine");
+
+    public static final Effector<String> REFRESH_HOSTNAME = Effectors.effector(String.class, "refreshHostname")
+            .description("Reads the machine's short host name again")
+            .buildAbstract();
+
+    private static final String COMMAND = "hostname -s";
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public HostnameSensor() {
+        this(8, Duration.ONE_SECOND, Duration.seconds(30));
+    }
+
+    @VisibleForTesting
+    HostnameSensor(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    @Override
+    public void apply(final EntityLocal entity) {
+        ((EntityInternal) entity).getMutableEntityType().addEffector(Effectors.effector(REFRESH_HOSTNAME)
+                .impl(new EffectorBody<String>() {
+                    @Override
+                    public String call(ConfigBag parameters) {
+                        return resolve(entity);
+                    }
+                })
+                .build());
+        // One resolution at a time per entity; this initializer is shared by every entity of a spec
+        final AtomicBoolean resolving = new AtomicBoolean();
+        entity.subscribe(entity, Startable.SERVICE_UP, new SensorEventListener<Boolean>() {
+            @Override
+            public void onEvent(SensorEvent<Boolean> event) {
+                if (Boolean.TRUE.equals(event.getValue())) {
+                    resolveInBackground(entity, resolving);
+                }
+            }
+        });
+        if (Boolean.TRUE.equals(entity.getAttribute(Startable.SERVICE_UP))) {
+            // already up, as on rebind, so no event is coming
+            resolveInBackground(entity, resolving);
+        }
+    }
+
+    private void resolveInBackground(final EntityLocal entity, final AtomicBoolean resolving) {
+        if (entity.getAttribute(HOSTNAME) != null || !resolving.compareAndSet(false, true)) {
+            return;
+        }
+        Entities.submit(entity, Tasks.<Void>builder()
+                .name("resolving host name")
+                .body(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        try {
+                            resolveWithRetries(entity);
+                        } finally {
+                            resolving.set(false);
+                        }
+                        return null;
+                    }
+                })
+                .build());
+    }
+
+    private void resolveWithRetries(EntityLocal entity) {
+        Duration backoff = initialBackoff;
+        for (int attempt = 1; entity.getAttribute(HOSTNAME) == null; attempt++) {
+            try {
+                resolve(entity);
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    LOG.warn("Giving up reading the host name of " + entity + " after " + attempt + " attempts", e);
+                    return;
+                }
+                LOG.debug("Reading the host name of {} failed (attempt {}); retrying in {}: {}",
+                        new Object[] {entity, attempt, backoff, e.toString()});
+                Time.sleep(backoff);
+                backoff = Duration.millis(Math.min(backoff.toMilliseconds() * 2, maxBackoff.toMilliseconds()));
+            }
+        }
+    }
+
+    private String resolve(EntityLocal entity) {
+        String hostname = readHostname(entity);
+        entity.setAttribute(HOSTNAME, hostname);
+        return hostname;
+    }
+
+    @VisibleForTesting
+    String readHostname(EntityLocal entity) {
+        Maybe<SshMachineLocation> machine = Machines.findUniqueSshMachineLocation(entity.getLocations());
+        if (machine.isAbsent()) {
+            throw new IllegalStateException("No SSH machine to read the host name of " + entity);
+        }
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        int exitCode = machine.get().execCommands(MutableMap.of("out", stdout), "hostname", ImmutableList.of(COMMAND));
+        if (exitCode != 0) {
+            throw new IllegalStateException("Reading the host name of " + entity + " exited with " + exitCode);
+        }
+        return new String(stdout.toByteArray()).trim();
+    }
+}
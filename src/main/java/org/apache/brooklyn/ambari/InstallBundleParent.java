@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import brooklyn.entity.Entity;
+import com.google.common.base.Predicates;
+import org.apache.brooklyn.ambari.agent.AmbariAgent;
+
+import static brooklyn.event.basic.DependentConfiguration.waitInTaskForAttributeReady;
+
+/**
+ * Resolves, for the agent whose config is being read, the agent it fetches the install bundle from: its parent in
+ * a {@link FanOutTree} over the {@link AmbariAgent#INSTALL_BUNDLE_TREE_INDEX} each agent is given as it joins, or
+ * null if it is a seed, or its parent has gone, and it fetches from Brooklyn.
+ */
+class InstallBundleParent extends AgentDeferredSupplier<Entity> {
+
+    InstallBundleParent(AmbariCluster cluster) {
+        super(cluster);
+    }
+
+    @Override
+    protected Entity get(Entity agent) {
+        int index = waitInTaskForAttributeReady(agent, AmbariAgent.INSTALL_BUNDLE_TREE_INDEX, Predicates.notNull());
+        Integer parent = new FanOutTree(cluster.getConfig(AmbariCluster.INSTALL_BUNDLE_SEEDS),
+                cluster.getConfig(AmbariCluster.INSTALL_BUNDLE_FAN_OUT)).parentOf(index);
+        if (parent == null) {
+            return null;
+        }
+        for (Entity member : cluster.getAttribute(AmbariCluster.AMBARI_AGENT).getMembers()) {
+            if (parent.equals(member.getAttribute(AmbariAgent.INSTALL_BUNDLE_TREE_INDEX))) {
+                return member;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import brooklyn.config.ConfigKey;
+import brooklyn.entity.Entity;
+import brooklyn.entity.basic.ConfigKeys;
+import brooklyn.event.AttributeSensor;
+import brooklyn.event.basic.Sensors;
+import brooklyn.location.basic.SshMachineLocation;
+import brooklyn.util.collections.MutableMap;
+import brooklyn.util.time.Duration;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a single SSH command that reports which packages are installed, at which version, and whether named
+ * checks of configuration state pass, so that a driver can decide whether a machine from a pre-baked image needs
+ * its install at all. Drivers build the command with {@link #command}, run it and {@link #parse} its output.
+ */
+public class InstallProbe {
+
+    public static final String FULL = "FULL";
+    public static final String PREBAKED = "PREBAKED";
+
+    public static final ConfigKey<Boolean> PREBAKED_IMAGE = ConfigKeys.newBooleanConfigKey(
+            "ambari.install.prebakedImage", "Whether machines may come from an image with Ambari already installed; if "
+                    + "so, a machine that has the expected packages and configuration skips straight to customize and launch", false);
+
+    public static final ConfigKey<Duration> FULL_INSTALL_ESTIMATE = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.install.fullInstallEstimate", "Typical duration of a full install, against which the time saved by "
+                    + "skipping it is reported until a sibling has timed a full install", Duration.minutes(5));
+
+    public static final AttributeSensor<Duration> INSTALL_DURATION = Sensors.newSensor(Duration.class,
+            "ambari.install.duration", "Time the full install took; unset if it was skipped");
+
+    public static final AttributeSensor<String> INSTALL_PATH = Sensors.newStringSensor(
+            "ambari.install.path", "Install path taken: FULL, or PREBAKED if the install was skipped");
+
+    public static final AttributeSensor<Duration> INSTALL_TIME_SAVED = Sensors.newSensor(Duration.class,
+            "ambari.install.timeSaved", "Estimated time saved by skipping the install, as the mean time siblings "
+                    + "took for their full installs less the time spent probing");
+
+    private static final String PACKAGE_PREFIX = "package.";
+    private static final String CHECK_PREFIX = "check.";
+
+    private final Map<String, String> values;
+
+    private InstallProbe(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * @param packages packages whose installed version to report, on dpkg or rpm based systems
+     * @param checks   shell tests of configuration state, by name
+     * @return a command printing one {@code key=value} line per package and check
+     */
+    public static String command(List<String> packages, Map<String, String> checks) {
+        List<String> commands = Lists.newArrayList();
+        for (String name : packages) {
+            commands.add(String.format("echo \"%s%s=$( (dpkg-query -W -f='${Status}|${Version}' %s 2> /dev/null "
+                    + "| grep '^install ok installed' | cut -d'|' -f2; rpm -q --qf '%%{VERSION}' %s 2> /dev/null "
+                    + "| grep -v 'not installed') | head -1)\"", PACKAGE_PREFIX, name, name, name));
+        }
+        for (Map.Entry<String, String> check : checks.entrySet()) {
+            commands.add(String.format("if %s; then echo %s%s=true; else echo %s%s=false; fi",
+                    check.getValue(), CHECK_PREFIX, check.getKey(), CHECK_PREFIX, check.getKey()));
+        }
+        return Joiner.on("; ").join(commands);
+    }
+
+    /**
+     * Probes the machine over a single SSH session.
+     */
+    public static InstallProbe run(SshMachineLocation machine, List<String> packages, Map<String, String> checks) {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        machine.execCommands(MutableMap.of("out", stdout), "probing install", ImmutableList.of(command(packages, checks)));
+        return parse(new String(stdout.toByteArray()));
+    }
+
+    /**
+     * @return the time saved by skipping an install that typically takes {@code fullInstallEstimate}, given the
+     * time spent deciding to skip it
+     */
+    public static Duration timeSaved(Duration fullInstallEstimate, long elapsedMillis) {
+        return Duration.millis(Math.max(0, fullInstallEstimate.toMilliseconds() - elapsedMillis));
+    }
+
+    /**
+     * @return the mean {@link #INSTALL_DURATION} of the entity's siblings of the given type that did a full install,
+     * or its {@link #FULL_INSTALL_ESTIMATE} if none has yet
+     */
+    public static Duration fullInstallDuration(Entity entity, Class<? extends Entity> type) {
+        List<Duration> durations = Lists.newArrayList();
+        if (entity.getParent() != null) {
+            for (Entity sibling : Iterables.filter(entity.getParent().getChildren(), type)) {
+                Duration duration = sibling.getAttribute(INSTALL_DURATION);
+                if (duration != null) {
+                    durations.add(duration);
+                }
+            }
+        }
+        return mean(durations, entity.getConfig(FULL_INSTALL_ESTIMATE));
+    }
+
+    static Duration mean(List<Duration> durations, Duration otherwise) {
+        if (durations.isEmpty()) {
+            return otherwise;
+        }
+        long total = 0;
+        for (Duration duration : durations) {
+            total += duration.toMilliseconds();
+        }
+        return Duration.millis(total / durations.size());
+    }
+
+    public static InstallProbe parse(String output) {
+        ImmutableMap.Builder<String, String> values = ImmutableMap.builder();
+        for (String line : Splitter.on('\n').trimResults().omitEmptyStrings().split(output)) {
+            int separator = line.indexOf('=');
+            if (separator > 0) {
+                values.put(line.substring(0, separator), line.substring(separator + 1));
+            }
+        }
+        return new InstallProbe(values.build());
+    }
+
+    /**
+     * @return the installed version of the package, or null if it is not installed
+     */
+    public String getPackageVersion(String name) {
+        String version = values.get(PACKAGE_PREFIX + name);
+        return version == null || version.isEmpty() ? null : version;
+    }
+
+    /**
+     * @param versionPrefix required start of the installed version, or null for any version
+     */
+    public boolean isInstalled(String name, String versionPrefix) {
+        String version = getPackageVersion(name);
+        return version != null && (versionPrefix == null || version.startsWith(versionPrefix));
+    }
+
+    public boolean passed(String check) {
+        return "true".equals(values.get(CHECK_PREFIX + check));
+    }
+}
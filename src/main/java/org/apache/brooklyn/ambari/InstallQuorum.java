@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Decides when enough hosts have registered to start the HDP install: once a fraction of the expected hosts
+ * have registered, or once the deadline has passed and at least one has.
+ */
+class InstallQuorum {
+
+    private final int requiredHosts;
+    private final long deadline;
+
+    InstallQuorum(int expectedHosts, double quorum, long deadline) {
+        checkArgument(quorum > 0 && quorum <= 1, "quorum must be in (0, 1], was %s", quorum);
+        this.requiredHosts = Math.max(1, (int) Math.ceil(expectedHosts * quorum));
+        this.deadline = deadline;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    int getRequiredHosts() {
+        return requiredHosts;
+    }
+
+    boolean isReached(int registeredHosts, long now) {
+        return registeredHosts >= requiredHosts || (registeredHosts > 0 && now >= deadline);
+    }
+}
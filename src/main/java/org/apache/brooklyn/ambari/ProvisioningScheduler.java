@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import brooklyn.util.time.Duration;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Sizes the batches in which agents are provisioned. An agent is in flight from the start of its batch until a
+ * host registers with the server or the registration timeout passes; batches never take the number in flight
+ * above the maximum concurrency. Each registration's latency is measured against the oldest agent in flight:
+ * above the target latency the batch size halves and the delay between batches doubles, otherwise the batch
+ * size grows by one and the delay halves, back to their configured values.
+ */
+class ProvisioningScheduler {
+
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final int maxConcurrency;
+    private final int maxBatchSize;
+    private final long minDelayMillis;
+    private final long targetLatencyMillis;
+    private final long registrationTimeoutMillis;
+    private final LinkedList<Long> inFlight = new LinkedList<Long>();
+    private int batchSize;
+    private long delayMillis;
+    private double averageLatencyMillis = Double.NaN;
+
+    ProvisioningScheduler(int maxConcurrency, int batchSize, Duration batchDelay, Duration targetLatency, Duration registrationTimeout) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxBatchSize = Math.max(1, batchSize);
+        this.minDelayMillis = batchDelay.toMilliseconds();
+        this.targetLatencyMillis = targetLatency.toMilliseconds();
+        this.registrationTimeoutMillis = registrationTimeout.toMilliseconds();
+        this.batchSize = this.maxBatchSize;
+        this.delayMillis = minDelayMillis;
+    }
+
+    /**
+     * @return the number of agents to provision now, out of {@code remaining}; zero if too many are in flight
+     */
+    synchronized int nextBatch(int remaining, long now) {
+        expire(now);
+        return Math.max(0, Math.min(remaining, Math.min(batchSize, maxConcurrency - inFlight.size())));
+    }
+
+    synchronized void onBatchStarted(int size, long startTime) {
+        for (int i = 0; i < size; i++) {
+            inFlight.add(startTime);
+        }
+    }
+
+    /**
+     * Frees the concurrency taken by an agent, started at {@code startTime}, that failed to start and so will
+     * never register.
+     */
+    synchronized void onStartFailed(long startTime) {
+        inFlight.remove(Long.valueOf(startTime));
+    }
+
+    synchronized void onRegistered(long now) {
+        expire(now);
+        Long startTime = inFlight.poll();
+        if (startTime == null) {
+            return;
+        }
+        long latency = now - startTime;
+        averageLatencyMillis = Double.isNaN(averageLatencyMillis) ? latency
+                : LATENCY_WEIGHT * latency + (1 - LATENCY_WEIGHT) * averageLatencyMillis;
+        if (latency > targetLatencyMillis) {
+            batchSize = Math.max(1, batchSize / 2);
+            delayMillis = Math.min(Math.max(targetLatencyMillis, minDelayMillis), Math.max(1000, delayMillis * 2));
+        } else {
+            batchSize = Math.min(maxBatchSize, batchSize + 1);
+            delayMillis = Math.max(minDelayMillis, delayMillis / 2);
+        }
+    }
+
+    synchronized int getInFlight() {
+        return inFlight.size();
+    }
+
+    synchronized boolean hasRegistrations() {
+        return !Double.isNaN(averageLatencyMillis);
+    }
+
+    synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    synchronized Duration getBatchDelay() {
+        return Duration.millis(delayMillis);
+    }
+
+    /**
+     * @return the moving average registration latency in milliseconds, or NaN before any registration
+     */
+    synchronized double getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+
+    private void expire(long now) {
+        for (Iterator<Long> i = inFlight.iterator(); i.hasNext(); ) {
+            if (now - i.next() >= registrationTimeoutMillis) {
+                i.remove();
+            } else {
+                break;
+            }
+        }
+    }
+}
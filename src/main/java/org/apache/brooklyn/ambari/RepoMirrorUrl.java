@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import brooklyn.util.task.DeferredSupplier;
+import com.google.common.base.Predicates;
+import org.apache.brooklyn.ambari.mirror.AmbariRepoMirror;
+
+import static brooklyn.event.basic.DependentConfiguration.waitInTaskForAttributeReady;
+
+/**
+ * Resolves the base URL of the cluster's package mirror once the mirror is serving it, so that servers and agents
+ * started alongside the mirror wait for it before installing.
+ */
+class RepoMirrorUrl implements DeferredSupplier<String> {
+
+    private final AmbariRepoMirror mirror;
+
+    RepoMirrorUrl(AmbariRepoMirror mirror) {
+        this.mirror = mirror;
+    }
+
+    @Override
+    public String get() {
+        waitInTaskForAttributeReady(mirror, AmbariRepoMirror.SERVICE_UP, Predicates.equalTo(true));
+        return mirror.getAttribute(AmbariRepoMirror.MIRROR_URL);
+    }
+}
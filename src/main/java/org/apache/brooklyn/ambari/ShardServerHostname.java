@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import brooklyn.entity.Entity;
+import com.google.common.base.Predicates;
+import org.apache.brooklyn.ambari.server.AmbariServer;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+import static brooklyn.event.basic.DependentConfiguration.waitInTaskForAttributeReady;
+
+/**
+ * Resolves, for the agent whose config is being read, the host name of the Ambari server owning its shard, once
+ * that server has one. The shard is the one published in {@link AmbariCluster#AGENT_SHARDS}, which keeps installed
+ * agents with their server, or else is chosen by {@link AmbariClusterImpl#shardRing} over the cluster's current
+ * servers.
+ */
+class ShardServerHostname extends AgentDeferredSupplier<String> {
+
+    ShardServerHostname(AmbariCluster cluster) {
+        super(cluster);
+    }
+
+    @Override
+    protected String get(Entity agent) {
+        List<AmbariServer> servers = cluster.getAttribute(AmbariCluster.AMBARI_SERVERS);
+        AmbariServer server = publishedShard(agent, servers);
+        if (server == null) {
+            server = AmbariClusterImpl.shardRing(servers).get(agent.getId());
+        }
+        if (server == null) {
+            throw new IllegalStateException("No Ambari server for " + agent);
+        }
+        return waitInTaskForAttributeReady(server, AmbariServer.HOSTNAME, Predicates.notNull());
+    }
+
+    @Nullable
+    private AmbariServer publishedShard(Entity agent, List<AmbariServer> servers) {
+        Map<String, String> agentShards = cluster.getAttribute(AmbariCluster.AGENT_SHARDS);
+        String serverId = agentShards == null ? null : agentShards.get(agent.getId());
+        for (AmbariServer server : servers) {
+            if (server.getId().equals(serverId)) {
+                return server;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari;
+
+import brooklyn.util.javalang.JavaClassNames;
+
+import static java.lang.String.format;
+
+/**
+ * A static file server for hosts that download from one another, such as the repo mirror and the agents serving
+ * the install bundle. Python's own {@code SimpleHTTPServer} handles one request at a time, so one slow download
+ * holds up every other host; this script serves each request on its own thread.
+ */
+public final class ThreadedHttpServer {
+
+    public static final String SCRIPT_URL = JavaClassNames.resolveClasspathUrl(ThreadedHttpServer.class, "threaded-http-server.py");
+
+    private ThreadedHttpServer() {
+    }
+
+    /**
+     * @return a command that serves the current directory on {@code port} in the background, logging to
+     * {@code logFile}, using the script copied from {@link #SCRIPT_URL} to {@code script}.
+     */
+    public static String launchCommand(String script, int port, String logFile) {
+        return format("nohup python %s %d > %s 2>&1 &", script, port, logFile);
+    }
+}
@@ -2,12 +2,22 @@ package org.apache.brooklyn.ambari.agent;
 
 import brooklyn.catalog.Catalog;
 import brooklyn.config.ConfigKey;
+import brooklyn.entity.Entity;
+import brooklyn.entity.annotation.Effector;
+import brooklyn.entity.annotation.EffectorParam;
 import brooklyn.entity.basic.ConfigKeys;
+import brooklyn.entity.basic.MethodEffector;
 import brooklyn.entity.basic.SoftwareProcess;
 import brooklyn.entity.java.UsesJava;
 import brooklyn.entity.proxying.ImplementedBy;
+import brooklyn.event.AttributeSensor;
+import brooklyn.event.basic.PortAttributeSensorAndConfigKey;
+import brooklyn.event.basic.Sensors;
 import brooklyn.util.flags.SetFromFlag;
 import brooklyn.util.javalang.JavaClassNames;
+import brooklyn.util.time.Duration;
+import org.apache.brooklyn.ambari.InstallProbe;
+import org.apache.brooklyn.ambari.mirror.AmbariRepoMirror;
 
 /**
  * Created by duncangrant on 15/12/14.
@@ -25,4 +35,86 @@ public interface AmbariAgent extends SoftwareProcess, UsesJava {
     @SetFromFlag("ambariServerFQDN")
     ConfigKey<String> AMBARI_SERVER_FQDN = ConfigKeys.newStringConfigKey(
             "ambari.server.fqdn", "Fully Qualified Domain Name of ambari server that agent should register to", "Random");
+
+    @SetFromFlag("prebakedImage")
+    ConfigKey<Boolean> PREBAKED_IMAGE = InstallProbe.PREBAKED_IMAGE;
+
+    @SetFromFlag("fullInstallEstimate")
+    ConfigKey<Duration> FULL_INSTALL_ESTIMATE = InstallProbe.FULL_INSTALL_ESTIMATE;
+
+    AttributeSensor<String> INSTALL_PATH = InstallProbe.INSTALL_PATH;
+
+    AttributeSensor<Duration> INSTALL_TIME_SAVED = InstallProbe.INSTALL_TIME_SAVED;
+
+    AttributeSensor<Duration> INSTALL_DURATION = InstallProbe.INSTALL_DURATION;
+
+    @SetFromFlag("repoMirrorUrl")
+    ConfigKey<String> REPO_MIRROR_URL = AmbariRepoMirror.REPO_MIRROR_URL;
+
+    @SetFromFlag("installBundleUrl")
+    ConfigKey<String> INSTALL_BUNDLE_URL = ConfigKeys.newStringConfigKey(
+            "ambari.installBundle.url", "Tarball of the ambari-agent package and its dependencies (.deb or .rpm) to install "
+                    + "offline from, in place of the package repositories; unset to install from the repositories");
+
+    @SetFromFlag("installBundleSha256")
+    ConfigKey<String> INSTALL_BUNDLE_SHA256 = ConfigKeys.newStringConfigKey(
+            "ambari.installBundle.sha256", "Expected SHA-256 of the install bundle; if unset, each agent checks the bundle "
+                    + "against the checksum published by the agent it fetched it from");
+
+    ConfigKey<Entity> INSTALL_BUNDLE_PARENT = ConfigKeys.newConfigKey(Entity.class,
+            "ambari.installBundle.parent", "Agent to fetch the install bundle from; null to copy it from Brooklyn");
+
+    @SetFromFlag("installBundleParentTimeout")
+    ConfigKey<Duration> INSTALL_BUNDLE_PARENT_TIMEOUT = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.installBundle.parentTimeout", "Time to wait for the parent to serve the install bundle before copying "
+                    + "it from Brooklyn instead", Duration.minutes(10));
+
+    @SetFromFlag("installBundlePort")
+    PortAttributeSensorAndConfigKey INSTALL_BUNDLE_PORT = new PortAttributeSensorAndConfigKey(
+            "ambari.installBundle.port", "Port the agent serves the install bundle to its children on; must be open between agents", "8082+");
+
+    AttributeSensor<Integer> INSTALL_BUNDLE_TREE_INDEX = Sensors.newIntegerSensor(
+            "ambari.installBundle.treeIndex", "Position of the agent in the install bundle fan-out tree, given when it joins the cluster");
+
+    AttributeSensor<String> INSTALL_BUNDLE_SERVED_URL = Sensors.newStringSensor(
+            "ambari.installBundle.servedUrl", "URL the agent serves its verified copy of the install bundle on");
+
+    AttributeSensor<String> INSTALL_BUNDLE_VERIFIED_SHA256 = Sensors.newStringSensor(
+            "ambari.installBundle.verifiedSha256", "SHA-256 of the install bundle the agent installed from");
+
+    AttributeSensor<String> INSTALL_BUNDLE_SOURCE = Sensors.newStringSensor(
+            "ambari.installBundle.source", "Where the agent fetched the install bundle from: brooklyn, or the id of its parent agent");
+
+    AttributeSensor<Double> HOST_CPU_PERCENT = Sensors.newDoubleSensor(
+            "ambari.host.cpu.percent", "CPU utilisation (user and system) averaged over the recent window");
+
+    AttributeSensor<Double> HOST_CPU_PERCENT_P95 = Sensors.newDoubleSensor(
+            "ambari.host.cpu.percent.p95", "95th percentile of CPU utilisation over the recent window");
+
+    AttributeSensor<Double> HOST_MEMORY_USED_PERCENT = Sensors.newDoubleSensor(
+            "ambari.host.memory.usedPercent", "Memory used, as a percentage of total, averaged over the recent window");
+
+    AttributeSensor<Double> HOST_DISK_USED_PERCENT = Sensors.newDoubleSensor(
+            "ambari.host.disk.usedPercent", "Disk used, as a percentage of total, averaged over the recent window");
+
+    AttributeSensor<Double> HOST_NETWORK_BYTES_IN = Sensors.newDoubleSensor(
+            "ambari.host.network.bytesIn", "Network bytes received per second, averaged over the recent window");
+
+    AttributeSensor<Double> HOST_NETWORK_BYTES_OUT = Sensors.newDoubleSensor(
+            "ambari.host.network.bytesOut", "Network bytes sent per second, averaged over the recent window");
+
+    AttributeSensor<String> HOST_ZONE = Sensors.newStringSensor(
+            "ambari.host.zone", "Availability zone of the agent's machine");
+
+    AttributeSensor<String> HOST_RACK = Sensors.newStringSensor(
+            "ambari.host.rack", "Hadoop rack of the agent's machine, by default one per zone");
+
+    MethodEffector<Void> SET_AMBARI_SERVER = new MethodEffector<Void>(AmbariAgent.class, "setAmbariServer");
+
+    @Effector(description = "Points the agent at another Ambari server and restarts it")
+    public void setAmbariServer(@EffectorParam(name = "ambariServerFQDN", description = "Fully Qualified Domain Name of the new ambari server") String ambariServerFQDN);
+
+    @Effector(description = "Overrides the zone and rack detected for the agent's machine")
+    public void setHostTopology(@EffectorParam(name = "zone", description = "Availability zone") String zone,
+                                @EffectorParam(name = "rack", description = "Hadoop rack, such as /zone/rack; defaults to one rack per zone", nullable = true) String rack);
 }
@@ -6,4 +6,9 @@ import brooklyn.entity.java.JavaSoftwareProcessDriver;
  * Created by duncangrant on 15/12/14.
  */
 public interface AmbariAgentDriver extends JavaSoftwareProcessDriver{
+
+    /**
+     * Rewrites the agent's configuration from the entity's current config.
+     */
+    void customize();
 }
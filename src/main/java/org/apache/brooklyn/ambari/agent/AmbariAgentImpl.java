@@ -1,6 +1,7 @@
 package org.apache.brooklyn.ambari.agent;
 
 import brooklyn.entity.basic.SoftwareProcessImpl;
+import brooklyn.location.basic.Machines;
 import org.apache.brooklyn.ambari.agent.AmbariAgent;
 import org.apache.brooklyn.ambari.agent.AmbariAgentDriver;
 
@@ -17,6 +18,12 @@ public class AmbariAgentImpl extends SoftwareProcessImpl implements AmbariAgent
     protected void connectSensors() {
         super.connectSensors();
 
+        if (getAttribute(HOST_RACK) == null) {
+            String zone = HostTopology.zoneOf(Machines.findUniqueMachineLocation(getLocations()).orNull());
+            setAttribute(HOST_ZONE, zone);
+            setAttribute(HOST_RACK, HostTopology.rackOf(zone));
+        }
+
         //TODO - Need to wire isrunning to service up (I think)
         setAttribute(SERVICE_UP, true);
 
@@ -30,4 +37,18 @@ public class AmbariAgentImpl extends SoftwareProcessImpl implements AmbariAgent
     public String getAmbariServerFQDN() {
         return getConfig(AMBARI_SERVER_FQDN);
     }
+
+    @Override
+    public void setHostTopology(String zone, String rack) {
+        setAttribute(HOST_ZONE, zone);
+        setAttribute(HOST_RACK, rack != null ? rack : HostTopology.rackOf(zone));
+    }
+
+    @Override
+    public void setAmbariServer(String ambariServerFQDN) {
+        setConfig(AMBARI_SERVER_FQDN, ambariServerFQDN);
+        AmbariAgentDriver driver = (AmbariAgentDriver) getDriver();
+        driver.customize();
+        driver.restart();
+    }
 }
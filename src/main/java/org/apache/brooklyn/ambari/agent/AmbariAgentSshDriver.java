@@ -1,20 +1,40 @@
 package org.apache.brooklyn.ambari.agent;
 
+import brooklyn.entity.Entity;
+import brooklyn.entity.basic.Attributes;
+import brooklyn.entity.basic.Entities;
 import brooklyn.entity.basic.EntityLocal;
 import brooklyn.entity.java.JavaSoftwareProcessSshDriver;
+import brooklyn.event.basic.DependentConfiguration;
 import brooklyn.location.basic.SshMachineLocation;
+import brooklyn.management.Task;
 import brooklyn.util.collections.MutableMap;
+import brooklyn.util.exceptions.Exceptions;
+import brooklyn.util.time.Duration;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.apache.brooklyn.ambari.DefaultAmbariInstallHelper;
+import org.apache.brooklyn.ambari.InstallProbe;
+import org.apache.brooklyn.ambari.ThreadedHttpServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static brooklyn.util.ssh.BashCommands.alternatives;
+import static brooklyn.util.ssh.BashCommands.ifExecutableElse1;
 import static brooklyn.util.ssh.BashCommands.installPackage;
 import static brooklyn.util.ssh.BashCommands.sudo;
 import static java.lang.String.format;
 
 class AmbariAgentSshDriver extends JavaSoftwareProcessSshDriver implements AmbariAgentDriver {
     public static final Logger log = LoggerFactory.getLogger(AmbariAgentSshDriver.class);
-    private final DefaultAmbariInstallHelper defaultAmbariInstallHelper = new DefaultAmbariInstallHelper();
+    private static final String INSTALL_BUNDLE_FILE = "bundle.tar";
+    private static final String BROOKLYN = "brooklyn";
 
     public AmbariAgentSshDriver(EntityLocal entity, SshMachineLocation machine) {
         super(entity, machine);
@@ -32,15 +52,48 @@ class AmbariAgentSshDriver extends JavaSoftwareProcessSshDriver implements Ambar
 
     @Override
     public void stop() {
-        newScript(STOPPING).body.append(sudo("ambari-agent stop")).execute();
+        newScript(STOPPING).body.append(
+                sudo("ambari-agent stop"),
+                format("if [ -f %1$s ]; then kill $(cat %1$s); rm %1$s; fi", getInstallBundleServerPidFile()))
+                .execute();
+        entity.setAttribute(AmbariAgent.INSTALL_BUNDLE_SERVED_URL, null);
     }
 
     @Override
     public void install() {
-        newScript(INSTALLING).body.append(
-                defaultAmbariInstallHelper.installAmbariRequirements(getMachine()),
-                installPackage("ambari-agent"))
-                .execute();
+        long start = System.currentTimeMillis();
+        if (isPrebaked()) {
+            entity.setAttribute(AmbariAgent.INSTALL_PATH, InstallProbe.PREBAKED);
+            entity.setAttribute(AmbariAgent.INSTALL_TIME_SAVED, InstallProbe.timeSaved(
+                    InstallProbe.fullInstallDuration(entity, AmbariAgent.class), System.currentTimeMillis() - start));
+            return;
+        }
+        if (entity.getConfig(AmbariAgent.INSTALL_BUNDLE_URL) != null) {
+            installFromBundle();
+        } else {
+            newScript(INSTALLING).body.append(
+                    new DefaultAmbariInstallHelper(entity.getConfig(AmbariAgent.REPO_MIRROR_URL)).installAmbariRequirements(getMachine()),
+                    installPackage("ambari-agent"))
+                    .execute();
+        }
+        entity.setAttribute(AmbariAgent.INSTALL_PATH, InstallProbe.FULL);
+        entity.setAttribute(AmbariAgent.INSTALL_DURATION, Duration.millis(System.currentTimeMillis() - start));
+        entity.setAttribute(AmbariAgent.INSTALL_TIME_SAVED, Duration.ZERO);
+    }
+
+    /**
+     * Whether the machine, from a pre-baked image, already has the expected agent version installed and configured
+     * with a host name, as found by a single probe.
+     */
+    private boolean isPrebaked() {
+        if (!entity.getConfig(AmbariAgent.PREBAKED_IMAGE)) {
+            return false;
+        }
+        InstallProbe probe = InstallProbe.run(getMachine(), ImmutableList.of("ambari-agent", "ntp"),
+                ImmutableMap.of("configured", "grep -q '^hostname=' /etc/ambari-agent/conf/ambari-agent.ini 2> /dev/null"));
+        return probe.isInstalled("ambari-agent", DefaultAmbariInstallHelper.AMBARI_VERSION)
+                && probe.isInstalled("ntp", null)
+                && probe.passed("configured");
     }
 
     @Override
@@ -56,9 +109,124 @@ class AmbariAgentSshDriver extends JavaSoftwareProcessSshDriver implements Ambar
 
     }
 
+    /**
+     * Starts the agent, and serves the install bundle again if it was installed from one here but stopped serving
+     * it, as on restart; an agent that skipped its install has no bundle to serve.
+     */
     @Override
     public void launch() {
         newScript(LAUNCHING).body.append(sudo("ambari-agent start")).execute();
+        if (isInstalledFromBundle() && entity.getAttribute(AmbariAgent.INSTALL_BUNDLE_SERVED_URL) == null) {
+            serveInstallBundle();
+        }
+    }
+
+    private boolean isInstalledFromBundle() {
+        return InstallProbe.FULL.equals(entity.getAttribute(AmbariAgent.INSTALL_PATH))
+                && entity.getAttribute(AmbariAgent.INSTALL_BUNDLE_VERIFIED_SHA256) != null;
+    }
+
+    /**
+     * Installs the agent from the packages in the install bundle, fetched from the parent agent if it has one and
+     * serves a copy with the expected checksum in time, or otherwise copied from Brooklyn.
+     */
+    private void installFromBundle() {
+        String bundle = format("%s/%s", getInstallBundleDir(), INSTALL_BUNDLE_FILE);
+        newScript("preparing install bundle").body.append(format("mkdir -p %s", getInstallBundleDir())).execute();
+
+        String expectedSha256 = entity.getConfig(AmbariAgent.INSTALL_BUNDLE_SHA256);
+        String source = null;
+        Entity parent = entity.getConfig(AmbariAgent.INSTALL_BUNDLE_PARENT);
+        String parentUrl = parent == null ? null : waitForServedInstallBundle(parent);
+        if (parentUrl != null) {
+            String parentSha256 = expectedSha256 != null ? expectedSha256 : parent.getAttribute(AmbariAgent.INSTALL_BUNDLE_VERIFIED_SHA256);
+            int result = newScript("fetching install bundle").body.append(
+                    format("wget -q -O %1$s %2$s || curl -sf -o %1$s %2$s", bundle, parentUrl))
+                    .execute();
+            if (result == 0 && parentSha256 != null && parentSha256.equals(sha256(bundle))) {
+                source = parent.getId();
+            } else {
+                log.warn("Failed to fetch a verified install bundle from {} for {}; copying it from Brooklyn", parent, entity);
+            }
+        }
+        if (source == null) {
+            copyResource(entity.getConfig(AmbariAgent.INSTALL_BUNDLE_URL), bundle);
+            if (expectedSha256 != null && !expectedSha256.equals(sha256(bundle))) {
+                throw new IllegalStateException("Install bundle copied to " + entity + " does not match its SHA-256 " + expectedSha256);
+            }
+            source = BROOKLYN;
+        }
+
+        newScript(INSTALLING).body.append(
+                format("cd %s", getInstallBundleDir()),
+                format("tar xf %s", INSTALL_BUNDLE_FILE),
+                alternatives(
+                        ifExecutableElse1("dpkg", sudo("dpkg -i *.deb")),
+                        ifExecutableElse1("rpm", sudo("rpm -Uvh --replacepkgs *.rpm"))))
+                .failOnNonZeroResultCode()
+                .execute();
+        entity.setAttribute(AmbariAgent.INSTALL_BUNDLE_VERIFIED_SHA256, expectedSha256 != null ? expectedSha256 : sha256(bundle));
+        entity.setAttribute(AmbariAgent.INSTALL_BUNDLE_SOURCE, source);
+        serveInstallBundle();
+    }
+
+    /**
+     * @return the URL the parent serves the install bundle on, or null if it does not within the timeout or
+     * skipped its install, so has no bundle to serve.
+     */
+    private String waitForServedInstallBundle(Entity parent) {
+        Duration timeout = entity.getConfig(AmbariAgent.INSTALL_BUNDLE_PARENT_TIMEOUT);
+        Task<String> servedUrl = DependentConfiguration.builder()
+                .attributeWhenReady(parent, AmbariAgent.INSTALL_BUNDLE_SERVED_URL)
+                .abortIf(parent, AmbariAgent.INSTALL_PATH, Predicates.equalTo(InstallProbe.PREBAKED))
+                .build();
+        Entities.submit(entity, servedUrl);
+        try {
+            return servedUrl.get(timeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            servedUrl.cancel(true);
+            log.warn("Timed out after {} waiting for {} to serve the install bundle to {}", new Object[] {timeout, parent, entity});
+            return null;
+        } catch (ExecutionException e) {
+            log.debug("Not fetching the install bundle from {} for {}", parent, entity, e);
+            return null;
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private String sha256(String file) {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        int result = getMachine().execCommands(MutableMap.of("out", stdout), "install bundle checksum",
+                ImmutableList.of(format("sha256sum %s", file)));
+        String output = new String(stdout.toByteArray()).trim();
+        return result == 0 && !output.isEmpty() ? output.split("\\s+")[0] : null;
+    }
+
+    /**
+     * Serves the verified install bundle so that the agent's children in the fan-out tree fetch it from here, from
+     * as soon as it is installed rather than once the agent has started.
+     */
+    private void serveInstallBundle() {
+        Integer port = entity.getAttribute(AmbariAgent.INSTALL_BUNDLE_PORT);
+        String server = format("%s/threaded-http-server.py", getInstallDir());
+        copyResource(ThreadedHttpServer.SCRIPT_URL, server);
+        newScript("serving install bundle").body.append(
+                format("cd %s", getInstallBundleDir()),
+                ThreadedHttpServer.launchCommand(server, port, format("%s/bundle-server.log", getInstallDir())),
+                format("echo $! > %s", getInstallBundleServerPidFile()))
+                .failOnNonZeroResultCode()
+                .execute();
+        entity.setAttribute(AmbariAgent.INSTALL_BUNDLE_SERVED_URL,
+                format("http://%s:%d/%s", entity.getAttribute(Attributes.HOSTNAME), port, INSTALL_BUNDLE_FILE));
+    }
+
+    private String getInstallBundleDir() {
+        return format("%s/bundle", getInstallDir());
+    }
+
+    private String getInstallBundleServerPidFile() {
+        return format("%s/bundle-server.pid", getInstallDir());
     }
 
     String getTemplateConfigurationUrl() {
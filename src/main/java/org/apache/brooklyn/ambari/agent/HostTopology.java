@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.agent;
+
+import brooklyn.config.ConfigKey;
+import brooklyn.entity.basic.ConfigKeys;
+import brooklyn.location.Location;
+import brooklyn.location.jclouds.JcloudsSshMachineLocation;
+import org.jclouds.domain.LocationScope;
+
+import javax.annotation.Nullable;
+
+/**
+ * Finds the availability zone of a machine: from the cloud's own location for jclouds machines, otherwise from
+ * {@link #ZONE} on the machine or any location above it.
+ */
+public class HostTopology {
+
+    public static final ConfigKey<String> ZONE = ConfigKeys.newStringConfigKey(
+            "ambari.zone", "Availability zone of the machines in this location, where the cloud does not report one");
+
+    private HostTopology() {
+    }
+
+    @Nullable
+    public static String zoneOf(@Nullable Location location) {
+        for (Location current = location; current != null; current = current.getParent()) {
+            if (current instanceof JcloudsSshMachineLocation) {
+                org.jclouds.domain.Location cloudLocation = ((JcloudsSshMachineLocation) current).getNode().getLocation();
+                for (; cloudLocation != null; cloudLocation = cloudLocation.getParent()) {
+                    if (cloudLocation.getScope() == LocationScope.ZONE) {
+                        return cloudLocation.getId();
+                    }
+                }
+            }
+            String zone = current.getConfig(ZONE);
+            if (zone != null) {
+                return zone;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the Hadoop rack for hosts in {@code zone}: one rack per zone
+     */
+    @Nullable
+    public static String rackOf(@Nullable String zone) {
+        return zone == null ? null : "/" + zone;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.mirror;
+
+import brooklyn.catalog.Catalog;
+import brooklyn.config.ConfigKey;
+import brooklyn.entity.basic.ConfigKeys;
+import brooklyn.entity.basic.SoftwareProcess;
+import brooklyn.entity.proxying.ImplementedBy;
+import brooklyn.event.AttributeSensor;
+import brooklyn.event.basic.PortAttributeSensorAndConfigKey;
+import brooklyn.event.basic.Sensors;
+import brooklyn.util.flags.SetFromFlag;
+
+/**
+ * Serves a local copy of the Ambari and HDP package repositories over HTTP, so that nodes inside the deployment
+ * install from it rather than each downloading the same packages from {@link #PUBLIC_REPO_URL}. The mirror's
+ * content is laid out like {@link #PUBLIC_REPO_URL}, for example {@code ambari/ubuntu12/1.x/updates/1.7.0/} and
+ * {@code HDP/ubuntu12/2.x/}, so that repo URLs are rewritten by swapping the host alone. For Ubuntu nodes the
+ * mirror also holds the Ambari repository's signing key at {@link #APT_KEY_PATH}, so that they need no keyserver.
+ */
+@Catalog(name = "Ambari Repo Mirror", description = "Local yum/apt mirror of the Ambari and HDP package repositories")
+@ImplementedBy(AmbariRepoMirrorImpl.class)
+public interface AmbariRepoMirror extends SoftwareProcess {
+
+    String PUBLIC_REPO_URL = "http://public-repo-1.hortonworks.com";
+
+    /**
+     * Path on the mirror of the Ambari apt repository's signing key, as exported by
+     * {@code gpg --export --armor B9733A7A07513CAD}.
+     */
+    String APT_KEY_PATH = "ambari/ubuntu12/ambari.gpg.key";
+
+    @SetFromFlag("source")
+    ConfigKey<String> MIRROR_SOURCE = ConfigKeys.newStringConfigKey(
+            "ambari.repoMirror.source", "Directory on the mirror's machine holding the mirrored repositories, or URL of "
+                    + "a tarball (.tar.gz, .tgz or .tar) of them to extract on it");
+
+    @SetFromFlag("httpPort")
+    PortAttributeSensorAndConfigKey HTTP_PORT = new PortAttributeSensorAndConfigKey(
+            "ambari.repoMirror.httpPort", "Port the mirror is served on", "8081+");
+
+    /**
+     * Base URL of a mirror to install Ambari and HDP packages from in place of {@link #PUBLIC_REPO_URL}, read by
+     * the Ambari server and agents; unset to install from the public repositories.
+     */
+    ConfigKey<String> REPO_MIRROR_URL = ConfigKeys.newStringConfigKey(
+            "ambari.install.repoMirrorUrl", "Base URL of a mirror of " + PUBLIC_REPO_URL + " to install Ambari and HDP packages from");
+
+    AttributeSensor<String> MIRROR_URL = Sensors.newStringSensor(
+            "ambari.repoMirror.url", "Base URL the mirror serves the repositories on");
+}
@@ -16,14 +16,10 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-package org.apache.brooklyn.ambari.rest;
+package org.apache.brooklyn.ambari.mirror;
 
-import java.util.Map;
+import brooklyn.entity.basic.SoftwareProcessDriver;
 
-/**
- * Created by duncangrant on 22/01/15.
- */
-public interface AsMap {
+public interface AmbariRepoMirrorDriver extends SoftwareProcessDriver {
 
-    public Map asMap();
 }
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.mirror;
+
+import brooklyn.entity.basic.SoftwareProcessImpl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+public class AmbariRepoMirrorImpl extends SoftwareProcessImpl implements AmbariRepoMirror {
+
+    @Override
+    public void init() {
+        super.init();
+        checkNotNull(getConfig(MIRROR_SOURCE), "ambari.repoMirror.source must be set");
+    }
+
+    @Override
+    public Class getDriverInterface() {
+        return AmbariRepoMirrorDriver.class;
+    }
+
+    @Override
+    protected void connectSensors() {
+        super.connectSensors();
+        connectServiceUpIsRunning();
+        setAttribute(MIRROR_URL, String.format("http://%s:%d", getAttribute(HOSTNAME), getAttribute(HTTP_PORT)));
+    }
+
+    @Override
+    protected void disconnectSensors() {
+        disconnectServiceUpIsRunning();
+        super.disconnectSensors();
+    }
+}
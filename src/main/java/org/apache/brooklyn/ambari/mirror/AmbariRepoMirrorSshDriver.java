@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.mirror;
+
+import brooklyn.entity.basic.AbstractSoftwareProcessSshDriver;
+import brooklyn.entity.basic.EntityLocal;
+import brooklyn.location.basic.SshMachineLocation;
+import brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.ambari.ThreadedHttpServer;
+
+import static java.lang.String.format;
+
+/**
+ * Serves the mirror with {@link ThreadedHttpServer}, which needs only the Python every supported image has, so that
+ * the mirror needs nothing from the internet itself and serves every node's downloads at once.
+ */
+public class AmbariRepoMirrorSshDriver extends AbstractSoftwareProcessSshDriver implements AmbariRepoMirrorDriver {
+
+    public AmbariRepoMirrorSshDriver(EntityLocal entity, SshMachineLocation machine) {
+        super(entity, machine);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return newScript(MutableMap.of("usePidFile", true), CHECK_RUNNING).execute() == 0;
+    }
+
+    @Override
+    public void stop() {
+        newScript(MutableMap.of("usePidFile", true), STOPPING).execute();
+    }
+
+    @Override
+    public void install() {
+    }
+
+    @Override
+    public void customize() {
+        if (!isTarball(getSource())) {
+            return;
+        }
+        String tarball = format("%s/mirror.tar", getRunDir());
+        copyResource(getSource(), tarball);
+        newScript(CUSTOMIZING).body.append(
+                format("mkdir -p %s", getMirrorDir()),
+                format("tar xf %s -C %s", tarball, getMirrorDir()),
+                format("rm %s", tarball))
+                .execute();
+    }
+
+    @Override
+    public void launch() {
+        String server = format("%s/threaded-http-server.py", getRunDir());
+        copyResource(ThreadedHttpServer.SCRIPT_URL, server);
+        newScript(MutableMap.of("usePidFile", true), LAUNCHING).body.append(
+                format("cd %s", getMirrorDir()),
+                ThreadedHttpServer.launchCommand(server, entity.getAttribute(AmbariRepoMirror.HTTP_PORT), format("%s/console", getRunDir())))
+                .execute();
+    }
+
+    String getSource() {
+        return entity.getConfig(AmbariRepoMirror.MIRROR_SOURCE);
+    }
+
+    String getMirrorDir() {
+        return isTarball(getSource()) ? format("%s/mirror", getRunDir()) : getSource();
+    }
+
+    static boolean isTarball(String source) {
+        return source.endsWith(".tar.gz") || source.endsWith(".tgz") || source.endsWith(".tar");
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.brooklyn.ambari.rest;
 
 import brooklyn.util.http.HttpToolResponse;
+import com.google.common.base.Throwables;
 
 import java.text.MessageFormat;
 
@@ -31,9 +32,37 @@ public class AmbariApiError extends RuntimeException {
 
     static final MessageFormat messageFormat = new MessageFormat(ERROR_MESSAGE);
 
-    private HttpToolResponse httpToolResponse;
+    private final int responseCode;
 
     public AmbariApiError(HttpToolResponse httpToolResponse) {
         super(messageFormat.format(ERROR_MESSAGE, httpToolResponse.getContentAsString(), Integer.toString(httpToolResponse.getResponseCode())));
+        this.responseCode = httpToolResponse.getResponseCode();
+    }
+
+    /**
+     * For calls refused before a request reached the server.
+     */
+    public AmbariApiError(String message) {
+        super(message);
+        this.responseCode = -1;
+    }
+
+    /**
+     * @return the HTTP response code returned by Ambari, or -1 if the call never reached the server.
+     */
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * @return whether Ambari rejected the call with a 409, as it does a create of a resource that already exists
+     */
+    public static boolean isConflict(Throwable throwable) {
+        for (Throwable cause : Throwables.getCausalChain(throwable)) {
+            if (cause instanceof AmbariApiError) {
+                return ((AmbariApiError) cause).getResponseCode() == 409;
+            }
+        }
+        return false;
     }
 }
@@ -22,6 +22,7 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -32,15 +33,29 @@ public interface AmbariApiHelper {
 
     public void addHostToCluster(String cluster, String host, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
 
+    public void addHostsToCluster(String cluster, List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
     public void addServiceToCluster(String cluster, String service, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
 
     public void createComponent(String cluster, String service, String component, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
 
     public void createHostComponent(String cluster, String hostName, String component, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
 
+    public void createHostComponents(String cluster, List<String> hostNames, List<String> components, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public HostsResponse getHosts(List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
     public RecommendationResponse getRecommendations(List<String> hosts, Iterable<String> services, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
 
     public void createBlueprint(String blueprintName, DefaultAmbariBluePrint blueprint, URI attribute, UsernamePasswordCredentials usernamePasswordCredentials);
 
-    public void createCluster(String clusterName, String blueprintName, DefaultBluePrintClusterBinding bluePrintClusterBinding, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials);
+    public RequestResponse createCluster(String clusterName, String blueprintName, DefaultBluePrintClusterBinding bluePrintClusterBinding, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials);
+
+    /**
+     * Adds hosts to an existing blueprint cluster, each into the given host group and, where {@code hostRacks}
+     * has one, its rack, in one request; Ambari installs and starts the host group's components on them.
+     */
+    public RequestResponse addHostsToHostGroup(String cluster, String blueprintName, String hostGroup, List<String> hosts, Map<String, String> hostRacks, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public RequestResponse getRequest(String cluster, int requestId, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
 }
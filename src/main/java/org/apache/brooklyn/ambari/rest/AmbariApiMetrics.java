@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.time.Duration;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, error and throughput metrics for Ambari API calls, keyed by endpoint template (for example
+ * {@code POST /api/v1/clusters/{cluster}/hosts/{host}}) rather than by concrete URI so that the number of
+ * endpoints tracked stays bounded.
+ */
+public class AmbariApiMetrics {
+
+    public static final String CALLS = "calls";
+    public static final String ERRORS = "errors";
+    public static final String BYTES_IN = "bytesIn";
+    public static final String BYTES_OUT = "bytesOut";
+    public static final String WINDOW_CALLS = "windowCalls";
+    public static final String P50 = "p50";
+    public static final String P99 = "p99";
+    public static final String MAX = "max";
+
+    private static final int WINDOW_SLOTS = 6;
+
+    private final Duration window;
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+
+    public AmbariApiMetrics(Duration window) {
+        this.window = window;
+    }
+
+    public void record(String endpoint, long latencyNanos, boolean error, long bytesIn, long bytesOut) {
+        EndpointMetrics metrics = endpoints.get(endpoint);
+        if (metrics == null) {
+            EndpointMetrics newMetrics = new EndpointMetrics(new LatencyHistogram(window, WINDOW_SLOTS));
+            metrics = endpoints.putIfAbsent(endpoint, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        metrics.latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+        metrics.calls.incrementAndGet();
+        if (error) {
+            metrics.errors.incrementAndGet();
+        }
+        metrics.bytesIn.addAndGet(Math.max(0, bytesIn));
+        metrics.bytesOut.addAndGet(Math.max(0, bytesOut));
+    }
+
+    /**
+     * @return per endpoint: cumulative {@link #CALLS}, {@link #ERRORS}, {@link #BYTES_IN} and {@link #BYTES_OUT},
+     * and {@link #WINDOW_CALLS}, {@link #P50}, {@link #P99} and {@link #MAX} latency over the sliding window.
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<String, Map<String, Object>>();
+        for (Map.Entry<String, EndpointMetrics> entry : endpoints.entrySet()) {
+            EndpointMetrics metrics = entry.getValue();
+            LatencyHistogram.Snapshot latency = metrics.latency.snapshot();
+            result.put(entry.getKey(), ImmutableMap.<String, Object>builder()
+                    .put(CALLS, metrics.calls.get())
+                    .put(ERRORS, metrics.errors.get())
+                    .put(BYTES_IN, metrics.bytesIn.get())
+                    .put(BYTES_OUT, metrics.bytesOut.get())
+                    .put(WINDOW_CALLS, latency.getCount())
+                    .put(P50, latency.getPercentile(50))
+                    .put(P99, latency.getPercentile(99))
+                    .put(MAX, latency.getMax())
+                    .build());
+        }
+        return result;
+    }
+
+    private static class EndpointMetrics {
+        final LatencyHistogram latency;
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong bytesIn = new AtomicLong();
+        final AtomicLong bytesOut = new AtomicLong();
+
+        EndpointMetrics(LatencyHistogram latency) {
+            this.latency = latency;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.http.HttpTool;
+import brooklyn.util.time.Duration;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.pool.PoolStats;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep-alive connection pool shared by all REST calls made against a single Ambari server.
+ * <p>
+ * One {@link HttpClient} is built per server address and user, all of them leasing connections from the same
+ * bounded {@link PoolingClientConnectionManager}, so consecutive calls reuse open TCP (and TLS) connections
+ * instead of paying a new handshake each time.
+ */
+public class AmbariConnectionPool {
+
+    private final PoolingClientConnectionManager connectionManager;
+    private final Duration idleTimeout;
+    private final ConcurrentMap<String, HttpClient> httpClients = new ConcurrentHashMap<String, HttpClient>();
+
+    public AmbariConnectionPool(int maxConnections, Duration idleTimeout) {
+        this.connectionManager = new PoolingClientConnectionManager(SchemeRegistryFactory.createDefault());
+        this.connectionManager.setMaxTotal(maxConnections);
+        this.connectionManager.setDefaultMaxPerRoute(maxConnections);
+        this.idleTimeout = idleTimeout;
+    }
+
+    public HttpClient getHttpClient(URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials) {
+        String key = String.format("%s://%s@%s", baseUri.getScheme(), usernamePasswordCredentials.getUserName(), baseUri.getAuthority());
+        HttpClient httpClient = httpClients.get(key);
+        if (httpClient == null) {
+            //TODO trustAll should probably be fixed
+            HttpClient newHttpClient = HttpTool.httpClientBuilder()
+                    .clientConnectionManager(connectionManager)
+                    .credentials(usernamePasswordCredentials)
+                    .trustAll()
+                    .uri(baseUri)
+                    .build();
+            httpClient = httpClients.putIfAbsent(key, newHttpClient);
+            if (httpClient == null) {
+                httpClient = newHttpClient;
+            }
+        }
+        return httpClient;
+    }
+
+    /**
+     * Closes connections that have expired or been idle for longer than the configured idle timeout.
+     */
+    public void evictIdleConnections() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+    }
+
+    public PoolStats getStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    public void shutdown() {
+        httpClients.clear();
+        connectionManager.shutdown();
+    }
+}
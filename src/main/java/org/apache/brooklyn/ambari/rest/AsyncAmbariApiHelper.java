@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.time.Duration;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.http.auth.UsernamePasswordCredentials;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking variant of {@link AmbariApiHelper}: every call returns as soon as the request is queued, and the
+ * returned future completes (or fails with the {@link AmbariApiError}) once Ambari has answered.
+ */
+public interface AsyncAmbariApiHelper {
+    public ListenableFuture<Void> createClusterAPI(String cluster, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public ListenableFuture<Void> addHostToCluster(String cluster, String host, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public ListenableFuture<Void> addHostsToCluster(String cluster, List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public ListenableFuture<Void> addServiceToCluster(String cluster, String service, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public ListenableFuture<Void> createComponent(String cluster, String service, String component, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public ListenableFuture<Void> createHostComponent(String cluster, String hostName, String component, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public ListenableFuture<Void> createHostComponents(String cluster, List<String> hostNames, List<String> components, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public ListenableFuture<HostsResponse> getHosts(List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public ListenableFuture<RecommendationResponse> getRecommendations(List<String> hosts, Iterable<String> services, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public ListenableFuture<Void> createBlueprint(String blueprintName, DefaultAmbariBluePrint blueprint, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials);
+
+    public ListenableFuture<RequestResponse> createCluster(String clusterName, String blueprintName, DefaultBluePrintClusterBinding bluePrintClusterBinding, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials);
+
+    public ListenableFuture<RequestResponse> addHostsToHostGroup(String cluster, String blueprintName, String hostGroup, List<String> hosts, Map<String, String> hostRacks, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    public ListenableFuture<RequestResponse> getRequest(String cluster, int requestId, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri);
+
+    /**
+     * Stops accepting new calls; calls already queued are still sent.
+     */
+    public void shutdown();
+
+    /**
+     * Waits, after {@link #shutdown()}, for the calls already queued to finish.
+     *
+     * @return whether they all finished within the timeout
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException;
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for turning many single-resource Ambari calls into a few multi-resource ones.
+ */
+public class BulkRequests {
+
+    private BulkRequests() {
+    }
+
+    /**
+     * Groups hosts that need exactly the same components (in any order), so that each group can be created with a
+     * single {@code Hosts/host_name.in(...)} request. Hosts with no components are dropped.
+     */
+    public static Map<List<String>, List<String>> groupHostsByComponents(Map<String, ? extends List<String>> hostComponents) {
+        Map<List<String>, List<String>> hostsByComponents = new LinkedHashMap<List<String>, List<String>>();
+        for (Map.Entry<String, ? extends List<String>> entry : hostComponents.entrySet()) {
+            if (entry.getValue() == null || entry.getValue().isEmpty()) {
+                continue;
+            }
+            List<String> components = ImmutableSortedSet.copyOf(entry.getValue()).asList();
+            List<String> hosts = hostsByComponents.get(components);
+            if (hosts == null) {
+                hosts = new ArrayList<String>();
+                hostsByComponents.put(components, hosts);
+            }
+            hosts.add(entry.getKey());
+        }
+        return hostsByComponents;
+    }
+
+    /**
+     * Splits {@code items} into consecutive batches of at most {@code batchSize}, each safe to hand to another thread.
+     */
+    public static <T> List<List<T>> batches(List<T> items, int batchSize) {
+        List<List<T>> batches = new ArrayList<List<T>>();
+        for (List<T> batch : Lists.partition(items, Math.max(1, batchSize))) {
+            batches.add(ImmutableList.copyOf(batch));
+        }
+        return batches;
+    }
+}
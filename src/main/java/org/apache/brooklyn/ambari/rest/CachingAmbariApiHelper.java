@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.time.Duration;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMultiset;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Ordering;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers {@link #getRecommendations} from a cache when Ambari has already recommended a layout for the same stack,
+ * the same services and hosts of the same shapes (OS, CPU count and memory, to the nearest GB), re-binding the
+ * cached layout to the host names actually asked for. Host shapes are looked up in batches of at most
+ * {@code hostLookupBatchSize} hosts, so that the query string stays within URL limits on large clusters; if the
+ * lookup fails, the recommendation is asked of Ambari as if there were no cache.
+ */
+public class CachingAmbariApiHelper extends ForwardingAmbariApiHelper {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingAmbariApiHelper.class);
+
+    private final AmbariApiHelper delegate;
+    private final int hostLookupBatchSize;
+    private final Cache<List<Object>, CachedRecommendation> recommendations;
+
+    public CachingAmbariApiHelper(AmbariApiHelper delegate, long maximumSize, Duration expireAfterWrite, int hostLookupBatchSize) {
+        this.delegate = delegate;
+        this.hostLookupBatchSize = hostLookupBatchSize;
+        this.recommendations = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite.toMilliseconds(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    protected AmbariApiHelper delegate() {
+        return delegate;
+    }
+
+    public CacheStats stats() {
+        return recommendations.stats();
+    }
+
+    @Override
+    public RecommendationResponse getRecommendations(List<String> hosts, Iterable<String> services, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        Map<String, String> hostShapes;
+        try {
+            hostShapes = lookUpHostShapes(hosts, usernamePasswordCredentials, baseUri);
+        } catch (RuntimeException e) {
+            LOG.debug("Failed to look up host shapes, so not using cached recommendations: {}", e.toString());
+            return delegate.getRecommendations(hosts, services, usernamePasswordCredentials, baseUri);
+        }
+        if (!hostShapes.keySet().containsAll(hosts)) {
+            // Not every host has reported its resources yet, so there is no shape to key on
+            return delegate.getRecommendations(hosts, services, usernamePasswordCredentials, baseUri);
+        }
+        List<Object> key = ImmutableList.<Object>of(
+                DefaultAmbariApiHelper.STACK_VERSION,
+                ImmutableSortedSet.copyOf(services),
+                ImmutableSortedMultiset.copyOf(hostShapes.values()));
+        CachedRecommendation cached = recommendations.getIfPresent(key);
+        if (cached != null) {
+            return cached.rebindTo(hostShapes);
+        }
+        RecommendationResponse recommendation = delegate.getRecommendations(hosts, services, usernamePasswordCredentials, baseUri);
+        recommendations.put(key, new CachedRecommendation(recommendation, hostShapes));
+        return recommendation;
+    }
+
+    private Map<String, String> lookUpHostShapes(List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        Map<String, String> hostShapes = new LinkedHashMap<String, String>();
+        for (List<String> batch : BulkRequests.batches(hosts, hostLookupBatchSize)) {
+            hostShapes.putAll(getHostShapes(delegate.getHosts(batch, usernamePasswordCredentials, baseUri)));
+        }
+        return hostShapes;
+    }
+
+    static Map<String, String> getHostShapes(HostsResponse hostsResponse) {
+        Map<String, String> hostShapes = new LinkedHashMap<String, String>();
+        if (hostsResponse != null && hostsResponse.items != null) {
+            for (HostsResponse.Item item : hostsResponse.items) {
+                HostsResponse.Host host = item.Hosts;
+                if (host != null && host.host_name != null && host.cpu_count != null && host.total_mem != null) {
+                    long memoryGb = Math.round(host.total_mem / (1024.0 * 1024.0));
+                    hostShapes.put(host.host_name, String.format("%s/%dcpu/%dGB", host.os_type, host.cpu_count, memoryGb));
+                }
+            }
+        }
+        return hostShapes;
+    }
+
+    private static class CachedRecommendation {
+        private final RecommendationResponse recommendation;
+        private final Map<String, String> hostShapes;
+
+        CachedRecommendation(RecommendationResponse recommendation, Map<String, String> hostShapes) {
+            this.recommendation = recommendation;
+            this.hostShapes = ImmutableMap.copyOf(hostShapes);
+        }
+
+        /**
+         * Pairs each cached host with a requested host of the same shape (in name order) and renames accordingly.
+         */
+        RecommendationResponse rebindTo(Map<String, String> requestedHostShapes) {
+            ListMultimap<String, String> cachedHostsByShape = Multimaps.invertFrom(Multimaps.forMap(hostShapes), ArrayListMultimap.<String, String>create());
+            ListMultimap<String, String> requestedHostsByShape = Multimaps.invertFrom(Multimaps.forMap(requestedHostShapes), ArrayListMultimap.<String, String>create());
+            Map<String, String> renames = new HashMap<String, String>();
+            for (String shape : cachedHostsByShape.keySet()) {
+                List<String> cachedHosts = Ordering.natural().sortedCopy(cachedHostsByShape.get(shape));
+                List<String> requestedHosts = Ordering.natural().sortedCopy(requestedHostsByShape.get(shape));
+                for (int i = 0; i < cachedHosts.size(); i++) {
+                    renames.put(cachedHosts.get(i), requestedHosts.get(i));
+                }
+            }
+            return recommendation.withHostsRenamed(renames);
+        }
+    }
+}
@@ -1,30 +1,58 @@
 package org.apache.brooklyn.ambari.rest;
 
 import brooklyn.util.collections.Jsonya;
+import brooklyn.util.exceptions.Exceptions;
 import brooklyn.util.http.HttpTool;
 import brooklyn.util.http.HttpToolResponse;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
 import com.google.common.net.HttpHeaders;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.util.EntityUtils;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.UriBuilder;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class DefaultAmbariApiHelper implements AmbariApiHelper {
 
     private static final Logger LOG = LoggerFactory.getLogger(DefaultAmbariApiHelper.class);
+    public static final String STACK_VERSION = "2.2";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectReader RECOMMENDATION_READER = OBJECT_MAPPER.reader(RecommendationResponse.class);
+    private static final ImmutableList<Integer> ACCEPTABLE_RETURN_CODES = ImmutableList.<Integer>of(200, 201, 202);
+
+    private final AmbariConnectionPool connectionPool;
+    private final AmbariApiMetrics metrics;
+
+    public DefaultAmbariApiHelper(AmbariConnectionPool connectionPool, AmbariApiMetrics metrics) {
+        this.connectionPool = connectionPool;
+        this.metrics = metrics;
+    }
 
     @Override
     public void createClusterAPI(String cluster, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
-        String json = Jsonya.newInstance().at("Clusters").put("version", "HDP-2.2").root().toString();
+        String json = Jsonya.newInstance().at("Clusters").put("version", "HDP-" + STACK_VERSION).root().toString();
         post(usernamePasswordCredentials, baseUri, json.getBytes(), "/api/v1/clusters/{cluster}", cluster);
     }
 
@@ -33,6 +61,15 @@ public class DefaultAmbariApiHelper implements AmbariApiHelper {
         post(usernamePasswordCredentials, baseUri, new byte[0], "/api/v1/clusters/{cluster}/hosts/{host}", cluster, host);
     }
 
+    @Override
+    public void addHostsToCluster(String cluster, List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        List<Object> items = new ArrayList<Object>(hosts.size());
+        for (String host : hosts) {
+            items.add(ImmutableMap.of("Hosts", ImmutableMap.of("host_name", host)));
+        }
+        post(usernamePasswordCredentials, baseUri, toJsonBytes(items), "/api/v1/clusters/{cluster}/hosts", cluster);
+    }
+
     @Override
     public void addServiceToCluster(String cluster, String service, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
         post(usernamePasswordCredentials, baseUri, new byte[0], "/api/v1/clusters/{cluster}/services/{service}", cluster, service);
@@ -48,9 +85,32 @@ public class DefaultAmbariApiHelper implements AmbariApiHelper {
         post(usernamePasswordCredentials, baseUri, new byte[0], "/api/v1/clusters/{cluster}/hosts/{hostName}/host_components/{component}", cluster, hostName, component);
     }
 
+    @Override
+    public void createHostComponents(String cluster, List<String> hostNames, List<String> components, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        List<Object> hostComponents = new ArrayList<Object>(components.size());
+        for (String component : components) {
+            hostComponents.add(ImmutableMap.of("HostRoles", ImmutableMap.of("component_name", component)));
+        }
+        URI uri = UriBuilder.fromUri(baseUri)
+                .path("/api/v1/clusters/{cluster}/hosts")
+                .replaceQuery("Hosts/host_name.in(" + Joiner.on(',').join(hostNames) + ")")
+                .build(cluster);
+        post("POST /api/v1/clusters/{cluster}/hosts?Hosts/host_name.in({hosts})", usernamePasswordCredentials, uri,
+                new ByteArrayEntity(toJsonBytes(ImmutableMap.of("host_components", hostComponents))));
+    }
+
     @Override
     public void createBlueprint(String blueprintName, DefaultAmbariBluePrint blueprint, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials) {
-        post(usernamePasswordCredentials, baseUri, blueprint.toJson().getBytes(), "/api/v1/blueprints/{blueprintname}", blueprintName);
+        post(usernamePasswordCredentials, baseUri, new JsonEntity(blueprint), "/api/v1/blueprints/{blueprintname}", blueprintName);
+    }
+
+    @Override
+    public HostsResponse getHosts(List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        URI uri = UriBuilder.fromUri(baseUri)
+                .path("/api/v1/hosts")
+                .replaceQuery("fields=Hosts/host_name,Hosts/os_type,Hosts/cpu_count,Hosts/total_mem&Hosts/host_name.in(" + Joiner.on(',').join(hosts) + ")")
+                .build();
+        return readValue(get("GET /api/v1/hosts", usernamePasswordCredentials, uri), HostsResponse.class);
     }
 
     @Override
@@ -60,42 +120,193 @@ public class DefaultAmbariApiHelper implements AmbariApiHelper {
                 .root().put("services", services)
                 .root().put("recommend", "host_groups")
                 .root().toString();
-        HttpToolResponse httpToolResponse = post(usernamePasswordCredentials, baseUri, json.getBytes(), "/api/v1/stacks/HDP/versions/2.2/recommendations");
+        URI uri = UriBuilder.fromUri(baseUri).path("/api/v1/stacks/HDP/versions/{version}/recommendations").build(STACK_VERSION);
+        return postAndRead("POST /api/v1/stacks/HDP/versions/{version}/recommendations", usernamePasswordCredentials, uri, new ByteArrayEntity(json.getBytes()), RECOMMENDATION_READER);
+    }
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        try {
-            String contentAsString = httpToolResponse.getContentAsString();
-            RecommendationResponse recommendation = objectMapper.readValue(contentAsString, RecommendationResponse.class);
-            return recommendation;
-        } catch (IOException e) {
-            e.printStackTrace();
-            //TODO Handle this failure
+    @Override
+    public RequestResponse createCluster(String clusterName, String blueprintName, DefaultBluePrintClusterBinding bluePrintClusterBinding, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials) {
+        bluePrintClusterBinding.setBluePrintName(blueprintName);
+        HttpToolResponse httpToolResponse = post(usernamePasswordCredentials, baseUri, new JsonEntity(bluePrintClusterBinding), "/api/v1/clusters/{clustername}", clusterName);
+        return httpToolResponse.getResponseCode() == 202 ? readValue(httpToolResponse, RequestResponse.class) : null;
+    }
+
+    @Override
+    public RequestResponse addHostsToHostGroup(String cluster, String blueprintName, String hostGroup, List<String> hosts, Map<String, String> hostRacks, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        HttpToolResponse httpToolResponse = post(usernamePasswordCredentials, baseUri, toJsonBytes(hostGroupItems(blueprintName, hostGroup, hosts, hostRacks)), "/api/v1/clusters/{cluster}/hosts", cluster);
+        return httpToolResponse.getResponseCode() == 202 ? readValue(httpToolResponse, RequestResponse.class) : null;
+    }
+
+    /**
+     * @return the body of a request adding {@code hosts} to {@code hostGroup} of the cluster created from
+     * {@code blueprintName}, with the rack of each host that has one.
+     */
+    @VisibleForTesting
+    static List<Object> hostGroupItems(String blueprintName, String hostGroup, List<String> hosts, Map<String, String> hostRacks) {
+        List<Object> items = new ArrayList<Object>(hosts.size());
+        for (String host : hosts) {
+            ImmutableMap.Builder<String, String> item = ImmutableMap.<String, String>builder()
+                    .put("blueprint", blueprintName)
+                    .put("host_group", hostGroup)
+                    .put("host_name", host);
+            if (hostRacks.get(host) != null) {
+                item.put("rack_info", hostRacks.get(host));
+            }
+            items.add(item.build());
         }
-        return null;
+        return items;
     }
 
     @Override
-    public void createCluster(String clusterName, String blueprintName, DefaultBluePrintClusterBinding bluePrintClusterBinding, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials) {
-        bluePrintClusterBinding.setBluePrintName(blueprintName);
-        post(usernamePasswordCredentials, baseUri, bluePrintClusterBinding.toJson().getBytes(), "/api/v1/clusters/{clustername}", clusterName);
+    public RequestResponse getRequest(String cluster, int requestId, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        URI uri = UriBuilder.fromUri(baseUri)
+                .path("/api/v1/clusters/{cluster}/requests/{requestId}")
+                .replaceQuery("fields=Requests/*")
+                .build(cluster, requestId);
+        return readValue(get("GET /api/v1/clusters/{cluster}/requests/{requestId}", usernamePasswordCredentials, uri), RequestResponse.class);
     }
 
     private HttpToolResponse post(UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri, byte[] body, String path, String... templateParams) {
-        URI uri = UriBuilder.fromUri(baseUri).path(path).build(templateParams);
-        //TODO trustAll should probably be fixed
-        HttpClient httpClient = HttpTool.httpClientBuilder().credentials(usernamePasswordCredentials).trustAll().uri(uri).build();
-        ImmutableMap<String, String> headers = ImmutableMap.of("x-requested-by", "bob", HttpHeaders.AUTHORIZATION, HttpTool.toBasicAuthorizationValue(usernamePasswordCredentials));
-        //TODO should handle failure
-        HttpToolResponse httpToolResponse = HttpTool.httpPost(httpClient, uri, headers, body);
+        return post(usernamePasswordCredentials, baseUri, new ByteArrayEntity(body), path, templateParams);
+    }
+
+    private HttpToolResponse post(UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri, HttpEntity body, String path, String... templateParams) {
+        return post("POST " + path, usernamePasswordCredentials, UriBuilder.fromUri(baseUri).path(path).build(templateParams), body);
+    }
+
+    private HttpToolResponse post(String endpoint, UsernamePasswordCredentials usernamePasswordCredentials, URI uri, HttpEntity body) {
+        HttpClient httpClient = connectionPool.getHttpClient(uri, usernamePasswordCredentials);
+        CountingEntity countingBody = new CountingEntity(body);
+        long startTime = System.nanoTime();
+        HttpToolResponse httpToolResponse;
+        try {
+            //TODO should handle failure
+            httpToolResponse = HttpTool.execAndConsume(httpClient, newPost(usernamePasswordCredentials, uri, countingBody));
+        } catch (RuntimeException e) {
+            metrics.record(endpoint, System.nanoTime() - startTime, true, 0, countingBody.getBytesWritten());
+            throw e;
+        }
+        record(endpoint, startTime, httpToolResponse, countingBody.getBytesWritten());
+        assertAcceptableReturnCode(httpToolResponse);
+        return httpToolResponse;
+    }
+
+    /**
+     * Posts {@code body} and binds the response straight from the connection's input stream, without buffering
+     * it into a String first.
+     */
+    private <T> T postAndRead(String endpoint, UsernamePasswordCredentials usernamePasswordCredentials, URI uri, HttpEntity body, ObjectReader reader) {
+        HttpClient httpClient = connectionPool.getHttpClient(uri, usernamePasswordCredentials);
+        CountingEntity countingBody = new CountingEntity(body);
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        boolean error = true;
+        long bytesIn = 0;
+        try {
+            HttpResponse httpResponse = httpClient.execute(newPost(usernamePasswordCredentials, uri, countingBody));
+            try {
+                if (!ACCEPTABLE_RETURN_CODES.contains(httpResponse.getStatusLine().getStatusCode())) {
+                    HttpToolResponse httpToolResponse = new HttpToolResponse(httpResponse, startTime);
+                    bytesIn = httpToolResponse.getContent().length;
+                    throw new AmbariApiError(httpToolResponse);
+                }
+                CountingInputStream content = new CountingInputStream(httpResponse.getEntity().getContent());
+                try {
+                    T result = reader.readValue(content);
+                    error = false;
+                    return result;
+                } finally {
+                    bytesIn = content.getCount();
+                }
+            } finally {
+                EntityUtils.consume(httpResponse.getEntity());
+            }
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            metrics.record(endpoint, System.nanoTime() - startNanos, error, bytesIn, countingBody.getBytesWritten());
+        }
+    }
+
+    private HttpPost newPost(UsernamePasswordCredentials usernamePasswordCredentials, URI uri, HttpEntity body) {
+        HttpPost httpPost = new HttpPost(uri);
+        for (Map.Entry<String, String> header : headers(usernamePasswordCredentials).entrySet()) {
+            httpPost.addHeader(header.getKey(), header.getValue());
+        }
+        httpPost.setEntity(body);
+        return httpPost;
+    }
+
+    private HttpToolResponse get(String endpoint, UsernamePasswordCredentials usernamePasswordCredentials, URI uri) {
+        HttpClient httpClient = connectionPool.getHttpClient(uri, usernamePasswordCredentials);
+        long startTime = System.nanoTime();
+        HttpToolResponse httpToolResponse;
+        try {
+            httpToolResponse = HttpTool.httpGet(httpClient, uri, headers(usernamePasswordCredentials));
+        } catch (RuntimeException e) {
+            metrics.record(endpoint, System.nanoTime() - startTime, true, 0, 0);
+            throw e;
+        }
+        record(endpoint, startTime, httpToolResponse, 0);
         assertAcceptableReturnCode(httpToolResponse);
         return httpToolResponse;
     }
 
+    private void record(String endpoint, long startTime, HttpToolResponse httpToolResponse, long bytesOut) {
+        metrics.record(endpoint, System.nanoTime() - startTime, !ACCEPTABLE_RETURN_CODES.contains(httpToolResponse.getResponseCode()),
+                httpToolResponse.getContent().length, bytesOut);
+    }
+
+    private ImmutableMap<String, String> headers(UsernamePasswordCredentials usernamePasswordCredentials) {
+        return ImmutableMap.of("x-requested-by", "bob", HttpHeaders.AUTHORIZATION, HttpTool.toBasicAuthorizationValue(usernamePasswordCredentials));
+    }
+
+    private <T> T readValue(HttpToolResponse httpToolResponse, Class<T> type) {
+        try {
+            return OBJECT_MAPPER.readValue(httpToolResponse.getContent(), type);
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private byte[] toJsonBytes(Object value) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(value).getBytes();
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
     private void assertAcceptableReturnCode(HttpToolResponse httpToolResponse) {
-        ImmutableList<Integer> list = ImmutableList.<Integer>of(200, 201, 202);
-        if (!list.contains(httpToolResponse.getResponseCode())) {
+        if (!ACCEPTABLE_RETURN_CODES.contains(httpToolResponse.getResponseCode())) {
             throw new AmbariApiError(httpToolResponse);
         }
     }
 
+    /**
+     * Counts the bytes actually written to the connection, which for a chunked {@link JsonEntity} is not known
+     * up front.
+     */
+    private static class CountingEntity extends HttpEntityWrapper {
+        private long bytesWritten;
+
+        CountingEntity(HttpEntity wrapped) {
+            super(wrapped);
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+            try {
+                super.writeTo(countingOutputStream);
+            } finally {
+                bytesWritten += countingOutputStream.getCount();
+            }
+        }
+
+        long getBytesWritten() {
+            return bytesWritten;
+        }
+    }
+
 }
\ No newline at end of file
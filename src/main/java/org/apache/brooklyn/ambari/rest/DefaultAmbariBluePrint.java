@@ -18,77 +18,94 @@
  */
 package org.apache.brooklyn.ambari.rest;
 
-import brooklyn.util.collections.Jsonya;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import org.apache.brooklyn.ambari.rest.RecommendationResponse.Resource.Recommendations.Blueprint;
+import org.codehaus.jackson.JsonGenerator;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
-public class DefaultAmbariBluePrint implements AsMap {
+public class DefaultAmbariBluePrint implements JsonWritable {
 
-    private final List<HostGroup> hostGroups = new LinkedList<HostGroup>();
-    private ImmutableMap<String, String> baseBlueprints = ImmutableMap.of("stack_name", "HDP", "stack_version", "2.2");
-    private ImmutableList configurations = ImmutableList.of(ImmutableMap.of("nagios-env", ImmutableMap.of("nagios_contact", "admin@localhost")));
+    private final List<HostGroup> hostGroups;
 
     public static DefaultAmbariBluePrint createBlueprintFromRecommendation(Blueprint blueprint) {
         return new DefaultAmbariBluePrint(blueprint);
     }
 
     private DefaultAmbariBluePrint(Blueprint blueprint) {
+        hostGroups = new ArrayList<HostGroup>(blueprint.host_groups.length);
         for (Blueprint.HostGroup hostGroup : blueprint.host_groups) {
             hostGroups.add(new HostGroup(hostGroup));
         }
     }
 
     public String toJson() {
-        return Jsonya.newInstance().add(this.asMap()).root().toString();
+        return JsonEntity.toJson(this);
     }
 
-    public Map asMap() {
-        return ImmutableMap.of("host_groups", toMaps(hostGroups), "configurations", configurations, "Blueprints", baseBlueprints);
-    }
-
-    public static List<Map> toMaps(List<? extends AsMap> host_groups) {
-        LinkedList<Map> maps = new LinkedList<Map>();
-        for (AsMap host_group : host_groups) {
-            maps.add(host_group.asMap());
+    @Override
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("host_groups");
+        for (HostGroup hostGroup : hostGroups) {
+            hostGroup.writeJson(generator);
         }
-        return ImmutableList.<Map>copyOf(maps);
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("configurations");
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("nagios-env");
+        generator.writeStringField("nagios_contact", "admin@localhost");
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeObjectFieldStart("Blueprints");
+        generator.writeStringField("stack_name", "HDP");
+        generator.writeStringField("stack_version", DefaultAmbariApiHelper.STACK_VERSION);
+        generator.writeEndObject();
+        generator.writeEndObject();
     }
 
-    private static class HostGroup implements AsMap {
+    private static class HostGroup implements JsonWritable {
 
         private final String name;
 
-        private final List<Component> components = new LinkedList<Component>();
+        private final List<Component> components;
 
         public HostGroup(Blueprint.HostGroup hostGroup) {
             name = hostGroup.name;
-            for (Map component : hostGroup.components) {
+            components = new ArrayList<Component>(hostGroup.components.length);
+            for (Blueprint.Component component : hostGroup.components) {
                 components.add(new Component(component));
             }
         }
 
         @Override
-        public Map asMap() {
-            return ImmutableMap.of("name", name, "components", toMaps(components));
+        public void writeJson(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", name);
+            generator.writeArrayFieldStart("components");
+            for (Component component : components) {
+                component.writeJson(generator);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
         }
     }
 
-    private static class Component implements AsMap {
+    private static class Component implements JsonWritable {
 
-        private final Map<String, String> componentParams;
+        private final String name;
 
-        public Component(Map component) {
-            componentParams = ImmutableMap.<String, String>copyOf(component);
+        public Component(Blueprint.Component component) {
+            name = component.name;
         }
 
         @Override
-        public Map asMap() {
-            return componentParams;
+        public void writeJson(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", name);
+            generator.writeEndObject();
         }
     }
 }
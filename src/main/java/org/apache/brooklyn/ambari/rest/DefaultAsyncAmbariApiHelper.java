@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.time.Duration;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.auth.UsernamePasswordCredentials;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipelines calls to a blocking {@link AmbariApiHelper} on a fixed set of workers, so that at most
+ * {@code maxInFlight} requests are outstanding against the Ambari server at any time and the rest queue up
+ * without holding a caller thread each.
+ */
+public class DefaultAsyncAmbariApiHelper implements AsyncAmbariApiHelper {
+
+    private final AmbariApiHelper ambariApiHelper;
+    private final ListeningExecutorService executor;
+
+    public DefaultAsyncAmbariApiHelper(AmbariApiHelper ambariApiHelper, int maxInFlight) {
+        this.ambariApiHelper = ambariApiHelper;
+        this.executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(maxInFlight,
+                new ThreadFactoryBuilder().setNameFormat("ambari-api-%d").setDaemon(true).build()));
+    }
+
+    @Override
+    public ListenableFuture<Void> createClusterAPI(final String cluster, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ambariApiHelper.createClusterAPI(cluster, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> addHostToCluster(final String cluster, final String host, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ambariApiHelper.addHostToCluster(cluster, host, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> addHostsToCluster(final String cluster, final List<String> hosts, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ambariApiHelper.addHostsToCluster(cluster, hosts, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> addServiceToCluster(final String cluster, final String service, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ambariApiHelper.addServiceToCluster(cluster, service, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> createComponent(final String cluster, final String service, final String component, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ambariApiHelper.createComponent(cluster, service, component, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> createHostComponent(final String cluster, final String hostName, final String component, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ambariApiHelper.createHostComponent(cluster, hostName, component, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> createHostComponents(final String cluster, final List<String> hostNames, final List<String> components, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ambariApiHelper.createHostComponents(cluster, hostNames, components, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<HostsResponse> getHosts(final List<String> hosts, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<HostsResponse>() {
+            @Override
+            public HostsResponse call() {
+                return ambariApiHelper.getHosts(hosts, usernamePasswordCredentials, baseUri);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<RecommendationResponse> getRecommendations(final List<String> hosts, final Iterable<String> services, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<RecommendationResponse>() {
+            @Override
+            public RecommendationResponse call() {
+                return ambariApiHelper.getRecommendations(hosts, services, usernamePasswordCredentials, baseUri);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> createBlueprint(final String blueprintName, final DefaultAmbariBluePrint blueprint, final URI baseUri, final UsernamePasswordCredentials usernamePasswordCredentials) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ambariApiHelper.createBlueprint(blueprintName, blueprint, baseUri, usernamePasswordCredentials);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<RequestResponse> createCluster(final String clusterName, final String blueprintName, final DefaultBluePrintClusterBinding bluePrintClusterBinding, final URI baseUri, final UsernamePasswordCredentials usernamePasswordCredentials) {
+        return executor.submit(new Callable<RequestResponse>() {
+            @Override
+            public RequestResponse call() {
+                return ambariApiHelper.createCluster(clusterName, blueprintName, bluePrintClusterBinding, baseUri, usernamePasswordCredentials);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<RequestResponse> addHostsToHostGroup(final String cluster, final String blueprintName, final String hostGroup, final List<String> hosts, final Map<String, String> hostRacks, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<RequestResponse>() {
+            @Override
+            public RequestResponse call() {
+                return ambariApiHelper.addHostsToHostGroup(cluster, blueprintName, hostGroup, hosts, hostRacks, usernamePasswordCredentials, baseUri);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<RequestResponse> getRequest(final String cluster, final int requestId, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return executor.submit(new Callable<RequestResponse>() {
+            @Override
+            public RequestResponse call() {
+                return ambariApiHelper.getRequest(cluster, requestId, usernamePasswordCredentials, baseUri);
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        return executor.awaitTermination(timeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+    }
+}
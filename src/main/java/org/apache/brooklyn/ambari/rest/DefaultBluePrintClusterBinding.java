@@ -18,24 +18,25 @@
  */
 package org.apache.brooklyn.ambari.rest;
 
-import brooklyn.util.collections.Jsonya;
-import com.google.common.collect.ImmutableMap;
 import org.apache.brooklyn.ambari.rest.RecommendationResponse.Resource.Recommendations.BlueprintClusterBinding;
+import org.codehaus.jackson.JsonGenerator;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import static org.apache.brooklyn.ambari.rest.DefaultAmbariBluePrint.toMaps;
-
 /**
  * Created by duncangrant on 22/01/15.
  */
-public class DefaultBluePrintClusterBinding implements AsMap {
-    private List<AsMap> hostGroups = new LinkedList<AsMap>();
+public class DefaultBluePrintClusterBinding implements JsonWritable {
+    private final List<HostGroup> hostGroups;
+    private Map<String, String> hostRacks = new LinkedHashMap<String, String>();
     private String bluePrintName;
 
     public DefaultBluePrintClusterBinding(BlueprintClusterBinding blueprintClusterBinding) {
+        hostGroups = new ArrayList<HostGroup>(blueprintClusterBinding.host_groups.length);
         for (BlueprintClusterBinding.HostGroup hostGroup : blueprintClusterBinding.host_groups) {
             hostGroups.add(new HostGroup(hostGroup));
         }
@@ -47,47 +48,107 @@ public class DefaultBluePrintClusterBinding implements AsMap {
     }
 
     public String toJson() {
-        return Jsonya.newInstance().add(this.asMap()).root().toString();
+        return JsonEntity.toJson(this);
     }
 
     @Override
-    public Map asMap() {
-        return ImmutableMap.of("blueprint", bluePrintName, "default_password", "admin", "host_groups", toMaps(hostGroups));
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("blueprint", bluePrintName);
+        generator.writeStringField("default_password", "admin");
+        generator.writeArrayFieldStart("host_groups");
+        for (HostGroup hostGroup : hostGroups) {
+            hostGroup.writeJson(generator, hostRacks);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * @return the FQDNs bound to each host group, by host group name
+     */
+    public Map<String, List<String>> getHostGroups() {
+        Map<String, List<String>> hostGroupHosts = new LinkedHashMap<String, List<String>>();
+        for (HostGroup hostGroup : hostGroups) {
+            List<String> fqdns = new ArrayList<String>(hostGroup.hosts.size());
+            for (HostGroup.Host host : hostGroup.hosts) {
+                fqdns.add(host.fqdn);
+            }
+            hostGroupHosts.put(hostGroup.name, fqdns);
+        }
+        return hostGroupHosts;
+    }
+
+    /**
+     * Rebinds each named host group to the given hosts, for placements that move hosts between groups.
+     */
+    public void setHostGroups(Map<String, List<String>> hostGroupHosts) {
+        for (HostGroup hostGroup : hostGroups) {
+            List<String> fqdns = hostGroupHosts.get(hostGroup.name);
+            if (fqdns != null) {
+                hostGroup.hosts.clear();
+                for (String fqdn : fqdns) {
+                    hostGroup.hosts.add(new HostGroup.Host(fqdn));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param hostRacks the rack of each host, by FQDN, written as {@code rack_info}; hosts without one are left
+     *                  to Ambari's default rack
+     */
+    public void setHostRacks(Map<String, String> hostRacks) {
+        this.hostRacks = new LinkedHashMap<String, String>(hostRacks);
     }
 
     public void setBluePrintName(String bluePrintName) {
         this.bluePrintName = bluePrintName;
     }
 
-    private static class HostGroup implements AsMap {
+    private static class HostGroup {
 
         private final String name;
-        private final List<Host> hosts = new LinkedList<Host>();
+        private final List<Host> hosts;
 
         public HostGroup(BlueprintClusterBinding.HostGroup hostGroup) {
             name = hostGroup.name;
-            for (Map host : hostGroup.hosts) {
+            hosts = new ArrayList<Host>(hostGroup.hosts.length);
+            for (BlueprintClusterBinding.Host host : hostGroup.hosts) {
                 hosts.add(new Host(host));
             }
         }
 
-        @Override
-        public Map asMap() {
-            return ImmutableMap.of("name", name, "hosts", toMaps(hosts));
-
+        public void writeJson(JsonGenerator generator, Map<String, String> hostRacks) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", name);
+            generator.writeArrayFieldStart("hosts");
+            for (Host host : hosts) {
+                host.writeJson(generator, hostRacks.get(host.fqdn));
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
         }
 
-        private class Host implements AsMap {
+        private static class Host {
 
-            private final ImmutableMap hostParams;
+            private final String fqdn;
+
+            public Host(BlueprintClusterBinding.Host host) {
+                this(host.fqdn);
+            }
 
-            public Host(Map host) {
-                hostParams = ImmutableMap.copyOf(host);
+            public Host(String fqdn) {
+                this.fqdn = fqdn;
             }
 
-            @Override
-            public Map asMap() {
-                return hostParams;
+            public void writeJson(JsonGenerator generator, String rack) throws IOException {
+                generator.writeStartObject();
+                generator.writeStringField("fqdn", fqdn);
+                if (rack != null) {
+                    generator.writeStringField("rack_info", rack);
+                }
+                generator.writeEndObject();
             }
         }
     }
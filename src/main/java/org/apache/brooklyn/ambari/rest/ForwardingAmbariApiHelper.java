@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import org.apache.http.auth.UsernamePasswordCredentials;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link AmbariApiHelper} that forwards every call to another one; subclasses override just the calls they
+ * decorate.
+ */
+public abstract class ForwardingAmbariApiHelper implements AmbariApiHelper {
+
+    protected abstract AmbariApiHelper delegate();
+
+    @Override
+    public void createClusterAPI(String cluster, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        delegate().createClusterAPI(cluster, usernamePasswordCredentials, baseUri);
+    }
+
+    @Override
+    public void addHostToCluster(String cluster, String host, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        delegate().addHostToCluster(cluster, host, usernamePasswordCredentials, baseUri);
+    }
+
+    @Override
+    public void addHostsToCluster(String cluster, List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        delegate().addHostsToCluster(cluster, hosts, usernamePasswordCredentials, baseUri);
+    }
+
+    @Override
+    public void addServiceToCluster(String cluster, String service, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        delegate().addServiceToCluster(cluster, service, usernamePasswordCredentials, baseUri);
+    }
+
+    @Override
+    public void createComponent(String cluster, String service, String component, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        delegate().createComponent(cluster, service, component, usernamePasswordCredentials, baseUri);
+    }
+
+    @Override
+    public void createHostComponent(String cluster, String hostName, String component, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        delegate().createHostComponent(cluster, hostName, component, usernamePasswordCredentials, baseUri);
+    }
+
+    @Override
+    public void createHostComponents(String cluster, List<String> hostNames, List<String> components, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        delegate().createHostComponents(cluster, hostNames, components, usernamePasswordCredentials, baseUri);
+    }
+
+    @Override
+    public HostsResponse getHosts(List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        return delegate().getHosts(hosts, usernamePasswordCredentials, baseUri);
+    }
+
+    @Override
+    public RecommendationResponse getRecommendations(List<String> hosts, Iterable<String> services, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        return delegate().getRecommendations(hosts, services, usernamePasswordCredentials, baseUri);
+    }
+
+    @Override
+    public void createBlueprint(String blueprintName, DefaultAmbariBluePrint blueprint, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials) {
+        delegate().createBlueprint(blueprintName, blueprint, baseUri, usernamePasswordCredentials);
+    }
+
+    @Override
+    public RequestResponse createCluster(String clusterName, String blueprintName, DefaultBluePrintClusterBinding bluePrintClusterBinding, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials) {
+        return delegate().createCluster(clusterName, blueprintName, bluePrintClusterBinding, baseUri, usernamePasswordCredentials);
+    }
+
+    @Override
+    public RequestResponse addHostsToHostGroup(String cluster, String blueprintName, String hostGroup, List<String> hosts, Map<String, String> hostRacks, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        return delegate().addHostsToHostGroup(cluster, blueprintName, hostGroup, hosts, hostRacks, usernamePasswordCredentials, baseUri);
+    }
+
+    @Override
+    public RequestResponse getRequest(String cluster, int requestId, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        return delegate().getRequest(cluster, requestId, usernamePasswordCredentials, baseUri);
+    }
+}
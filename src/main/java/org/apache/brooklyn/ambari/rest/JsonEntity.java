@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.exceptions.Exceptions;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+
+/**
+ * Request entity that streams a {@link JsonWritable} onto the connection as it is sent (chunked), so large
+ * blueprints and cluster bindings are never held in memory as a String or byte array.
+ */
+public class JsonEntity extends AbstractHttpEntity {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonWritable content;
+
+    public JsonEntity(JsonWritable content) {
+        this.content = content;
+        setChunked(true);
+    }
+
+    public static String toJson(JsonWritable content) {
+        StringWriter writer = new StringWriter();
+        try {
+            JsonGenerator generator = JSON_FACTORY.createJsonGenerator(writer);
+            content.writeJson(generator);
+            generator.close();
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+        return writer.toString();
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeTo(buffer);
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createJsonGenerator(outputStream, JsonEncoding.UTF8);
+        content.writeJson(generator);
+        generator.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
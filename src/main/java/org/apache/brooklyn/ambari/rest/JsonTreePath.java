@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.gson.JsonElement;
+import com.jayway.jsonpath.PathNotFoundException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A path such as {@code $.items[*].Hosts.host_name}, parsed once and then evaluated by walking an already parsed
+ * Gson tree, rather than serializing the tree back to a String for {@code JsonPath.read} to parse again. Only
+ * member names and the {@code [*]} array wildcard are supported, which is all Ambari's responses need.
+ * <p>
+ * As with {@code JsonPath}, a {@link PathNotFoundException} is thrown if a member is missing before the first
+ * wildcard; below a wildcard, elements missing the rest of the path are skipped.
+ */
+public class JsonTreePath {
+
+    private static final String WILDCARD = "[*]";
+
+    private final String path;
+    private final List<String> names;
+    private final boolean[] wildcards;
+
+    private JsonTreePath(String path, List<String> names, boolean[] wildcards) {
+        this.path = path;
+        this.names = names;
+        this.wildcards = wildcards;
+    }
+
+    public static JsonTreePath compile(String path) {
+        String relativePath = path.startsWith("$.") ? path.substring(2) : path;
+        List<String> segments = Lists.newArrayList(Splitter.on('.').split(relativePath));
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        boolean[] wildcards = new boolean[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            wildcards[i] = segment.endsWith(WILDCARD);
+            String name = wildcards[i] ? segment.substring(0, segment.length() - WILDCARD.length()) : segment;
+            Preconditions.checkArgument(!name.isEmpty() && name.indexOf('[') < 0, "Unsupported path %s", path);
+            names.add(name);
+        }
+        return new JsonTreePath(path, names.build(), wildcards);
+    }
+
+    public List<JsonElement> read(JsonElement root) {
+        Preconditions.checkNotNull(root, "root");
+        List<JsonElement> current = Collections.singletonList(root);
+        boolean definite = true;
+        for (int i = 0; i < names.size(); i++) {
+            List<JsonElement> next = new ArrayList<JsonElement>(current.size());
+            for (JsonElement element : current) {
+                JsonElement child = element.isJsonObject() ? element.getAsJsonObject().get(names.get(i)) : null;
+                if (child == null || child.isJsonNull() || (wildcards[i] && !child.isJsonArray())) {
+                    if (definite) {
+                        throw new PathNotFoundException("No results for path: " + path);
+                    }
+                    continue;
+                }
+                if (wildcards[i]) {
+                    for (JsonElement item : child.getAsJsonArray()) {
+                        next.add(item);
+                    }
+                } else {
+                    next.add(child);
+                }
+            }
+            definite &= !wildcards[i];
+            current = next;
+        }
+        return current;
+    }
+
+    public List<String> readStrings(JsonElement root) {
+        List<JsonElement> elements = read(root);
+        List<String> result = new ArrayList<String>(elements.size());
+        for (JsonElement element : elements) {
+            result.add(element.getAsString());
+        }
+        return result;
+    }
+
+    public Function<JsonElement, List<String>> strings() {
+        return new Function<JsonElement, List<String>>() {
+            @Override
+            public List<String> apply(JsonElement root) {
+                return readStrings(root);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
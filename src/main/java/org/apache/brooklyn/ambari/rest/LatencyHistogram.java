@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.time.Duration;
+import com.google.common.base.Ticker;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-size latency histogram over a sliding window, in the style of HdrHistogram: values (in microseconds) are
+ * counted in log-linear buckets with 8 sub-buckets per power of two, so percentiles are accurate to within 12.5%
+ * while recording is a couple of shifts and an array increment. The window is split into {@code slots} intervals
+ * which are recycled as it slides, so old samples age out without any per-sample bookkeeping.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+    private static final int LINEAR_BITS = SUB_BUCKET_BITS + 1;
+    private static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - 1 - LINEAR_BITS) * SUB_BUCKETS;
+
+    private final Ticker ticker;
+    private final long slotNanos;
+    private final Slot[] slots;
+
+    public LatencyHistogram(Duration window, int slots) {
+        this(window, slots, Ticker.systemTicker());
+    }
+
+    public LatencyHistogram(Duration window, int slots, Ticker ticker) {
+        this.ticker = ticker;
+        this.slotNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(window.toMilliseconds()) / slots);
+        this.slots = new Slot[slots];
+        for (int i = 0; i < slots; i++) {
+            this.slots[i] = new Slot();
+        }
+    }
+
+    public void record(long value, TimeUnit unit) {
+        long micros = Math.max(0, unit.toMicros(value));
+        int bucket = bucketFor(micros);
+        long epoch = ticker.read() / slotNanos;
+        Slot slot = slots[(int) (epoch % slots.length)];
+        synchronized (slot) {
+            if (slot.epoch != epoch) {
+                slot.reset(epoch);
+            }
+            slot.counts[bucket]++;
+            slot.count++;
+            slot.max = Math.max(slot.max, micros);
+        }
+    }
+
+    /**
+     * @return the samples recorded within the window, merged.
+     */
+    public Snapshot snapshot() {
+        long currentEpoch = ticker.read() / slotNanos;
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        long max = 0;
+        for (Slot slot : slots) {
+            synchronized (slot) {
+                if (slot.count == 0 || currentEpoch - slot.epoch >= slots.length) {
+                    continue;
+                }
+                for (int i = 0; i < BUCKETS; i++) {
+                    counts[i] += slot.counts[i];
+                }
+                count += slot.count;
+                max = Math.max(max, slot.max);
+            }
+        }
+        return new Snapshot(counts, count, max);
+    }
+
+    static int bucketFor(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the highest value that would be counted in {@code bucket}.
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static class Slot {
+        final long[] counts = new long[BUCKETS];
+        long epoch = -1;
+        long count;
+        long max;
+
+        void reset(long epoch) {
+            Arrays.fill(counts, 0);
+            this.epoch = epoch;
+            this.count = 0;
+            this.max = 0;
+        }
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public Duration getMax() {
+            return Duration.of(max, TimeUnit.MICROSECONDS);
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the latency at or below which {@code percentile} of the samples fall, or zero if there are none.
+         */
+        public Duration getPercentile(double percentile) {
+            if (count == 0) {
+                return Duration.ZERO;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Duration.of(Math.min(highestValueIn(i), max), TimeUnit.MICROSECONDS);
+                }
+            }
+            return getMax();
+        }
+    }
+}
@@ -18,12 +18,24 @@
  */
 package org.apache.brooklyn.ambari.rest;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+
 import java.util.Map;
 
 /**
 * Created by duncangrant on 21/01/15.
 */
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class RecommendationResponse {
+
+    /**
+     * Host group and component names repeat across every resource and host group of a response (and across
+     * responses), so they are shared rather than held once per occurrence.
+     */
+    private static final Interner<String> NAMES = Interners.newWeakInterner();
+
     public Resource[] resources;
 
     public Resource.Recommendations.Blueprint getBlueprint() {
@@ -34,6 +46,31 @@ public class RecommendationResponse {
         return resources != null && resources.length > 0 ? resources[0].recommendations.blueprint_cluster_binding: null;
     }
 
+    /**
+     * @return a copy of this response with every host name found in {@code renames} replaced by its value; the
+     * blueprint, which names no hosts, is shared with this response.
+     */
+    public RecommendationResponse withHostsRenamed(Map<String, String> renames) {
+        RecommendationResponse copy = new RecommendationResponse();
+        if (resources != null) {
+            copy.resources = new Resource[resources.length];
+            for (int i = 0; i < resources.length; i++) {
+                copy.resources[i] = resources[i].withHostsRenamed(renames);
+            }
+        }
+        return copy;
+    }
+
+    private static String intern(String name) {
+        return name != null ? NAMES.intern(name) : null;
+    }
+
+    private static String rename(String host, Map<String, String> renames) {
+        String renamed = renames.get(host);
+        return renamed != null ? renamed : host;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Resource {
         public String href;
         public String[] hosts;
@@ -42,26 +79,91 @@ public class RecommendationResponse {
         public Map Versions;
         public Resource.Recommendations recommendations;
 
+        Resource withHostsRenamed(Map<String, String> renames) {
+            Resource copy = new Resource();
+            copy.href = href;
+            copy.services = services;
+            copy.Recommendation = Recommendation;
+            copy.Versions = Versions;
+            if (hosts != null) {
+                copy.hosts = new String[hosts.length];
+                for (int i = 0; i < hosts.length; i++) {
+                    copy.hosts[i] = rename(hosts[i], renames);
+                }
+            }
+            if (recommendations != null) {
+                copy.recommendations = new Recommendations();
+                copy.recommendations.blueprint = recommendations.blueprint;
+                if (recommendations.blueprint_cluster_binding != null) {
+                    copy.recommendations.blueprint_cluster_binding = recommendations.blueprint_cluster_binding.withHostsRenamed(renames);
+                }
+            }
+            return copy;
+        }
+
+        @JsonIgnoreProperties(ignoreUnknown = true)
         public static class Recommendations {
             public Resource.Recommendations.Blueprint blueprint;
             public Resource.Recommendations.BlueprintClusterBinding blueprint_cluster_binding;
 
+            @JsonIgnoreProperties(ignoreUnknown = true)
             public static class Blueprint {
                 public Map configurations;
                 public Resource.Recommendations.Blueprint.HostGroup[] host_groups;
 
+                @JsonIgnoreProperties(ignoreUnknown = true)
                 public static class HostGroup {
                     public String name;
-                    public Map[] components;
+                    public Component[] components;
+
+                    public void setName(String name) {
+                        this.name = intern(name);
+                    }
+                }
+
+                @JsonIgnoreProperties(ignoreUnknown = true)
+                public static class Component {
+                    public String name;
+
+                    public void setName(String name) {
+                        this.name = intern(name);
+                    }
                 }
             }
 
+            @JsonIgnoreProperties(ignoreUnknown = true)
             public static class BlueprintClusterBinding {
                 public Resource.Recommendations.BlueprintClusterBinding.HostGroup[] host_groups;
 
-                static class HostGroup {
+                BlueprintClusterBinding withHostsRenamed(Map<String, String> renames) {
+                    BlueprintClusterBinding copy = new BlueprintClusterBinding();
+                    copy.host_groups = new HostGroup[host_groups.length];
+                    for (int i = 0; i < host_groups.length; i++) {
+                        HostGroup hostGroup = new HostGroup();
+                        hostGroup.name = host_groups[i].name;
+                        hostGroup.hosts = new Host[host_groups[i].hosts.length];
+                        for (int j = 0; j < hostGroup.hosts.length; j++) {
+                            hostGroup.hosts[j] = new Host();
+                            hostGroup.hosts[j].fqdn = rename(host_groups[i].hosts[j].fqdn, renames);
+                        }
+                        copy.host_groups[i] = hostGroup;
+                    }
+                    return copy;
+                }
+
+                @JsonIgnoreProperties(ignoreUnknown = true)
+                public static class HostGroup {
                     public String name;
-                    public Map[] hosts;
+                    public Host[] hosts;
+
+                    public void setName(String name) {
+                        this.name = intern(name);
+                    }
+                }
+
+                @JsonIgnoreProperties(ignoreUnknown = true)
+                public static class Host {
+                    public String fqdn;
                 }
             }
         }
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import com.google.common.collect.ImmutableSet;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+
+import java.util.Set;
+
+/**
+ * Body of an Ambari asynchronous request resource, as returned with a 202 by calls such as cluster creation and
+ * by {@code /api/v1/clusters/{cluster}/requests/{id}}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class RequestResponse {
+    public String href;
+    public Request Requests;
+
+    public Integer getId() {
+        return Requests != null ? Requests.id : null;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Request {
+
+        static final Set<String> TERMINAL_STATUSES = ImmutableSet.of("COMPLETED", "FAILED", "ABORTED", "TIMEDOUT");
+
+        public Integer id;
+        public String status;
+        public String request_status;
+        public Double progress_percent;
+        /** Epoch millis at which Ambari started the request; -1 or absent until it has. */
+        public Long start_time;
+        public Integer task_count;
+        public Integer completed_task_count;
+        public Integer failed_task_count;
+        public Integer queued_task_count;
+        public Integer aborted_task_count;
+        public Integer timed_out_task_count;
+
+        public boolean isFinished() {
+            return request_status != null && TERMINAL_STATUSES.contains(request_status);
+        }
+
+        public boolean isSuccessful() {
+            return "COMPLETED".equals(request_status);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.exceptions.Exceptions;
+import brooklyn.util.time.Duration;
+import brooklyn.util.time.Time;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.codehaus.jackson.JsonProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retries calls that fail transiently with exponential backoff and full jitter, and refuses calls outright while
+ * the server's {@link CircuitBreaker} is open. Reads are retried on I/O errors and 5xx responses; creates, which
+ * Ambari does not make idempotent, only when the connection could not be made, so nothing was sent. A 409 for a
+ * create therefore means the resource existed before the call, and is thrown like any other rejection for the
+ * caller to handle. Other failures, such as a 400 for a malformed request or an unparseable response, are thrown
+ * immediately.
+ */
+public class RetryingAmbariApiHelper extends ForwardingAmbariApiHelper {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RetryingAmbariApiHelper.class);
+
+    static final Set<Integer> RETRYABLE_RESPONSE_CODES = ImmutableSet.of(500, 502, 503, 504);
+
+    private final AmbariApiHelper delegate;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final CircuitBreaker circuitBreaker;
+    private final Random random = new Random();
+    private final AtomicLong retries = new AtomicLong();
+
+    public RetryingAmbariApiHelper(AmbariApiHelper delegate, int maxAttempts, Duration initialBackoff, Duration maxBackoff, CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoff.toMilliseconds();
+        this.maxBackoffMillis = maxBackoff.toMilliseconds();
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    protected AmbariApiHelper delegate() {
+        return delegate;
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public CircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker.getState();
+    }
+
+    @Override
+    public void createClusterAPI(final String cluster, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        create(new Callable<Void>() {
+            @Override
+            public Void call() {
+                delegate.createClusterAPI(cluster, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void addHostToCluster(final String cluster, final String host, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        create(new Callable<Void>() {
+            @Override
+            public Void call() {
+                delegate.addHostToCluster(cluster, host, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void addHostsToCluster(final String cluster, final List<String> hosts, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        create(new Callable<Void>() {
+            @Override
+            public Void call() {
+                delegate.addHostsToCluster(cluster, hosts, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void addServiceToCluster(final String cluster, final String service, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        create(new Callable<Void>() {
+            @Override
+            public Void call() {
+                delegate.addServiceToCluster(cluster, service, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void createComponent(final String cluster, final String service, final String component, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        create(new Callable<Void>() {
+            @Override
+            public Void call() {
+                delegate.createComponent(cluster, service, component, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void createHostComponent(final String cluster, final String hostName, final String component, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        create(new Callable<Void>() {
+            @Override
+            public Void call() {
+                delegate.createHostComponent(cluster, hostName, component, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void createHostComponents(final String cluster, final List<String> hostNames, final List<String> components, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        create(new Callable<Void>() {
+            @Override
+            public Void call() {
+                delegate.createHostComponents(cluster, hostNames, components, usernamePasswordCredentials, baseUri);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public HostsResponse getHosts(final List<String> hosts, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return call(new Callable<HostsResponse>() {
+            @Override
+            public HostsResponse call() {
+                return delegate.getHosts(hosts, usernamePasswordCredentials, baseUri);
+            }
+        });
+    }
+
+    @Override
+    public RecommendationResponse getRecommendations(final List<String> hosts, final Iterable<String> services, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return call(new Callable<RecommendationResponse>() {
+            @Override
+            public RecommendationResponse call() {
+                return delegate.getRecommendations(hosts, services, usernamePasswordCredentials, baseUri);
+            }
+        });
+    }
+
+    @Override
+    public void createBlueprint(final String blueprintName, final DefaultAmbariBluePrint blueprint, final URI baseUri, final UsernamePasswordCredentials usernamePasswordCredentials) {
+        create(new Callable<Void>() {
+            @Override
+            public Void call() {
+                delegate.createBlueprint(blueprintName, blueprint, baseUri, usernamePasswordCredentials);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public RequestResponse createCluster(final String clusterName, final String blueprintName, final DefaultBluePrintClusterBinding bluePrintClusterBinding, final URI baseUri, final UsernamePasswordCredentials usernamePasswordCredentials) {
+        return create(new Callable<RequestResponse>() {
+            @Override
+            public RequestResponse call() {
+                return delegate.createCluster(clusterName, blueprintName, bluePrintClusterBinding, baseUri, usernamePasswordCredentials);
+            }
+        });
+    }
+
+    @Override
+    public RequestResponse addHostsToHostGroup(final String cluster, final String blueprintName, final String hostGroup, final List<String> hosts, final Map<String, String> hostRacks, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return create(new Callable<RequestResponse>() {
+            @Override
+            public RequestResponse call() {
+                return delegate.addHostsToHostGroup(cluster, blueprintName, hostGroup, hosts, hostRacks, usernamePasswordCredentials, baseUri);
+            }
+        });
+    }
+
+    @Override
+    public RequestResponse getRequest(final String cluster, final int requestId, final UsernamePasswordCredentials usernamePasswordCredentials, final URI baseUri) {
+        return call(new Callable<RequestResponse>() {
+            @Override
+            public RequestResponse call() {
+                return delegate.getRequest(cluster, requestId, usernamePasswordCredentials, baseUri);
+            }
+        });
+    }
+
+    private <T> T call(Callable<T> request) {
+        return call(request, true);
+    }
+
+    private <T> T create(Callable<T> request) {
+        return call(request, false);
+    }
+
+    private <T> T call(Callable<T> request, boolean idempotent) {
+        for (int attempt = 1; ; attempt++) {
+            if (!circuitBreaker.allowRequest()) {
+                throw new AmbariApiError("Circuit breaker open: not calling Ambari REST API until it recovers");
+            }
+            try {
+                T result = request.call();
+                circuitBreaker.onSuccess();
+                return result;
+            } catch (Exception e) {
+                if (!(idempotent ? isRetryable(e) : isConnectFailure(e))) {
+                    // The server answered, so it is healthy even though the call was rejected
+                    circuitBreaker.onSuccess();
+                    throw Exceptions.propagate(e);
+                }
+                circuitBreaker.onFailure();
+                if (attempt >= maxAttempts) {
+                    throw Exceptions.propagate(e);
+                }
+                Duration backoff = backoff(attempt);
+                LOG.debug("Transient failure calling Ambari REST API (attempt {} of {}), retrying in {}: {}",
+                        new Object[] {attempt, maxAttempts, backoff, e.toString()});
+                retries.incrementAndGet();
+                Time.sleep(backoff);
+            }
+        }
+    }
+
+    private Duration backoff(int attempt) {
+        long cap = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+        return Duration.millis((long) (random.nextDouble() * cap));
+    }
+
+    static boolean isRetryable(Throwable throwable) {
+        for (Throwable cause : Throwables.getCausalChain(throwable)) {
+            if (cause instanceof AmbariApiError) {
+                return RETRYABLE_RESPONSE_CODES.contains(((AmbariApiError) cause).getResponseCode());
+            }
+            if (cause instanceof JsonProcessingException) {
+                // The server answered; retrying would get the same unparseable response
+                return false;
+            }
+        }
+        for (Throwable cause : Throwables.getCausalChain(throwable)) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the call failed before a connection to the server was made, so the request was never sent
+     */
+    static boolean isConnectFailure(Throwable throwable) {
+        for (Throwable cause : Throwables.getCausalChain(throwable)) {
+            if (cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+                    || cause instanceof NoRouteToHostException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.server;
+
+import brooklyn.util.time.Duration;
+
+/**
+ * Chooses the period for the server's status feeds. Polls at the fast period while something is happening and,
+ * after {@code idleCyclesBeforeBackoff} consecutive polls that saw no change, doubles the period on each further
+ * idle poll up to the slow period. Any activity or failure snaps it straight back to the fast period.
+ */
+class AdaptivePollingPolicy {
+
+    private final long fastPeriodMillis;
+    private final long slowPeriodMillis;
+    private final int idleCyclesBeforeBackoff;
+
+    private long periodMillis;
+    private int idleCycles;
+
+    AdaptivePollingPolicy(Duration fastPeriod, Duration slowPeriod, int idleCyclesBeforeBackoff) {
+        this.fastPeriodMillis = fastPeriod.toMilliseconds();
+        this.slowPeriodMillis = Math.max(fastPeriodMillis, slowPeriod.toMilliseconds());
+        this.idleCyclesBeforeBackoff = idleCyclesBeforeBackoff;
+        this.periodMillis = fastPeriodMillis;
+    }
+
+    /**
+     * @return whether the period changed.
+     */
+    synchronized boolean onIdle() {
+        idleCycles++;
+        if (idleCycles <= idleCyclesBeforeBackoff || periodMillis == slowPeriodMillis) {
+            return false;
+        }
+        periodMillis = Math.min(slowPeriodMillis, periodMillis * 2);
+        return true;
+    }
+
+    /**
+     * @return whether the period changed.
+     */
+    synchronized boolean onActivity() {
+        idleCycles = 0;
+        if (periodMillis == fastPeriodMillis) {
+            return false;
+        }
+        periodMillis = fastPeriodMillis;
+        return true;
+    }
+
+    /**
+     * @return whether the period changed.
+     */
+    synchronized boolean onFailure() {
+        return onActivity();
+    }
+
+    synchronized Duration getPeriod() {
+        return Duration.millis(periodMillis);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.server;
+
+import brooklyn.util.time.Duration;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.brooklyn.ambari.rest.AmbariApiError;
+import org.apache.brooklyn.ambari.rest.RequestResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows an asynchronous Ambari request until it finishes. Polls at the minimum period while the request makes
+ * progress and doubles the period (up to the maximum) each time it does not, so long installs cost few calls.
+ * Stops, failing the result, if Ambari does not know the request.
+ */
+class AmbariRequestTracker implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AmbariRequestTracker.class);
+
+    interface Listener {
+        void onStatus(RequestResponse.Request request, @Nullable Duration estimatedTimeRemaining);
+    }
+
+    private final Callable<RequestResponse> requestFetcher;
+    private final ScheduledExecutorService scheduler;
+    private final Listener listener;
+    private final long minPeriodMillis;
+    private final long maxPeriodMillis;
+    private final long startTime = System.currentTimeMillis();
+    private final SettableFuture<RequestResponse.Request> result = SettableFuture.create();
+
+    private long periodMillis;
+    private Double lastProgress;
+
+    AmbariRequestTracker(Callable<RequestResponse> requestFetcher, ScheduledExecutorService scheduler, Listener listener, Duration minPeriod, Duration maxPeriod) {
+        this.requestFetcher = requestFetcher;
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.minPeriodMillis = minPeriod.toMilliseconds();
+        this.maxPeriodMillis = maxPeriod.toMilliseconds();
+        this.periodMillis = minPeriodMillis;
+    }
+
+    void start() {
+        scheduler.execute(this);
+    }
+
+    /**
+     * @return a future that completes with the final state of the request, whether it succeeded or not.
+     */
+    ListenableFuture<RequestResponse.Request> getResult() {
+        return result;
+    }
+
+    void cancel() {
+        result.cancel(false);
+    }
+
+    @Override
+    public void run() {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            RequestResponse.Request request = requestFetcher.call().Requests;
+            boolean progressed = !Objects.equal(lastProgress, request.progress_percent);
+            lastProgress = request.progress_percent;
+            listener.onStatus(request, estimateTimeRemaining(request));
+            if (request.isFinished()) {
+                result.set(request);
+                return;
+            }
+            periodMillis = progressed ? minPeriodMillis : Math.min(periodMillis * 2, maxPeriodMillis);
+        } catch (Exception e) {
+            if (isUnknownRequest(e)) {
+                result.setException(e);
+                return;
+            }
+            LOG.debug("Failed to poll Ambari request, retrying in " + Duration.millis(periodMillis), e);
+            periodMillis = Math.min(periodMillis * 2, maxPeriodMillis);
+        }
+        try {
+            scheduler.schedule(this, periodMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            cancel();
+        }
+    }
+
+    private static boolean isUnknownRequest(Exception e) {
+        for (Throwable cause : Throwables.getCausalChain(e)) {
+            if (cause instanceof AmbariApiError) {
+                int responseCode = ((AmbariApiError) cause).getResponseCode();
+                return responseCode == 400 || responseCode == 404;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extrapolates from the time since Ambari started the request, or since tracking started if Ambari does not
+     * report when.
+     */
+    private Duration estimateTimeRemaining(RequestResponse.Request request) {
+        Double progressPercent = request.progress_percent;
+        if (progressPercent == null || progressPercent <= 0) {
+            return null;
+        }
+        long started = request.start_time != null && request.start_time > 0 ? request.start_time : startTime;
+        long elapsed = Math.max(0, System.currentTimeMillis() - started);
+        return Duration.millis((long) (elapsed * (100 - Math.min(progressPercent, 100)) / progressPercent));
+    }
+}
@@ -1,23 +1,219 @@
 package org.apache.brooklyn.ambari.server;
 
 import brooklyn.catalog.Catalog;
+import brooklyn.config.ConfigKey;
 import brooklyn.entity.annotation.Effector;
 import brooklyn.entity.annotation.EffectorParam;
+import brooklyn.entity.basic.ConfigKeys;
 import brooklyn.entity.basic.SoftwareProcess;
 import brooklyn.entity.java.UsesJava;
 import brooklyn.entity.proxying.ImplementedBy;
 import brooklyn.event.AttributeSensor;
+import brooklyn.event.Sensor;
 import brooklyn.event.basic.BasicAttributeSensor;
+import brooklyn.event.basic.BasicNotificationSensor;
+import brooklyn.event.basic.Sensors;
+import brooklyn.util.flags.SetFromFlag;
+import brooklyn.util.time.Duration;
+import org.apache.brooklyn.ambari.InstallProbe;
+import org.apache.brooklyn.ambari.mirror.AmbariRepoMirror;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Catalog(name = "Ambari Server", description = "Ambari Server: part of an ambari cluster used to install and monitor a hadoop cluster.")
 @ImplementedBy(AmbariServerImpl.class)
 public interface AmbariServer extends SoftwareProcess, UsesJava {
 
+    @SetFromFlag("serviceUpTimeout")
+    ConfigKey<Duration> SERVICE_UP_TIMEOUT = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.serviceUp.timeout", "Time an effector waits for the server to be up before failing", Duration.minutes(10));
+
+    @SetFromFlag("httpPoolMaxConnections")
+    ConfigKey<Integer> HTTP_POOL_MAX_CONNECTIONS = ConfigKeys.newIntegerConfigKey(
+            "ambari.http.pool.maxConnections", "Maximum number of pooled connections to the Ambari REST API", 20);
+
+    @SetFromFlag("httpPoolIdleTimeout")
+    ConfigKey<Duration> HTTP_POOL_IDLE_TIMEOUT = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.http.pool.idleTimeout", "Time after which idle pooled connections to the Ambari REST API are closed", Duration.seconds(30));
+
+    @SetFromFlag("apiMaxInFlightRequests")
+    ConfigKey<Integer> API_MAX_IN_FLIGHT_REQUESTS = ConfigKeys.newIntegerConfigKey(
+            "ambari.api.maxInFlightRequests", "Maximum number of asynchronous Ambari REST calls outstanding at once", 10);
+
+    @SetFromFlag("apiShutdownTimeout")
+    ConfigKey<Duration> API_SHUTDOWN_TIMEOUT = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.api.shutdownTimeout", "Time to let queued asynchronous Ambari REST calls finish when disconnecting, "
+                    + "before the connection pool is closed", Duration.seconds(30));
+
+    @SetFromFlag("bulkRequestSize")
+    ConfigKey<Integer> BULK_REQUEST_SIZE = ConfigKeys.newIntegerConfigKey(
+            "ambari.api.bulkRequestSize", "Maximum number of hosts covered by a single multi-resource Ambari request", 100);
+
+    @SetFromFlag("requestPollMinPeriod")
+    ConfigKey<Duration> REQUEST_POLL_MIN_PERIOD = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.request.poll.minPeriod", "Period for polling an Ambari request while it is making progress", Duration.seconds(1));
+
+    @SetFromFlag("requestPollMaxPeriod")
+    ConfigKey<Duration> REQUEST_POLL_MAX_PERIOD = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.request.poll.maxPeriod", "Longest period for polling an Ambari request that is not making progress", Duration.seconds(30));
+
+    @SetFromFlag("recommendationCacheMaxSize")
+    ConfigKey<Integer> RECOMMENDATION_CACHE_MAX_SIZE = ConfigKeys.newIntegerConfigKey(
+            "ambari.recommendations.cache.maxSize", "Maximum number of stack recommendations to cache", 100);
+
+    @SetFromFlag("recommendationCacheTtl")
+    ConfigKey<Duration> RECOMMENDATION_CACHE_TTL = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.recommendations.cache.ttl", "Time for which a cached stack recommendation is reused", Duration.minutes(60));
+
+    @SetFromFlag("apiMaxAttempts")
+    ConfigKey<Integer> API_MAX_ATTEMPTS = ConfigKeys.newIntegerConfigKey(
+            "ambari.api.retry.maxAttempts", "Maximum attempts for an Ambari REST call that fails transiently", 5);
+
+    @SetFromFlag("apiRetryInitialBackoff")
+    ConfigKey<Duration> API_RETRY_INITIAL_BACKOFF = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.api.retry.initialBackoff", "Upper bound of the jittered delay before the first retry of an Ambari REST call", Duration.millis(500));
+
+    @SetFromFlag("apiRetryMaxBackoff")
+    ConfigKey<Duration> API_RETRY_MAX_BACKOFF = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.api.retry.maxBackoff", "Upper bound of the jittered delay between retries of an Ambari REST call", Duration.seconds(30));
+
+    @SetFromFlag("apiCircuitBreakerFailureThreshold")
+    ConfigKey<Integer> API_CIRCUIT_BREAKER_FAILURE_THRESHOLD = ConfigKeys.newIntegerConfigKey(
+            "ambari.api.circuitBreaker.failureThreshold", "Consecutive transient failures after which Ambari REST calls are refused", 5);
+
+    @SetFromFlag("apiCircuitBreakerOpenDuration")
+    ConfigKey<Duration> API_CIRCUIT_BREAKER_OPEN_DURATION = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.api.circuitBreaker.openDuration", "Time for which Ambari REST calls are refused before a trial call is let through", Duration.seconds(30));
+
+    @SetFromFlag("pollFastPeriod")
+    ConfigKey<Duration> POLL_FAST_PERIOD = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.poll.fastPeriod", "Period for polling server status while starting, registering hosts or installing", Duration.millis(500));
+
+    @SetFromFlag("pollSlowPeriod")
+    ConfigKey<Duration> POLL_SLOW_PERIOD = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.poll.slowPeriod", "Longest period for polling server status once nothing is changing", Duration.seconds(30));
+
+    @SetFromFlag("pollIdleCyclesBeforeBackoff")
+    ConfigKey<Integer> POLL_IDLE_CYCLES_BEFORE_BACKOFF = ConfigKeys.newIntegerConfigKey(
+            "ambari.poll.idleCyclesBeforeBackoff", "Consecutive polls without change before the polling period starts to grow", 10);
+
+    @SetFromFlag("hostMetricsPeriod")
+    ConfigKey<Duration> HOST_METRICS_PERIOD = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.hostMetrics.period", "Period for polling CPU, memory, disk and network metrics of every host in the cluster", Duration.seconds(15));
+
+    @SetFromFlag("hostMetricsWindowSamples")
+    ConfigKey<Integer> HOST_METRICS_WINDOW_SAMPLES = ConfigKeys.newIntegerConfigKey(
+            "ambari.hostMetrics.windowSamples", "Number of recent samples per host metric over which averages and percentiles are taken", 20);
+
+    @SetFromFlag("prebakedImage")
+    ConfigKey<Boolean> PREBAKED_IMAGE = InstallProbe.PREBAKED_IMAGE;
+
+    @SetFromFlag("fullInstallEstimate")
+    ConfigKey<Duration> FULL_INSTALL_ESTIMATE = InstallProbe.FULL_INSTALL_ESTIMATE;
+
+    AttributeSensor<String> INSTALL_PATH = InstallProbe.INSTALL_PATH;
+
+    AttributeSensor<Duration> INSTALL_TIME_SAVED = InstallProbe.INSTALL_TIME_SAVED;
+
+    AttributeSensor<Duration> INSTALL_DURATION = InstallProbe.INSTALL_DURATION;
+
+    @SetFromFlag("repoMirrorUrl")
+    ConfigKey<String> REPO_MIRROR_URL = AmbariRepoMirror.REPO_MIRROR_URL;
+
+    @SetFromFlag("hostGroupPlacement")
+    ConfigKey<String> HOST_GROUP_PLACEMENT = ConfigKeys.newStringConfigKey(
+            "ambari.install.hostGroupPlacement", "RECOMMENDED to bind hosts to host groups as Ambari recommends, or ZONE_AWARE "
+                    + "to spread single-host master groups across racks and keep worker groups within as few racks as possible", "RECOMMENDED");
+
+    @SetFromFlag("apiMetricsWindow")
+    ConfigKey<Duration> API_METRICS_WINDOW = ConfigKeys.newConfigKey(Duration.class,
+            "ambari.api.metrics.window", "Sliding window over which Ambari API latency percentiles are reported", Duration.minutes(1));
+
+    AttributeSensor<Integer> QUEUED_EFFECTORS = Sensors.newIntegerSensor(
+            "ambari.effectors.queued", "Effector calls waiting for the server to be up");
+
+    AttributeSensor<String> CLUSTER_NAME = Sensors.newStringSensor(
+            "ambari.cluster.name", "Name of the Hadoop cluster installed through this server");
+
+    AttributeSensor<Map<String, List<String>>> HOST_GROUPS = new BasicAttributeSensor(
+            Map.class, "ambari.cluster.hostGroups", "Hosts in each blueprint host group, as bound at install or added since");
+
+    AttributeSensor<Integer> REQUEST_ID = Sensors.newIntegerSensor(
+            "ambari.request.id", "Id of the Ambari request installing the cluster");
+
+    AttributeSensor<String> REQUEST_STATUS = Sensors.newStringSensor(
+            "ambari.request.status", "Status of the Ambari request most recently tracked");
+
+    AttributeSensor<Double> REQUEST_PROGRESS_PERCENT = Sensors.newDoubleSensor(
+            "ambari.request.progressPercent", "Progress of the Ambari request most recently tracked");
+
+    AttributeSensor<Integer> REQUEST_TASK_COUNT = Sensors.newIntegerSensor(
+            "ambari.request.tasks.total", "Number of tasks in the Ambari request most recently tracked");
+
+    AttributeSensor<Integer> REQUEST_COMPLETED_TASK_COUNT = Sensors.newIntegerSensor(
+            "ambari.request.tasks.completed", "Number of completed tasks in the Ambari request most recently tracked");
+
+    AttributeSensor<Integer> REQUEST_FAILED_TASK_COUNT = Sensors.newIntegerSensor(
+            "ambari.request.tasks.failed", "Number of failed tasks in the Ambari request most recently tracked");
+
+    AttributeSensor<Duration> REQUEST_ESTIMATED_TIME_REMAINING = Sensors.newSensor(Duration.class,
+            "ambari.request.eta", "Estimated time until the Ambari request most recently tracked finishes");
+
+    AttributeSensor<Long> RECOMMENDATION_CACHE_HITS = Sensors.newLongSensor(
+            "ambari.recommendations.cache.hits", "Stack recommendations answered from the cache");
+
+    AttributeSensor<Long> RECOMMENDATION_CACHE_MISSES = Sensors.newLongSensor(
+            "ambari.recommendations.cache.misses", "Stack recommendations that had to be requested from Ambari");
+
+    AttributeSensor<Integer> HTTP_POOL_LEASED_CONNECTIONS = Sensors.newIntegerSensor(
+            "ambari.http.pool.leased", "Pooled connections currently in use by Ambari REST calls");
+
+    AttributeSensor<Integer> HTTP_POOL_AVAILABLE_CONNECTIONS = Sensors.newIntegerSensor(
+            "ambari.http.pool.available", "Idle pooled connections kept alive for Ambari REST calls");
+
+    AttributeSensor<Integer> HTTP_POOL_PENDING_REQUESTS = Sensors.newIntegerSensor(
+            "ambari.http.pool.pending", "Ambari REST calls waiting for a pooled connection");
+
+    AttributeSensor<Long> API_RETRIES = Sensors.newLongSensor(
+            "ambari.api.retries", "Ambari REST calls retried after a transient failure");
+
+    AttributeSensor<String> API_CIRCUIT_BREAKER_STATE = Sensors.newStringSensor(
+            "ambari.api.circuitBreaker.state", "State of the circuit breaker guarding Ambari REST calls");
+
+    AttributeSensor<Map<String, Map<String, Object>>> API_METRICS = new BasicAttributeSensor(
+            Map.class, "ambari.api.metrics", "Per endpoint template: calls, errors, bytes in/out and p50/p99/max latency over the sliding window");
+
+    AttributeSensor<Duration> CURRENT_POLL_PERIOD = Sensors.newSensor(Duration.class,
+            "ambari.poll.period", "Period at which server status and registered hosts are currently polled");
+
+    AttributeSensor<Map<String, String>> SERVICE_STATES = new BasicAttributeSensor(
+            Map.class, "ambari.cluster.services", "State of each service in the cluster, by service name");
+
+    AttributeSensor<Map<String, Integer>> CLUSTER_HEALTH_REPORT = new BasicAttributeSensor(
+            Map.class, "ambari.cluster.healthReport", "Ambari's health report for the cluster's hosts");
+
+    AttributeSensor<Integer> ALERTS_CRITICAL = Sensors.newIntegerSensor(
+            "ambari.cluster.alerts.critical", "Number of critical alerts in the cluster");
+
+    AttributeSensor<Integer> ALERTS_WARNING = Sensors.newIntegerSensor(
+            "ambari.cluster.alerts.warning", "Number of warning alerts in the cluster");
+
+    AttributeSensor<Map<String, Map<String, Double>>> HOST_METRICS = new BasicAttributeSensor(
+            Map.class, "ambari.hostMetrics", "Per host name: windowed average and 95th percentile of each HostMetrics metric");
+
     AttributeSensor<List<String>> REGISTERED_HOSTS = new BasicAttributeSensor(
-            List.class, "registered.hosts.list", "List of registered agents");
+            List.class, "registered.hosts.list", "List of registered agents; only published when it changes");
+
+    AttributeSensor<Integer> REGISTERED_HOST_COUNT = Sensors.newIntegerSensor(
+            "registered.hosts.count", "Number of registered agents");
+
+    Sensor<String> HOST_REGISTERED = new BasicNotificationSensor<String>(
+            String.class, "registered.hosts.added", "Host name of an agent that has registered with the server");
+
+    Sensor<String> HOST_LOST = new BasicNotificationSensor<String>(
+            String.class, "registered.hosts.lost", "Host name of an agent that is no longer registered with the server");
 
     /**
      * @throws IllegalStateException if times out.
@@ -31,6 +227,10 @@ public interface AmbariServer extends SoftwareProcess, UsesJava {
     public void addHostToCluster(@EffectorParam(name = "Cluster name") String cluster,
                                  @EffectorParam(name = "Host FQDN") String hostName);
 
+    @Effector(description = "Adds many hosts to a cluster using a few multi-resource requests")
+    public void addHostsToCluster(@EffectorParam(name = "Cluster name") String cluster,
+                                  @EffectorParam(name = "Hosts", description = "List of FQDNs to add to cluster") List<String> hosts);
+
     @Effector(description = "Add a service to a cluster")
     public void addServiceToCluster(@EffectorParam(name = "Cluster name") String cluster,
                                     @EffectorParam(name = "Service name") String service);
@@ -45,9 +245,30 @@ public interface AmbariServer extends SoftwareProcess, UsesJava {
                                     @EffectorParam(name = "Host FQDN") String hostName,
                                     @EffectorParam(name = "Component name") String component);
 
-    @Effector(description = "Create and install cluster on hosts with services")
-    public void installHDP(@EffectorParam(name = "Cluster Name") String clusterName,
+    @Effector(description = "Create host components on many hosts using a few multi-resource requests")
+    public void createHostComponents(@EffectorParam(name = "Cluster name") String cluster,
+                                     @EffectorParam(name = "Host components", description = "Map of host FQDN to the list of components to create on it") Map<String, List<String>> hostComponents);
+
+    @Effector(description = "Adds hosts to a blueprint cluster's host group, which installs and starts its components on them, using a few multi-resource requests")
+    public void addHostsToHostGroup(@EffectorParam(name = "Cluster name") String cluster,
+                                    @EffectorParam(name = "Blueprint name") String blueprintName,
+                                    @EffectorParam(name = "Host group") String hostGroup,
+                                    @EffectorParam(name = "Hosts", description = "List of FQDNs to add to the host group") List<String> hosts,
+                                    @EffectorParam(name = "Host racks", description = "Rack of each host, by FQDN; hosts without one get Ambari's default rack", nullable = true) Map<String, String> hostRacks);
+
+    @Effector(description = "Waits for an asynchronous Ambari request to finish and returns its final status")
+    public String waitForRequest(@EffectorParam(name = "Cluster name") String cluster,
+                                 @EffectorParam(name = "Request id") Integer requestId,
+                                 @EffectorParam(name = "Timeout", description = "Maximum time to wait for the request") Duration timeout);
+
+    /**
+     * @return the id of the Ambari request installing the cluster, which is still running, or null if Ambari
+     * started none
+     */
+    @Effector(description = "Create and install cluster on hosts with services, returning the id of the Ambari request installing it")
+    public Integer installHDP(@EffectorParam(name = "Cluster Name") String clusterName,
                            @EffectorParam(name = "Blueprint Name") String blueprintName,
                            @EffectorParam(name = "Hosts", description = "List of FQDNs to add to cluster") List<String> hosts,
-                           @EffectorParam(name = "Services", description = "List of services to install on cluster") List<String> services);
+                           @EffectorParam(name = "Services", description = "List of services to install on cluster") List<String> services,
+                           @EffectorParam(name = "Host racks", description = "Rack of each host, by FQDN; hosts without one get Ambari's default rack", nullable = true) Map<String, String> hostRacks);
 }
@@ -3,41 +3,139 @@ package org.apache.brooklyn.ambari.server;
 import brooklyn.entity.annotation.EffectorParam;
 import brooklyn.entity.basic.Attributes;
 import brooklyn.entity.basic.SoftwareProcessImpl;
-import brooklyn.event.feed.http.HttpFeed;
-import brooklyn.event.feed.http.HttpPollConfig;
-import brooklyn.event.feed.http.HttpValueFunctions;
+import brooklyn.event.SensorEvent;
+import brooklyn.event.SensorEventListener;
+import brooklyn.event.feed.function.FunctionFeed;
+import brooklyn.event.feed.function.FunctionPollConfig;
 import brooklyn.location.access.BrooklynAccessUtils;
+import brooklyn.util.exceptions.Exceptions;
 import brooklyn.util.guava.Functionals;
-import brooklyn.util.http.HttpTool;
+import brooklyn.util.time.Duration;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.net.HostAndPort;
-import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonElement;
-import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
 import org.apache.brooklyn.ambari.rest.*;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class AmbariServerImpl extends SoftwareProcessImpl implements AmbariServer {
 
-    private volatile HttpFeed serviceUpHttpFeed;
-    private volatile HttpFeed hostsHttpFeed;
+    private static final Logger LOG = LoggerFactory.getLogger(AmbariServerImpl.class);
+
+    private static final JsonTreePath HOST_NAMES = JsonTreePath.compile("$.items[*].Hosts.host_name");
+    private static final JsonTreePath SERVICE_INFOS = JsonTreePath.compile("$.services[*].ServiceInfo");
+    private static final JsonTreePath HEALTH_REPORT = JsonTreePath.compile("$.Clusters.health_report");
+    static final JsonTreePath ALERTS_CRITICAL_COUNT = JsonTreePath.compile("$.alerts_summary.CRITICAL");
+    static final JsonTreePath ALERTS_WARNING_COUNT = JsonTreePath.compile("$.alerts_summary.WARNING");
+
+    private volatile FunctionFeed statusFeed;
+    private volatile AmbariStatusPoller statusPoller;
+    private volatile FunctionFeed apiClientFeed;
+    private volatile FunctionFeed hostMetricsFeed;
     //TODO clearly needs changed
     private UsernamePasswordCredentials usernamePasswordCredentials = new UsernamePasswordCredentials("admin", "admin");
-    private AmbariApiHelper ambariApiHelper = new DefaultAmbariApiHelper();
+    private volatile AmbariConnectionPool connectionPool;
+    private final RegisteredHosts registeredHosts = new RegisteredHosts();
+    private volatile AdaptivePollingPolicy pollingPolicy;
+    private volatile AmbariApiMetrics apiMetrics;
+    /** Without retries, for request trackers, which back off on their own and share the {@link #requestPoller}. */
+    private volatile AmbariApiHelper directApiHelper;
+    private volatile RetryingAmbariApiHelper retryingApiHelper;
+    private volatile CachingAmbariApiHelper recommendationCache;
+    private volatile AmbariApiHelper ambariApiHelper;
+    private volatile AsyncAmbariApiHelper asyncAmbariApiHelper;
+    private volatile ScheduledExecutorService requestPoller;
+    // Guarded by this, with statusFeed, so that a reconnect can never rebuild the feed once it has been stopped
+    private boolean pollingStopped;
+    private final ConcurrentMap<String, AmbariRequestTracker> requestTrackers = new ConcurrentHashMap<String, AmbariRequestTracker>();
+
+    private final ReadinessGate readinessGate = new ReadinessGate(new ReadinessGate.Listener() {
+        @Override
+        public void onQueuedChanged(int queued) {
+            setAttribute(QUEUED_EFFECTORS, queued);
+        }
+    });
 
     @Override
     public Class getDriverInterface() {
         return AmbariServerDriver.class;
     }
 
+    @Override
+    public void init() {
+        super.init();
+        subscribeToServiceUp();
+    }
+
+    /**
+     * Seeds the host snapshot from the persisted {@code REGISTERED_HOSTS}, so that the first poll after rebind
+     * only reports hosts that really registered or were lost meanwhile.
+     */
+    @Override
+    public void rebind() {
+        super.rebind();
+        List<String> hosts = getAttribute(REGISTERED_HOSTS);
+        if (hosts != null) {
+            registeredHosts.update(hosts);
+        }
+        subscribeToServiceUp();
+    }
+
+    private void subscribeToServiceUp() {
+        subscribe(this, SERVICE_UP, new SensorEventListener<Boolean>() {
+            @Override
+            public void onEvent(SensorEvent<Boolean> event) {
+                readinessGate.onServiceUp(Boolean.TRUE.equals(event.getValue()));
+            }
+        });
+        readinessGate.onServiceUp(Boolean.TRUE.equals(getAttribute(SERVICE_UP)));
+    }
+
+    /**
+     * Waits on the {@link ReadinessGate} rather than polling {@code SERVICE_UP}.
+     *
+     * @throws IllegalStateException if times out or the server is stopped.
+     */
+    @Override
+    public void waitForServiceUp() {
+        readinessGate.await(getConfig(SERVICE_UP_TIMEOUT));
+    }
+
     @Override
     protected void connectSensors() {
         super.connectSensors();
@@ -48,81 +146,659 @@ public class AmbariServerImpl extends SoftwareProcessImpl implements AmbariServe
         String ambariUri = String.format("http://%s:%d/", hp.getHostText(), hp.getPort());
         setAttribute(Attributes.MAIN_URI, URI.create(ambariUri));
 
-        serviceUpHttpFeed = HttpFeed.builder()
+        connectionPool = new AmbariConnectionPool(getConfig(HTTP_POOL_MAX_CONNECTIONS), getConfig(HTTP_POOL_IDLE_TIMEOUT));
+        apiMetrics = new AmbariApiMetrics(getConfig(API_METRICS_WINDOW));
+        directApiHelper = new DefaultAmbariApiHelper(connectionPool, apiMetrics);
+        retryingApiHelper = new RetryingAmbariApiHelper(directApiHelper,
+                getConfig(API_MAX_ATTEMPTS), getConfig(API_RETRY_INITIAL_BACKOFF), getConfig(API_RETRY_MAX_BACKOFF),
+                new CircuitBreaker(getConfig(API_CIRCUIT_BREAKER_FAILURE_THRESHOLD), getConfig(API_CIRCUIT_BREAKER_OPEN_DURATION)));
+        recommendationCache = new CachingAmbariApiHelper(retryingApiHelper,
+                getConfig(RECOMMENDATION_CACHE_MAX_SIZE), getConfig(RECOMMENDATION_CACHE_TTL), getConfig(BULK_REQUEST_SIZE));
+        ambariApiHelper = recommendationCache;
+        asyncAmbariApiHelper = new DefaultAsyncAmbariApiHelper(ambariApiHelper, getConfig(API_MAX_IN_FLIGHT_REQUESTS));
+        requestPoller = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ambari-request-poller-%d").setDaemon(true).build());
+
+        statusPoller = new AmbariStatusPoller(connectionPool, apiMetrics, usernamePasswordCredentials, URI.create(ambariUri),
+                new Supplier<String>() {
+                    @Override
+                    public String get() {
+                        return getAttribute(CLUSTER_NAME);
+                    }
+                });
+        pollingPolicy = new AdaptivePollingPolicy(getConfig(POLL_FAST_PERIOD), getConfig(POLL_SLOW_PERIOD), getConfig(POLL_IDLE_CYCLES_BEFORE_BACKOFF));
+        synchronized (this) {
+            pollingStopped = false;
+            connectPollingFeeds();
+        }
+
+        Callable<PoolStats> poolStats = new Callable<PoolStats>() {
+            @Override
+            public PoolStats call() {
+                connectionPool.evictIdleConnections();
+                return connectionPool.getStats();
+            }
+        };
+        Callable<CacheStats> recommendationCacheStats = new Callable<CacheStats>() {
+            @Override
+            public CacheStats call() {
+                return recommendationCache.stats();
+            }
+        };
+        final HostMetrics hostMetrics = new HostMetrics(getConfig(HOST_METRICS_WINDOW_SAMPLES));
+        hostMetricsFeed = FunctionFeed.builder()
                 .entity(this)
-                .period(500, TimeUnit.MILLISECONDS)
-                .baseUri(ambariUri)
-                .poll(new HttpPollConfig<Boolean>(SERVICE_UP)
-                        .onSuccess(HttpValueFunctions.responseCodeEquals(200))
-                        .onFailureOrException(Functions.constant(false)))
+                .period(getConfig(HOST_METRICS_PERIOD).toMilliseconds(), TimeUnit.MILLISECONDS)
+                .poll(new FunctionPollConfig<Map<String, Map<String, Double>>, Map<String, Map<String, Double>>>(HOST_METRICS)
+                        .callable(new Callable<Map<String, Map<String, Double>>>() {
+                            @Override
+                            public Map<String, Map<String, Double>> call() {
+                                JsonElement response = statusPoller.pollHostMetrics();
+                                if (response != null) {
+                                    hostMetrics.ingest(response);
+                                }
+                                return hostMetrics.snapshot();
+                            }
+                        })
+                        .onException(new Function<Object, Map<String, Map<String, Double>>>() {
+                            @Override
+                            public Map<String, Map<String, Double>> apply(Object failure) {
+                                recordFailedPoll(AmbariStatusPoller.CLUSTER_HOSTS_ENDPOINT, failure);
+                                return hostMetrics.snapshot();
+                            }
+                        }))
                 .build();
 
-        hostsHttpFeed = HttpFeed.builder()
+        apiClientFeed = FunctionFeed.builder()
                 .entity(this)
-                .period(1000, TimeUnit.MILLISECONDS)
-                .baseUri(ambariUri + "api/v1/hosts")
-                .credentials("admin", "admin")
-                .header(HttpHeaders.AUTHORIZATION, HttpTool.toBasicAuthorizationValue(usernamePasswordCredentials))
-                .poll(new HttpPollConfig<List<String>>(REGISTERED_HOSTS)
-                                .onSuccess(Functionals.chain(HttpValueFunctions.jsonContents(), getHosts()))
-                                .onFailureOrException(Functions.<List<String>>constant(ImmutableList.<String>of()))
-                ).build();
+                .period(5, TimeUnit.SECONDS)
+                .poll(new FunctionPollConfig<PoolStats, Integer>(HTTP_POOL_LEASED_CONNECTIONS)
+                        .callable(poolStats)
+                        .onSuccess(new Function<PoolStats, Integer>() {
+                            @Override
+                            public Integer apply(PoolStats stats) {
+                                return stats.getLeased();
+                            }
+                        }))
+                .poll(new FunctionPollConfig<PoolStats, Integer>(HTTP_POOL_AVAILABLE_CONNECTIONS)
+                        .callable(poolStats)
+                        .onSuccess(new Function<PoolStats, Integer>() {
+                            @Override
+                            public Integer apply(PoolStats stats) {
+                                return stats.getAvailable();
+                            }
+                        }))
+                .poll(new FunctionPollConfig<PoolStats, Integer>(HTTP_POOL_PENDING_REQUESTS)
+                        .callable(poolStats)
+                        .onSuccess(new Function<PoolStats, Integer>() {
+                            @Override
+                            public Integer apply(PoolStats stats) {
+                                return stats.getPending();
+                            }
+                        }))
+                .poll(new FunctionPollConfig<CacheStats, Long>(RECOMMENDATION_CACHE_HITS)
+                        .callable(recommendationCacheStats)
+                        .onSuccess(new Function<CacheStats, Long>() {
+                            @Override
+                            public Long apply(CacheStats stats) {
+                                return stats.hitCount();
+                            }
+                        }))
+                .poll(new FunctionPollConfig<CacheStats, Long>(RECOMMENDATION_CACHE_MISSES)
+                        .callable(recommendationCacheStats)
+                        .onSuccess(new Function<CacheStats, Long>() {
+                            @Override
+                            public Long apply(CacheStats stats) {
+                                return stats.missCount();
+                            }
+                        }))
+                .poll(new FunctionPollConfig<Long, Long>(API_RETRIES)
+                        .callable(new Callable<Long>() {
+                            @Override
+                            public Long call() {
+                                return retryingApiHelper.getRetryCount();
+                            }
+                        }))
+                .poll(new FunctionPollConfig<String, String>(API_CIRCUIT_BREAKER_STATE)
+                        .callable(new Callable<String>() {
+                            @Override
+                            public String call() {
+                                return retryingApiHelper.getCircuitBreakerState().name();
+                            }
+                        }))
+                .poll(new FunctionPollConfig<Map<String, Map<String, Object>>, Map<String, Map<String, Object>>>(API_METRICS)
+                        .callable(new Callable<Map<String, Map<String, Object>>>() {
+                            @Override
+                            public Map<String, Map<String, Object>> call() {
+                                return apiMetrics.snapshot();
+                            }
+                        }))
+                .build();
+    }
+
+    /**
+     * (Re)builds the status feed at the period currently chosen by the {@link AdaptivePollingPolicy}; feed periods
+     * are fixed once built. Every sensor below is read from the one {@link AmbariStatusPoller.Status} fetched per
+     * cycle, as the polls share a callable. The poll only throws when the hosts call fails, so {@code SERVICE_UP}
+     * follows the hosts call alone; a failed cluster call just leaves the cluster sensors empty.
+     */
+    private synchronized void connectPollingFeeds() {
+        if (pollingStopped) return;
+        if (statusFeed != null) statusFeed.stop();
+
+        Duration period = pollingPolicy.getPeriod();
+        setAttribute(CURRENT_POLL_PERIOD, period);
 
+        Callable<AmbariStatusPoller.Status> status = new Callable<AmbariStatusPoller.Status>() {
+            @Override
+            public AmbariStatusPoller.Status call() {
+                return statusPoller.poll();
+            }
+        };
+        statusFeed = FunctionFeed.builder()
+                .entity(this)
+                .period(period.toMilliseconds(), TimeUnit.MILLISECONDS)
+                .poll(new FunctionPollConfig<AmbariStatusPoller.Status, Boolean>(SERVICE_UP)
+                        .callable(status)
+                        .onSuccess(Functions.constant(true))
+                        .onException(failedPoll(AmbariStatusPoller.HOSTS_ENDPOINT, Suppliers.ofInstance(false))))
+                .poll(new FunctionPollConfig<AmbariStatusPoller.Status, Integer>(REGISTERED_HOST_COUNT)
+                        .callable(status)
+                        .onSuccess(Functionals.chain(statusHosts(), getHosts(), publishHostChanges()))
+                        // Keep the last snapshot rather than reporting every host as lost on a failed poll
+                        .onException(Functions.forSupplier(registeredHostCount)))
+                .poll(new FunctionPollConfig<AmbariStatusPoller.Status, Map<String, String>>(SERVICE_STATES)
+                        .callable(status)
+                        .onSuccess(serviceStates()))
+                .poll(new FunctionPollConfig<AmbariStatusPoller.Status, Map<String, Integer>>(CLUSTER_HEALTH_REPORT)
+                        .callable(status)
+                        .onSuccess(clusterHealthReport()))
+                .poll(new FunctionPollConfig<AmbariStatusPoller.Status, Integer>(ALERTS_CRITICAL)
+                        .callable(status)
+                        .onSuccess(alertCount(ALERTS_CRITICAL_COUNT)))
+                .poll(new FunctionPollConfig<AmbariStatusPoller.Status, Integer>(ALERTS_WARNING)
+                        .callable(status)
+                        .onSuccess(alertCount(ALERTS_WARNING_COUNT)))
+                .build();
     }
 
-    Function<JsonElement, List<String>> getHosts() {
-        Function<JsonElement, List<String>> path = new Function<JsonElement, List<String>>() {
-            @Nullable
+    private Function<AmbariStatusPoller.Status, JsonElement> statusHosts() {
+        return new Function<AmbariStatusPoller.Status, JsonElement>() {
+            @Override
+            public JsonElement apply(AmbariStatusPoller.Status status) {
+                return status.hosts;
+            }
+        };
+    }
+
+    static Function<AmbariStatusPoller.Status, Map<String, String>> serviceStates() {
+        return new Function<AmbariStatusPoller.Status, Map<String, String>>() {
+            @Override
+            public Map<String, String> apply(AmbariStatusPoller.Status status) {
+                if (status.cluster == null || !status.cluster.getAsJsonObject().has("services")) return null;
+                Map<String, String> states = Maps.newTreeMap();
+                for (JsonElement serviceInfo : SERVICE_INFOS.read(status.cluster)) {
+                    states.put(serviceInfo.getAsJsonObject().get("service_name").getAsString(),
+                            serviceInfo.getAsJsonObject().get("state").getAsString());
+                }
+                return states;
+            }
+        };
+    }
+
+    static Function<AmbariStatusPoller.Status, Map<String, Integer>> clusterHealthReport() {
+        return new Function<AmbariStatusPoller.Status, Map<String, Integer>>() {
+            @Override
+            public Map<String, Integer> apply(AmbariStatusPoller.Status status) {
+                JsonElement report = readFirst(HEALTH_REPORT, status.cluster);
+                if (report == null) return null;
+                Map<String, Integer> healthReport = Maps.newTreeMap();
+                for (Map.Entry<String, JsonElement> entry : report.getAsJsonObject().entrySet()) {
+                    healthReport.put(entry.getKey(), entry.getValue().getAsInt());
+                }
+                return healthReport;
+            }
+        };
+    }
+
+    static Function<AmbariStatusPoller.Status, Integer> alertCount(final JsonTreePath path) {
+        return new Function<AmbariStatusPoller.Status, Integer>() {
+            @Override
+            public Integer apply(AmbariStatusPoller.Status status) {
+                JsonElement count = readFirst(path, status.cluster);
+                return count == null ? null : count.getAsInt();
+            }
+        };
+    }
+
+    /**
+     * @return the first element at {@code path}, or null if there is no cluster yet or this version of Ambari
+     * does not report it.
+     */
+    @Nullable
+    private static JsonElement readFirst(JsonTreePath path, @Nullable JsonElement cluster) {
+        if (cluster == null) {
+            return null;
+        }
+        try {
+            List<JsonElement> elements = path.read(cluster);
+            return elements.isEmpty() ? null : elements.get(0);
+        } catch (PathNotFoundException e) {
+            return null;
+        }
+    }
+
+    private void reconnectPollingFeedsIfChanged(boolean periodChanged) {
+        if (!periodChanged || requestPoller == null) {
+            return;
+        }
+        try {
+            // Not from the feed's own poll, which is what triggered the change
+            requestPoller.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!requestPoller.isShutdown()) connectPollingFeeds();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Disconnecting
+        }
+    }
+
+    private void onApiActivity() {
+        if (pollingPolicy == null) return;
+        reconnectPollingFeedsIfChanged(pollingPolicy.onActivity());
+    }
+
+    /**
+     * Handles a poll that threw: backs the polling off and counts the failure against {@code endpoint} in the API
+     * metrics, unless the poller already did. Use on one poll per shared callable, so each failure counts once.
+     */
+    private <T> Function<Object, T> failedPoll(final String endpoint, final Supplier<T> value) {
+        return new Function<Object, T>() {
+            @Override
+            public T apply(Object input) {
+                recordFailedPoll(endpoint, input);
+                reconnectPollingFeedsIfChanged(pollingPolicy.onFailure());
+                return value.get();
+            }
+        };
+    }
+
+    private void recordFailedPoll(String endpoint, Object failure) {
+        if (!(failure instanceof AmbariStatusPoller.RecordedPollFailure)) {
+            apiMetrics.record(endpoint, 0, true, 0, 0);
+        }
+    }
+
+    private final Supplier<Integer> registeredHostCount = new Supplier<Integer>() {
+        @Override
+        public Integer get() {
+            return registeredHosts.size();
+        }
+    };
+
+    private boolean hasRequestsInProgress() {
+        for (AmbariRequestTracker requestTracker : requestTrackers.values()) {
+            if (!requestTracker.getResult().isDone()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Diffs the polled hosts against the previous poll, publishing {@link #REGISTERED_HOSTS} only when it has
+     * changed and {@link #HOST_REGISTERED} or {@link #HOST_LOST} for each host that changed.
+     */
+    private Function<List<String>, Integer> publishHostChanges() {
+        return new Function<List<String>, Integer>() {
             @Override
-            public List<String> apply(@Nullable JsonElement jsonElement) {
-                String jsonString = jsonElement.toString();
-                return JsonPath.read(jsonString, "$.items[*].Hosts.host_name");
+            public Integer apply(List<String> hosts) {
+                onHostsPolled(hosts);
+                return registeredHosts.size();
             }
         };
-        return path;
+    }
+
+    protected void onHostsPolled(List<String> hosts) {
+        RegisteredHosts.Delta delta = registeredHosts.update(hosts);
+        if (pollingPolicy != null) {
+            boolean idle = delta.isEmpty() && !hasRequestsInProgress();
+            reconnectPollingFeedsIfChanged(idle ? pollingPolicy.onIdle() : pollingPolicy.onActivity());
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
+        setAttribute(REGISTERED_HOSTS, registeredHosts.asList());
+        for (String host : delta.registered) {
+            emit(HOST_REGISTERED, host);
+        }
+        for (String host : delta.lost) {
+            emit(HOST_LOST, host);
+        }
+    }
+
+    Function<JsonElement, List<String>> getHosts() {
+        return HOST_NAMES.strings();
     }
 
     @Override
     public void disconnectSensors() {
         super.disconnectSensors();
 
-        if (serviceUpHttpFeed != null) serviceUpHttpFeed.stop();
+        readinessGate.cancel();
+        // Stop the poller first so that no reconnect is queued behind the feed being stopped
+        if (requestPoller != null) requestPoller.shutdownNow();
+        stopPollingFeeds();
+        if (apiClientFeed != null) apiClientFeed.stop();
+        if (hostMetricsFeed != null) hostMetricsFeed.stop();
+        for (AmbariRequestTracker requestTracker : requestTrackers.values()) {
+            requestTracker.cancel();
+        }
+        requestTrackers.clear();
+        if (asyncAmbariApiHelper != null) shutdownAsyncApiHelper(asyncAmbariApiHelper, getConfig(API_SHUTDOWN_TIMEOUT));
+        if (connectionPool != null) connectionPool.shutdown();
+    }
+
+    private synchronized void stopPollingFeeds() {
+        pollingStopped = true;
+        if (statusFeed != null) statusFeed.stop();
+    }
+
+    /**
+     * Stops the async helper and waits for its queued calls to finish, so that they are not sent on a connection
+     * pool that is already closed.
+     */
+    static void shutdownAsyncApiHelper(AsyncAmbariApiHelper asyncAmbariApiHelper, Duration timeout) {
+        asyncAmbariApiHelper.shutdown();
+        try {
+            if (!asyncAmbariApiHelper.awaitTermination(timeout)) {
+                LOG.warn("Asynchronous Ambari REST calls still queued after {}; closing the connection pool anyway", timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
     public void createCluster(String cluster) {
         waitForServiceUp();
+        onApiActivity();
     }
 
     @Override
     public void addHostToCluster(@EffectorParam(name = "Cluster name") String cluster, @EffectorParam(name = "Host FQDN") String hostName) {
         waitForServiceUp();
+        onApiActivity();
         ambariApiHelper.addHostToCluster(cluster, hostName, usernamePasswordCredentials, getAttribute(Attributes.MAIN_URI));
     }
 
+    @Override
+    public void addHostsToCluster(final String cluster, final List<String> hosts) {
+        onApiActivity();
+        waitForAll(whenServiceUp(new Callable<ListenableFuture<List<Void>>>() {
+            @Override
+            public ListenableFuture<List<Void>> call() {
+                List<ListenableFuture<Void>> requests = Lists.newArrayList();
+                for (List<String> batch : BulkRequests.batches(hosts, getConfig(BULK_REQUEST_SIZE))) {
+                    requests.add(asyncAmbariApiHelper.addHostsToCluster(cluster, batch, usernamePasswordCredentials, getAttribute(Attributes.MAIN_URI)));
+                }
+                return Futures.allAsList(requests);
+            }
+        }));
+    }
+
     @Override
     public void addServiceToCluster(@EffectorParam(name = "Cluster name") String cluster, @EffectorParam(name = "Service") String service) {
         waitForServiceUp();
+        onApiActivity();
         ambariApiHelper.addServiceToCluster(cluster, service, usernamePasswordCredentials, getAttribute(Attributes.MAIN_URI));
     }
 
     @Override
     public void addComponentToCluster(@EffectorParam(name = "Cluster name") String cluster, @EffectorParam(name = "Service name") String service, @EffectorParam(name = "Component name") String component) {
         waitForServiceUp();
+        onApiActivity();
         ambariApiHelper.createComponent(cluster, service, component, usernamePasswordCredentials, getAttribute(Attributes.MAIN_URI));
     }
 
     @Override
     public void createHostComponent(@EffectorParam(name = "Cluster name") String cluster, @EffectorParam(name = "Host FQDN") String hostName, @EffectorParam(name = "Component name") String component) {
         waitForServiceUp();
+        onApiActivity();
         ambariApiHelper.createHostComponent(cluster, hostName, component, usernamePasswordCredentials, getAttribute(Attributes.MAIN_URI));
     }
 
     @Override
-    public void installHDP(String clusterName, String blueprintName, List<String> hosts, List<String> services) {
+    public void createHostComponents(final String cluster, final Map<String, List<String>> hostComponents) {
+        onApiActivity();
+        waitForAll(whenServiceUp(new Callable<ListenableFuture<List<Void>>>() {
+            @Override
+            public ListenableFuture<List<Void>> call() {
+                List<ListenableFuture<Void>> requests = Lists.newArrayList();
+                for (Map.Entry<List<String>, List<String>> group : BulkRequests.groupHostsByComponents(hostComponents).entrySet()) {
+                    for (List<String> batch : BulkRequests.batches(group.getValue(), getConfig(BULK_REQUEST_SIZE))) {
+                        requests.add(asyncAmbariApiHelper.createHostComponents(cluster, batch, group.getKey(), usernamePasswordCredentials, getAttribute(Attributes.MAIN_URI)));
+                    }
+                }
+                return Futures.allAsList(requests);
+            }
+        }));
+    }
+
+    /**
+     * Adds the hosts in batches, recording each batch in {@code HOST_GROUPS} once Ambari has finished the request
+     * installing it, so that the batches that succeed are recorded even if others fail. Ambari rejects a whole
+     * batch with a 409 if any of its hosts is already in the cluster, so a conflicting batch is sent again one host
+     * at a time; a single host that conflicts is already in the cluster, so counts as added.
+     *
+     * @throws IllegalStateException if any batch failed, once the others have been recorded.
+     */
+    @Override
+    public void addHostsToHostGroup(final String cluster, final String blueprintName, final String hostGroup, final List<String> hosts, Map<String, String> hostRacks) {
+        onApiActivity();
+        final Map<String, String> racks = hostRacks == null ? ImmutableMap.<String, String>of() : hostRacks;
+        final List<ListenableFuture<List<String>>> batches = Lists.newArrayList();
+        ListenableFuture<List<List<String>>> added = whenServiceUp(new Callable<ListenableFuture<List<List<String>>>>() {
+            @Override
+            public ListenableFuture<List<List<String>>> call() {
+                for (List<String> batch : BulkRequests.batches(hosts, getConfig(BULK_REQUEST_SIZE))) {
+                    ListenableFuture<List<String>> batchAdded = addBatchToHostGroup(cluster, blueprintName, hostGroup, batch, racks);
+                    Futures.addCallback(batchAdded, new FutureCallback<List<String>>() {
+                        @Override
+                        public void onSuccess(List<String> batchHosts) {
+                            addToHostGroup(hostGroup, batchHosts);
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            // Thrown by the effector once every batch has finished
+                        }
+                    });
+                    batches.add(batchAdded);
+                }
+                return Futures.successfulAsList(batches);
+            }
+        });
+        waitForAll(added);
+        for (ListenableFuture<List<String>> batch : batches) {
+            waitForAll(batch);
+        }
+    }
+
+    private ListenableFuture<List<String>> addBatchToHostGroup(final String cluster, final String blueprintName, final String hostGroup,
+                                                               final List<String> batch, final Map<String, String> racks) {
+        final ListenableFuture<RequestResponse> request = asyncAmbariApiHelper.addHostsToHostGroup(cluster, blueprintName, hostGroup, batch, racks,
+                usernamePasswordCredentials, getAttribute(Attributes.MAIN_URI));
+        // Whether Ambari rejected the batch as conflicting with hosts already in the cluster
+        ListenableFuture<Boolean> conflicted = Futures.withFallback(Futures.transform(request, new Function<RequestResponse, Boolean>() {
+            @Override
+            public Boolean apply(RequestResponse response) {
+                return false;
+            }
+        }), new FutureFallback<Boolean>() {
+            @Override
+            public ListenableFuture<Boolean> create(Throwable t) {
+                return AmbariApiError.isConflict(t) ? Futures.immediateFuture(true) : Futures.<Boolean>immediateFailedFuture(t);
+            }
+        });
+        return Futures.transform(conflicted, new AsyncFunction<Boolean, List<String>>() {
+            @Override
+            public ListenableFuture<List<String>> apply(Boolean conflict) throws Exception {
+                if (!conflict) {
+                    RequestResponse response = request.get();
+                    return response != null && response.getId() != null
+                            ? whenRequestSucceeds(cluster, response.getId(), batch)
+                            : Futures.immediateFuture(batch);
+                }
+                if (batch.size() == 1) {
+                    // Already in the cluster
+                    return Futures.immediateFuture(batch);
+                }
+                List<ListenableFuture<List<String>>> singles = Lists.newArrayList();
+                for (String host : batch) {
+                    singles.add(addBatchToHostGroup(cluster, blueprintName, hostGroup, ImmutableList.of(host), racks));
+                }
+                return Futures.transform(Futures.allAsList(singles), new Function<List<List<String>>, List<String>>() {
+                    @Override
+                    public List<String> apply(List<List<String>> singleHosts) {
+                        return ImmutableList.copyOf(Iterables.concat(singleHosts));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return {@code hosts}, once the request {@code requestId} has completed; fails if the request does not.
+     */
+    private ListenableFuture<List<String>> whenRequestSucceeds(String cluster, final int requestId, final List<String> hosts) {
+        return Futures.transform(trackRequest(cluster, requestId).getResult(), new Function<RequestResponse.Request, List<String>>() {
+            @Override
+            public List<String> apply(RequestResponse.Request request) {
+                if (!request.isSuccessful()) {
+                    throw new IllegalStateException(String.format("Request %s adding hosts %s finished %s", requestId, hosts, request.request_status));
+                }
+                return hosts;
+            }
+        });
+    }
+
+    private synchronized void addToHostGroup(String hostGroup, List<String> hosts) {
+        Map<String, List<String>> hostGroups = getAttribute(HOST_GROUPS) == null
+                ? Maps.<String, List<String>>newLinkedHashMap() : Maps.newLinkedHashMap(getAttribute(HOST_GROUPS));
+        List<String> groupHosts = hostGroups.get(hostGroup) == null ? Lists.<String>newArrayList() : Lists.newArrayList(hostGroups.get(hostGroup));
+        for (String host : hosts) {
+            if (!groupHosts.contains(host)) {
+                groupHosts.add(host);
+            }
+        }
+        hostGroups.put(hostGroup, groupHosts);
+        setAttribute(HOST_GROUPS, hostGroups);
+    }
+
+    /**
+     * Issues {@code requests} only once the server is up, without holding a thread while it waits.
+     */
+    private <T> ListenableFuture<T> whenServiceUp(Callable<ListenableFuture<T>> requests) {
+        return readinessGate.then(requests, getConfig(SERVICE_UP_TIMEOUT));
+    }
+
+    private void waitForAll(ListenableFuture<?> requests) {
+        try {
+            requests.get();
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @Override
+    public String waitForRequest(String cluster, Integer requestId, Duration timeout) {
         waitForServiceUp();
+        onApiActivity();
+        try {
+            return trackRequest(cluster, requestId).getResult().get(timeout.toMilliseconds(), TimeUnit.MILLISECONDS).request_status;
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(String.format("Timed out after %s waiting for request %s on cluster %s", timeout, requestId, cluster), e);
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @Override
+    public Integer installHDP(String clusterName, String blueprintName, List<String> hosts, List<String> services, Map<String, String> hostRacks) {
+        waitForServiceUp();
+        onApiActivity();
         RecommendationResponse recommendations = ambariApiHelper.getRecommendations(hosts, services, usernamePasswordCredentials, getAttribute(Attributes.MAIN_URI));
         ambariApiHelper.createBlueprint(blueprintName, DefaultAmbariBluePrint.createBlueprintFromRecommendation(recommendations.getBlueprint()), getAttribute(Attributes.MAIN_URI), usernamePasswordCredentials);
-        ambariApiHelper.createCluster(clusterName, blueprintName, DefaultBluePrintClusterBinding.createFromRecommendation(recommendations.getBlueprintClusterBinding()), getAttribute(Attributes.MAIN_URI), usernamePasswordCredentials);
+        DefaultBluePrintClusterBinding binding = DefaultBluePrintClusterBinding.createFromRecommendation(recommendations.getBlueprintClusterBinding());
+        if (hostRacks != null) {
+            if ("ZONE_AWARE".equals(getConfig(HOST_GROUP_PLACEMENT))) {
+                binding.setHostGroups(ZoneAwarePlacement.place(binding.getHostGroups(), hostRacks));
+            }
+            binding.setHostRacks(hostRacks);
+        }
+        RequestResponse request = ambariApiHelper.createCluster(clusterName, blueprintName, binding, getAttribute(Attributes.MAIN_URI), usernamePasswordCredentials);
+        setAttribute(HOST_GROUPS, binding.getHostGroups());
+        setAttribute(CLUSTER_NAME, clusterName);
+        if (request == null || request.getId() == null) {
+            return null;
+        }
+        // The request the REQUEST_* sensors follow; other tracked requests leave them alone
+        setAttribute(REQUEST_ID, request.getId());
+        trackRequest(clusterName, request.getId());
+        return request.getId();
     }
+
+    AmbariRequestTracker trackRequest(final String cluster, final int requestId) {
+        final String key = cluster + "/" + requestId;
+        AmbariRequestTracker requestTracker = requestTrackers.get(key);
+        if (requestTracker == null) {
+            AmbariRequestTracker newRequestTracker = new AmbariRequestTracker(
+                    new Callable<RequestResponse>() {
+                        @Override
+                        public RequestResponse call() {
+                            // Not retried here: a retry's backoff would hold up every other tracker on the poller thread
+                            return directApiHelper.getRequest(cluster, requestId, usernamePasswordCredentials, getAttribute(Attributes.MAIN_URI));
+                        }
+                    },
+                    requestPoller,
+                    requestStatusListener,
+                    getConfig(REQUEST_POLL_MIN_PERIOD),
+                    getConfig(REQUEST_POLL_MAX_PERIOD));
+            requestTracker = requestTrackers.putIfAbsent(key, newRequestTracker);
+            if (requestTracker == null) {
+                requestTracker = newRequestTracker;
+                // Forget the tracker once its request finishes or is unknown; a later wait starts a new one
+                requestTracker.getResult().addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        requestTrackers.remove(key, newRequestTracker);
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+                requestTracker.start();
+            }
+        }
+        return requestTracker;
+    }
+
+    final AmbariRequestTracker.Listener requestStatusListener = new AmbariRequestTracker.Listener() {
+        @Override
+        public void onStatus(RequestResponse.Request request, @Nullable Duration estimatedTimeRemaining) {
+            if (!Objects.equal(request.id, getAttribute(REQUEST_ID))) {
+                return;
+            }
+            setAttribute(REQUEST_STATUS, request.request_status);
+            setAttribute(REQUEST_PROGRESS_PERCENT, request.progress_percent);
+            setAttribute(REQUEST_TASK_COUNT, request.task_count);
+            setAttribute(REQUEST_COMPLETED_TASK_COUNT, request.completed_task_count);
+            setAttribute(REQUEST_FAILED_TASK_COUNT, request.failed_task_count);
+            setAttribute(REQUEST_ESTIMATED_TIME_REMAINING, request.isFinished() ? Duration.ZERO : estimatedTimeRemaining);
+        }
+    };
 }
@@ -5,16 +5,18 @@ import brooklyn.entity.java.JavaSoftwareProcessSshDriver;
 import brooklyn.location.basic.SshMachineLocation;
 import brooklyn.util.collections.MutableMap;
 import brooklyn.util.ssh.BashCommands;
+import brooklyn.util.time.Duration;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.apache.brooklyn.ambari.AmbariInstallHelper;
 import org.apache.brooklyn.ambari.DefaultAmbariInstallHelper;
+import org.apache.brooklyn.ambari.InstallProbe;
 import org.apache.brooklyn.ambari.server.AmbariServerDriver;
 
 import static brooklyn.util.ssh.BashCommands.installPackage;
 
 public class AmbariServerSshDriver extends JavaSoftwareProcessSshDriver implements AmbariServerDriver {
 
-    private final AmbariInstallHelper ambariInstallHelper = new DefaultAmbariInstallHelper();
-
     public AmbariServerSshDriver(EntityLocal entity, SshMachineLocation machine) {
         super(entity, machine);
     }
@@ -38,11 +40,41 @@ public class AmbariServerSshDriver extends JavaSoftwareProcessSshDriver implemen
 
     @Override
     public void install() {
+        long start = System.currentTimeMillis();
+        AmbariInstallHelper ambariInstallHelper = new DefaultAmbariInstallHelper(entity.getConfig(AmbariServer.REPO_MIRROR_URL));
+        if (isPrebaked()) {
+            if (entity.getConfig(AmbariServer.REPO_MIRROR_URL) != null) {
+                newScript(INSTALLING).body.append(ambariInstallHelper.mirrorStackRepositories()).execute();
+            }
+            entity.setAttribute(AmbariServer.INSTALL_PATH, InstallProbe.PREBAKED);
+            entity.setAttribute(AmbariServer.INSTALL_TIME_SAVED, InstallProbe.timeSaved(
+                    InstallProbe.fullInstallDuration(entity, AmbariServer.class), System.currentTimeMillis() - start));
+            return;
+        }
         newScript(INSTALLING).body.append(
                 ambariInstallHelper.installAmbariRequirements(getMachine()),
                 installPackage("ambari-server"),
+                ambariInstallHelper.mirrorStackRepositories(),
                 BashCommands.sudo("ambari-server setup -s"))
                 .execute();
+        entity.setAttribute(AmbariServer.INSTALL_PATH, InstallProbe.FULL);
+        entity.setAttribute(AmbariServer.INSTALL_DURATION, Duration.millis(System.currentTimeMillis() - start));
+        entity.setAttribute(AmbariServer.INSTALL_TIME_SAVED, Duration.ZERO);
+    }
+
+    /**
+     * Whether the machine, from a pre-baked image, already has the expected server version installed and set up,
+     * as found by a single probe.
+     */
+    private boolean isPrebaked() {
+        if (!entity.getConfig(AmbariServer.PREBAKED_IMAGE)) {
+            return false;
+        }
+        InstallProbe probe = InstallProbe.run(getMachine(), ImmutableList.of("ambari-server", "ntp"),
+                ImmutableMap.of("setup", "grep -q '^java.home=' /etc/ambari-server/conf/ambari.properties 2> /dev/null"));
+        return probe.isInstalled("ambari-server", DefaultAmbariInstallHelper.AMBARI_VERSION)
+                && probe.isInstalled("ntp", null)
+                && probe.passed("setup");
     }
 
     @Override
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.server;
+
+import brooklyn.util.http.HttpTool;
+import brooklyn.util.http.HttpToolResponse;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.HttpHeaders;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.apache.brooklyn.ambari.rest.AmbariApiMetrics;
+import org.apache.brooklyn.ambari.rest.AmbariConnectionPool;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.HttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.ws.rs.core.UriBuilder;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Fetches everything the server's status feed publishes in one round per cycle: the registered hosts, and, once
+ * a cluster has been created, the cluster's health report, service states and alert summary in a single request
+ * using Ambari's {@code fields=} expansion. Each sensor is then read from the same {@link Status} by a
+ * precompiled path, so adding sensors adds no requests.
+ */
+class AmbariStatusPoller {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AmbariStatusPoller.class);
+
+    private static final List<String> CLUSTER_FIELDS = ImmutableList.of(
+            "Clusters/health_report",
+            "services/ServiceInfo/state",
+            "alerts_summary/*");
+
+    static final String HOSTS_ENDPOINT = "GET /api/v1/hosts";
+    static final String CLUSTER_ENDPOINT = "GET /api/v1/clusters/{cluster}";
+    static final String CLUSTER_HOSTS_ENDPOINT = "GET /api/v1/clusters/{cluster}/hosts";
+
+    /**
+     * A failed poll that has already been recorded in the {@link AmbariApiMetrics}.
+     */
+    static class RecordedPollFailure extends IllegalStateException {
+        RecordedPollFailure(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    static class Status {
+        final JsonElement hosts;
+        @Nullable
+        final JsonElement cluster;
+
+        Status(JsonElement hosts, @Nullable JsonElement cluster) {
+            this.hosts = hosts;
+            this.cluster = cluster;
+        }
+    }
+
+    private final AmbariConnectionPool connectionPool;
+    private final AmbariApiMetrics metrics;
+    private final UsernamePasswordCredentials usernamePasswordCredentials;
+    private final URI baseUri;
+    private final Supplier<String> clusterName;
+
+    AmbariStatusPoller(AmbariConnectionPool connectionPool, AmbariApiMetrics metrics, UsernamePasswordCredentials usernamePasswordCredentials,
+                       URI baseUri, Supplier<String> clusterName) {
+        this.connectionPool = connectionPool;
+        this.metrics = metrics;
+        this.usernamePasswordCredentials = usernamePasswordCredentials;
+        this.baseUri = baseUri;
+        this.clusterName = clusterName;
+    }
+
+    /**
+     * @throws RecordedPollFailure only if the hosts call fails; a failed cluster call is logged and reported as
+     * {@link Status#cluster} null, so that it cannot take the server out of service.
+     */
+    Status poll() {
+        JsonElement hosts = get(HOSTS_ENDPOINT, UriBuilder.fromUri(baseUri)
+                .path("/api/v1/hosts")
+                .replaceQuery("fields=Hosts/host_name")
+                .build());
+        String cluster = clusterName.get();
+        JsonElement clusterStatus = null;
+        if (cluster != null) {
+            try {
+                clusterStatus = get(CLUSTER_ENDPOINT, UriBuilder.fromUri(baseUri)
+                        .path("/api/v1/clusters/{cluster}")
+                        .replaceQuery("fields=" + Joiner.on(',').join(CLUSTER_FIELDS))
+                        .build(cluster));
+            } catch (RuntimeException e) {
+                LOG.debug("Failed polling status of cluster {}; reporting no cluster status", cluster, e);
+            }
+        }
+        return new Status(hosts, clusterStatus);
+    }
+
+    /**
+     * @return the {@link HostMetrics#FIELDS} of every host in the cluster in one response, or null if no cluster
+     * has been created yet.
+     */
+    @Nullable
+    JsonElement pollHostMetrics() {
+        String cluster = clusterName.get();
+        if (cluster == null) {
+            return null;
+        }
+        return get(CLUSTER_HOSTS_ENDPOINT, UriBuilder.fromUri(baseUri)
+                .path("/api/v1/clusters/{cluster}/hosts")
+                .replaceQuery("fields=" + Joiner.on(',').join(HostMetrics.FIELDS))
+                .build(cluster));
+    }
+
+    @VisibleForTesting
+    HttpToolResponse httpGet(URI uri) {
+        HttpClient httpClient = connectionPool.getHttpClient(uri, usernamePasswordCredentials);
+        return HttpTool.httpGet(httpClient, uri, ImmutableMap.of(
+                HttpHeaders.AUTHORIZATION, HttpTool.toBasicAuthorizationValue(usernamePasswordCredentials)));
+    }
+
+    private JsonElement get(String endpoint, URI uri) {
+        long startTime = System.nanoTime();
+        HttpToolResponse httpToolResponse;
+        try {
+            httpToolResponse = httpGet(uri);
+        } catch (RuntimeException e) {
+            metrics.record(endpoint, System.nanoTime() - startTime, true, 0, 0);
+            throw new RecordedPollFailure(String.format("Failed polling %s", uri), e);
+        }
+        long latency = System.nanoTime() - startTime;
+        if (httpToolResponse.getResponseCode() != 200) {
+            metrics.record(endpoint, latency, true, httpToolResponse.getContent().length, 0);
+            throw new RecordedPollFailure(String.format("Unexpected response %s polling %s", httpToolResponse.getResponseCode(), uri), null);
+        }
+        JsonElement response;
+        try {
+            response = new JsonParser().parse(httpToolResponse.getContentAsString());
+        } catch (JsonParseException e) {
+            metrics.record(endpoint, latency, true, httpToolResponse.getContent().length, 0);
+            throw new RecordedPollFailure(String.format("Unparseable response polling %s", uri), e);
+        }
+        metrics.record(endpoint, latency, false, httpToolResponse.getContent().length, 0);
+        return response;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.server;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonElement;
+import com.jayway.jsonpath.PathNotFoundException;
+import org.apache.brooklyn.ambari.rest.JsonTreePath;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Recent CPU, memory, disk and network samples for every host, as read from one
+ * {@code /api/v1/clusters/{cluster}/hosts?fields=metrics/...} response per poll. Each host keeps a fixed-size ring
+ * of primitive samples per metric, from which windowed averages and 95th percentiles are published.
+ */
+public class HostMetrics {
+
+    public static final String CPU_PERCENT = "cpu.percent";
+    public static final String MEMORY_USED_PERCENT = "memory.usedPercent";
+    public static final String DISK_USED_PERCENT = "disk.usedPercent";
+    public static final String NETWORK_BYTES_IN = "network.bytesIn";
+    public static final String NETWORK_BYTES_OUT = "network.bytesOut";
+    public static final List<String> METRICS = ImmutableList.of(CPU_PERCENT, MEMORY_USED_PERCENT, DISK_USED_PERCENT, NETWORK_BYTES_IN, NETWORK_BYTES_OUT);
+
+    /**
+     * The fields to request from Ambari's hosts endpoint.
+     */
+    static final List<String> FIELDS = ImmutableList.of(
+            "Hosts/host_name",
+            "metrics/cpu/cpu_user", "metrics/cpu/cpu_system",
+            "metrics/memory/mem_free", "metrics/memory/mem_total",
+            "metrics/disk/disk_free", "metrics/disk/disk_total",
+            "metrics/network/bytes_in", "metrics/network/bytes_out");
+
+    private static final JsonTreePath ITEMS = JsonTreePath.compile("$.items[*]");
+    private static final JsonTreePath HOST_NAME = JsonTreePath.compile("Hosts.host_name");
+    private static final JsonTreePath CPU_USER = JsonTreePath.compile("metrics.cpu.cpu_user");
+    private static final JsonTreePath CPU_SYSTEM = JsonTreePath.compile("metrics.cpu.cpu_system");
+    private static final JsonTreePath MEM_FREE = JsonTreePath.compile("metrics.memory.mem_free");
+    private static final JsonTreePath MEM_TOTAL = JsonTreePath.compile("metrics.memory.mem_total");
+    private static final JsonTreePath DISK_FREE = JsonTreePath.compile("metrics.disk.disk_free");
+    private static final JsonTreePath DISK_TOTAL = JsonTreePath.compile("metrics.disk.disk_total");
+    private static final JsonTreePath BYTES_IN = JsonTreePath.compile("metrics.network.bytes_in");
+    private static final JsonTreePath BYTES_OUT = JsonTreePath.compile("metrics.network.bytes_out");
+
+    private final int windowSamples;
+    private final Map<String, Map<String, Samples>> hosts = new HashMap<String, Map<String, Samples>>();
+
+    public HostMetrics(int windowSamples) {
+        this.windowSamples = windowSamples;
+    }
+
+    public static String average(String metric) {
+        return metric + ".avg";
+    }
+
+    public static String p95(String metric) {
+        return metric + ".p95";
+    }
+
+    public static String max(String metric) {
+        return metric + ".max";
+    }
+
+    /**
+     * Adds a sample per metric for every host in {@code response}; hosts missing from it are forgotten.
+     */
+    synchronized void ingest(JsonElement response) {
+        Set<String> seen = new HashSet<String>();
+        for (JsonElement item : ITEMS.read(response)) {
+            String host = HOST_NAME.readStrings(item).get(0);
+            seen.add(host);
+            Double cpuUser = read(CPU_USER, item);
+            Double cpuSystem = read(CPU_SYSTEM, item);
+            if (cpuUser != null && cpuSystem != null) record(host, CPU_PERCENT, cpuUser + cpuSystem);
+            Double memoryUsed = usedPercent(read(MEM_FREE, item), read(MEM_TOTAL, item));
+            if (memoryUsed != null) record(host, MEMORY_USED_PERCENT, memoryUsed);
+            Double diskUsed = usedPercent(read(DISK_FREE, item), read(DISK_TOTAL, item));
+            if (diskUsed != null) record(host, DISK_USED_PERCENT, diskUsed);
+            Double bytesIn = read(BYTES_IN, item);
+            if (bytesIn != null) record(host, NETWORK_BYTES_IN, bytesIn);
+            Double bytesOut = read(BYTES_OUT, item);
+            if (bytesOut != null) record(host, NETWORK_BYTES_OUT, bytesOut);
+        }
+        hosts.keySet().retainAll(seen);
+    }
+
+    synchronized void record(String host, String metric, double value) {
+        Map<String, Samples> metrics = hosts.get(host);
+        if (metrics == null) {
+            metrics = new HashMap<String, Samples>();
+            hosts.put(host, metrics);
+        }
+        Samples samples = metrics.get(metric);
+        if (samples == null) {
+            samples = new Samples(windowSamples);
+            metrics.put(metric, samples);
+        }
+        samples.add(value);
+    }
+
+    /**
+     * @return per host, the {@link #average} and {@link #p95} of each metric over the window.
+     */
+    public synchronized Map<String, Map<String, Double>> snapshot() {
+        Map<String, Map<String, Double>> result = new TreeMap<String, Map<String, Double>>();
+        for (Map.Entry<String, Map<String, Samples>> host : hosts.entrySet()) {
+            ImmutableMap.Builder<String, Double> aggregates = ImmutableMap.builder();
+            for (Map.Entry<String, Samples> metric : host.getValue().entrySet()) {
+                aggregates.put(average(metric.getKey()), metric.getValue().average());
+                aggregates.put(p95(metric.getKey()), metric.getValue().percentile(95));
+            }
+            result.put(host.getKey(), aggregates.build());
+        }
+        return result;
+    }
+
+    /**
+     * @return the {@link #average} and {@link #max} across hosts of each host's windowed average.
+     */
+    public static Map<String, Double> rollup(Map<String, Map<String, Double>> snapshot) {
+        Map<String, Double> result = new TreeMap<String, Double>();
+        for (String metric : METRICS) {
+            double sum = 0;
+            double max = Double.NEGATIVE_INFINITY;
+            int count = 0;
+            for (Map<String, Double> host : snapshot.values()) {
+                Double value = host.get(average(metric));
+                if (value != null) {
+                    sum += value;
+                    max = Math.max(max, value);
+                    count++;
+                }
+            }
+            if (count > 0) {
+                result.put(average(metric), sum / count);
+                result.put(max(metric), max);
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private static Double read(JsonTreePath path, JsonElement item) {
+        try {
+            JsonElement value = path.read(item).get(0);
+            return value.isJsonPrimitive() ? value.getAsDouble() : null;
+        } catch (PathNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Double usedPercent(@Nullable Double free, @Nullable Double total) {
+        return free == null || total == null || total <= 0 ? null : 100.0 * (total - free) / total;
+    }
+
+    /**
+     * The most recent {@code capacity} samples of one metric.
+     */
+    static class Samples {
+        private final double[] values;
+        private int next;
+        private int size;
+
+        Samples(int capacity) {
+            this.values = new double[capacity];
+        }
+
+        void add(double value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            size = Math.min(size + 1, values.length);
+        }
+
+        double average() {
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += values[i];
+            }
+            return size == 0 ? 0 : sum / size;
+        }
+
+        double percentile(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            double[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(size * percentile / 100.0);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+}
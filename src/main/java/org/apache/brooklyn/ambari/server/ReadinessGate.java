@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.server;
+
+import brooklyn.util.exceptions.Exceptions;
+import brooklyn.util.time.Duration;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A future that completes when the server's {@code SERVICE_UP} sensor becomes true, driven by a subscription
+ * rather than by each caller polling the sensor. Callers either block on it with a timeout ({@link #await}) or
+ * chain asynchronous work onto it ({@link #then}); either way they are counted as queued until it opens.
+ */
+class ReadinessGate {
+
+    interface Listener {
+        void onQueuedChanged(int queued);
+    }
+
+    /**
+     * Only fires timeouts, so one daemon thread is shared by every gate; effectors may be called before the
+     * server's own executors exist. Timeouts are cancelled and purged once their call's gate opens.
+     */
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setNameFormat("ambari-readiness-timeout-%d").setDaemon(true).build());
+
+    private final Listener listener;
+    private final AtomicInteger queued = new AtomicInteger();
+    private SettableFuture<Void> ready = SettableFuture.create();
+
+    ReadinessGate(Listener listener) {
+        this.listener = listener;
+    }
+
+    synchronized void onServiceUp(boolean up) {
+        if (up) {
+            if (!ready.set(null) && !isOpen()) {
+                // Stopped, then started again without SERVICE_UP going false in between
+                ready = SettableFuture.create();
+                ready.set(null);
+            }
+        } else if (ready.isDone()) {
+            ready = SettableFuture.create();
+        }
+    }
+
+    /**
+     * Fails everything waiting on the gate, for when the server is stopping.
+     */
+    synchronized void cancel() {
+        ready.setException(new IllegalStateException("Ambari server is stopping"));
+    }
+
+    synchronized ListenableFuture<Void> whenReady() {
+        return ready;
+    }
+
+    /**
+     * @throws IllegalStateException if the gate does not open within {@code timeout} or is cancelled.
+     */
+    void await(Duration timeout) {
+        ListenableFuture<Void> gate = whenReady();
+        if (isOpen(gate)) {
+            return;
+        }
+        changeQueued(1);
+        try {
+            gate.get(timeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out after " + timeout + " waiting for Ambari server to be up", e);
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            changeQueued(-1);
+        }
+    }
+
+    /**
+     * @return the result of {@code request}, which is only called once the gate opens; fails with an
+     * {@link IllegalStateException} if that takes longer than {@code timeout}.
+     */
+    <T> ListenableFuture<T> then(final Callable<ListenableFuture<T>> request, Duration timeout) {
+        final SettableFuture<Void> gate = SettableFuture.create();
+        Futures.addCallback(whenReady(), new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                gate.set(null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                gate.setException(t);
+            }
+        });
+        if (!gate.isDone()) {
+            changeQueued(1);
+            final String message = "Timed out after " + timeout + " waiting for Ambari server to be up";
+            final ScheduledFuture<?> timeoutFuture = TIMEOUTS.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    gate.setException(new IllegalStateException(message));
+                }
+            }, timeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+            gate.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    changeQueued(-1);
+                    if (timeoutFuture.cancel(false)) {
+                        // Otherwise the cancelled timeout stays queued, holding the gate, until it would have fired
+                        TIMEOUTS.purge();
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        return Futures.transform(gate, new AsyncFunction<Void, T>() {
+            @Override
+            public ListenableFuture<T> apply(Void input) throws Exception {
+                return request.call();
+            }
+        });
+    }
+
+    int getQueued() {
+        return queued.get();
+    }
+
+    @VisibleForTesting
+    static int getPendingTimeouts() {
+        return TIMEOUTS.getQueue().size();
+    }
+
+    private boolean isOpen() {
+        return isOpen(ready);
+    }
+
+    private static boolean isOpen(ListenableFuture<Void> gate) {
+        if (!gate.isDone() || gate.isCancelled()) {
+            return false;
+        }
+        try {
+            gate.get();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void changeQueued(int delta) {
+        listener.onQueuedChanged(queued.addAndGet(delta));
+    }
+}
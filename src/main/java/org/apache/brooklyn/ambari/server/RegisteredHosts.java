@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.server;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The hosts last reported by Ambari's hosts endpoint, so that each poll can be reduced to the hosts that
+ * registered or were lost since the previous one.
+ */
+class RegisteredHosts {
+
+    private Set<String> hosts = ImmutableSet.of();
+
+    /**
+     * Replaces the snapshot with {@code current}.
+     *
+     * @return the hosts that registered and were lost since the previous snapshot.
+     */
+    synchronized Delta update(Collection<String> current) {
+        Set<String> previous = hosts;
+        hosts = ImmutableSet.copyOf(current);
+        return new Delta(
+                ImmutableSet.copyOf(Sets.difference(hosts, previous)),
+                ImmutableSet.copyOf(Sets.difference(previous, hosts)));
+    }
+
+    synchronized List<String> asList() {
+        return ImmutableList.copyOf(hosts);
+    }
+
+    synchronized int size() {
+        return hosts.size();
+    }
+
+    static class Delta {
+        final Set<String> registered;
+        final Set<String> lost;
+
+        Delta(Set<String> registered, Set<String> lost) {
+            this.registered = registered;
+            this.lost = lost;
+        }
+
+        boolean isEmpty() {
+            return registered.isEmpty() && lost.isEmpty();
+        }
+    }
+}
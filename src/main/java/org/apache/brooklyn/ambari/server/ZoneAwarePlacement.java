@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.server;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebinds a blueprint's hosts to its host groups by rack, keeping each group's size. Single-host groups, which
+ * hold the masters, are filled first, each from the rack with fewest masters so far, so masters spread across
+ * racks. The remaining hosts then fill the larger worker groups rack by rack, largest rack first, so each worker
+ * group spans as few racks as possible. Hosts with no rack count as one more rack.
+ */
+class ZoneAwarePlacement {
+
+    private ZoneAwarePlacement() {
+    }
+
+    static Map<String, List<String>> place(Map<String, List<String>> hostGroups, Map<String, String> hostRacks) {
+        final Map<String, LinkedList<String>> racks = Maps.newTreeMap();
+        for (List<String> hosts : hostGroups.values()) {
+            for (String host : hosts) {
+                String rack = hostRacks.containsKey(host) && hostRacks.get(host) != null ? hostRacks.get(host) : "";
+                if (!racks.containsKey(rack)) {
+                    racks.put(rack, new LinkedList<String>());
+                }
+                racks.get(rack).add(host);
+            }
+        }
+
+        Map<String, List<String>> placed = Maps.newLinkedHashMap();
+        final Map<String, Integer> masters = Maps.newHashMap();
+        for (Map.Entry<String, List<String>> hostGroup : hostGroups.entrySet()) {
+            if (hostGroup.getValue().size() == 1) {
+                String rack = Collections.min(nonEmpty(racks), new Comparator<String>() {
+                    @Override
+                    public int compare(String a, String b) {
+                        int byMasters = count(masters, a) - count(masters, b);
+                        return byMasters != 0 ? byMasters : racks.get(b).size() - racks.get(a).size();
+                    }
+                });
+                masters.put(rack, count(masters, rack) + 1);
+                placed.put(hostGroup.getKey(), Lists.newArrayList(racks.get(rack).removeFirst()));
+            }
+        }
+
+        for (Map.Entry<String, List<String>> hostGroup : hostGroups.entrySet()) {
+            if (hostGroup.getValue().size() != 1) {
+                List<String> hosts = Lists.newArrayList();
+                while (hosts.size() < hostGroup.getValue().size()) {
+                    String rack = Collections.max(nonEmpty(racks), new Comparator<String>() {
+                        @Override
+                        public int compare(String a, String b) {
+                            return racks.get(a).size() - racks.get(b).size();
+                        }
+                    });
+                    LinkedList<String> rackHosts = racks.get(rack);
+                    while (!rackHosts.isEmpty() && hosts.size() < hostGroup.getValue().size()) {
+                        hosts.add(rackHosts.removeFirst());
+                    }
+                }
+                placed.put(hostGroup.getKey(), hosts);
+            }
+        }
+        return placed;
+    }
+
+    private static List<String> nonEmpty(Map<String, LinkedList<String>> racks) {
+        List<String> nonEmpty = Lists.newArrayList();
+        for (Map.Entry<String, LinkedList<String>> rack : racks.entrySet()) {
+            if (!rack.getValue().isEmpty()) {
+                nonEmpty.add(rack.getKey());
+            }
+        }
+        return nonEmpty;
+    }
+
+    private static int count(Map<String, Integer> counts, String key) {
+        Integer count = counts.get(key);
+        return count == null ? 0 : count;
+    }
+}
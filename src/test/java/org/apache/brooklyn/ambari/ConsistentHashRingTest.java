@@ -0,0 +1,82 @@
+package org.apache.brooklyn.ambari;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 10000;
+
+    private ConsistentHashRing<String> ring;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ring = new ConsistentHashRing<String>(100);
+        ring.add("a", "server-a");
+        ring.add("b", "server-b");
+        ring.add("c", "server-c");
+    }
+
+    @Test
+    public void testEmptyRingOwnsNothing() {
+        assertNull(new ConsistentHashRing<String>(100).get("agent1"));
+    }
+
+    @Test
+    public void testAssignmentIsStable() {
+        assertEquals(ring.get("agent1"), ring.get("agent1"));
+    }
+
+    @Test
+    public void testSpreadsKeysAcrossNodes() {
+        Multiset<String> counts = HashMultiset.create();
+        for (int i = 0; i < KEYS; i++) {
+            counts.add(ring.get("agent" + i));
+        }
+
+        for (String node : counts.elementSet()) {
+            assertTrue(counts.count(node) > KEYS / 5, node + " owns " + counts.count(node));
+        }
+    }
+
+    @Test
+    public void testAddingNodeOnlyMovesKeysToIt() {
+        String[] before = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            before[i] = ring.get("agent" + i);
+        }
+
+        ring.add("d", "server-d");
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String after = ring.get("agent" + i);
+            if (!after.equals(before[i])) {
+                assertEquals(after, "server-d");
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS / 8 && moved < KEYS / 2, "moved " + moved);
+    }
+
+    @Test
+    public void testRemovingNodeOnlyMovesItsKeys() {
+        String[] before = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            before[i] = ring.get("agent" + i);
+        }
+
+        ring.remove("b");
+
+        assertEquals(ring.size(), 2);
+        for (int i = 0; i < KEYS; i++) {
+            if (!before[i].equals("server-b")) {
+                assertEquals(ring.get("agent" + i), before[i]);
+            }
+        }
+    }
+}
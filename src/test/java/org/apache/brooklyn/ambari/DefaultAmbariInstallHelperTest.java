@@ -0,0 +1,58 @@
+package org.apache.brooklyn.ambari;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class DefaultAmbariInstallHelperTest {
+
+    private static final String AMBARI_REPO = "http://public-repo-1.hortonworks.com/ambari/centos6/1.x/updates/1.7.0/ambari.repo";
+
+    @Test
+    public void testRepoUrlIsUnchangedWithoutMirror() {
+        assertEquals(new DefaultAmbariInstallHelper().repoUrl(AMBARI_REPO), AMBARI_REPO);
+    }
+
+    @Test
+    public void testRepoUrlIsRewrittenToMirror() {
+        DefaultAmbariInstallHelper helper = new DefaultAmbariInstallHelper("http://mirror:8081/");
+
+        assertEquals(helper.repoUrl(AMBARI_REPO), "http://mirror:8081/ambari/centos6/1.x/updates/1.7.0/ambari.repo");
+    }
+
+    @Test
+    public void testRepoUrlOffPublicRepoIsUnchanged() {
+        DefaultAmbariInstallHelper helper = new DefaultAmbariInstallHelper("http://mirror:8081");
+
+        assertEquals(helper.repoUrl("http://example.com/ambari.repo"), "http://example.com/ambari.repo");
+    }
+
+    @Test
+    public void testRequirementsDownloadFromMirrorAndRewriteRepoFiles() {
+        String command = new DefaultAmbariInstallHelper("http://mirror:8081").installAmbariRequirements(null);
+
+        assertFalse(command.contains("wget http://public-repo-1.hortonworks.com"));
+        assertTrue(command.contains("wget http://mirror:8081/ambari/ubuntu12/1.x/updates/1.7.0/ambari.list"));
+        assertTrue(command.contains("s#http://public-repo-1.hortonworks.com#http://mirror:8081#g"));
+    }
+
+    @Test
+    public void testAptKeyIsImportedFromMirror() {
+        String command = new DefaultAmbariInstallHelper("http://mirror:8081/").installAmbariRequirements(null);
+
+        assertFalse(command.contains("--keyserver"));
+        assertTrue(command.contains("wget http://mirror:8081/ambari/ubuntu12/ambari.gpg.key"));
+        assertTrue(command.contains("apt-key add /tmp/ambari.gpg.key"));
+    }
+
+    @Test
+    public void testAptKeyIsFetchedFromKeyserverWithoutMirror() {
+        assertTrue(new DefaultAmbariInstallHelper().installAmbariRequirements(null).contains("--keyserver keyserver.ubuntu.com"));
+    }
+
+    @Test
+    public void testStackRepositoriesAreLeftWithoutMirror() {
+        assertEquals(new DefaultAmbariInstallHelper().mirrorStackRepositories(), "true");
+        assertTrue(new DefaultAmbariInstallHelper("http://mirror:8081").mirrorStackRepositories().contains("repoinfo.xml"));
+    }
+}
@@ -0,0 +1,44 @@
+package org.apache.brooklyn.ambari;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class FanOutTreeTest {
+
+    private final FanOutTree tree = new FanOutTree(2, 3);
+
+    @Test
+    public void testSeedsHaveNoParent() {
+        assertNull(tree.parentOf(0));
+        assertNull(tree.parentOf(1));
+        assertEquals(tree.depthOf(1), 1);
+    }
+
+    @Test
+    public void testEachNodeForwardsToAtMostFanOutChildren() {
+        int[] children = new int[100];
+        for (int i = 2; i < 100; i++) {
+            int parent = tree.parentOf(i);
+            assertTrue(parent < i);
+            children[parent]++;
+        }
+        for (int count : children) {
+            assertTrue(count <= 3);
+        }
+    }
+
+    @Test
+    public void testDepthGrowsLogarithmically() {
+        assertEquals(tree.depthOf(2), 2);
+        assertEquals(tree.depthOf(4), 2);
+        assertEquals(tree.depthOf(7), 2);
+        assertEquals(tree.depthOf(8), 3);
+        assertTrue(tree.depthOf(999) <= 7);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsNoSeeds() {
+        new FanOutTree(0, 3);
+    }
+}
@@ -0,0 +1,72 @@
+package org.apache.brooklyn.ambari;
+
+import brooklyn.util.time.Duration;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class HostRegistryTest {
+
+    private HostRegistry hostRegistry;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        hostRegistry = new HostRegistry(Duration.minutes(1));
+    }
+
+    @Test
+    public void testRegistersEachHostOnce() {
+        assertTrue(hostRegistry.register("host1.example.com", 1000));
+        assertFalse(hostRegistry.register("host1.example.com", 2000));
+
+        assertEquals(hostRegistry.getHosts(), ImmutableList.of("host1.example.com"));
+        assertEquals(hostRegistry.getRegistrationsPerMinute(2000), 1.0, 0.001);
+    }
+
+    @Test
+    public void testDeregisterForgetsHostAndAgent() {
+        hostRegistry.register("host1.example.com", 1000);
+        hostRegistry.mapAgent("host1", "agent1");
+
+        assertTrue(hostRegistry.deregister("host1.example.com"));
+        assertFalse(hostRegistry.deregister("host1.example.com"));
+
+        assertEquals(hostRegistry.size(), 0);
+        assertNull(hostRegistry.getAgentId("host1.example.com"));
+    }
+
+    @Test
+    public void testMapsAgentSeenBeforeOrAfterRegistration() {
+        assertNull(hostRegistry.mapAgent("host1", "agent1"));
+        hostRegistry.register("host1.example.com", 1000);
+        hostRegistry.register("host2.example.com", 1000);
+        assertEquals(hostRegistry.mapAgent("host2", "agent2"), "host2.example.com");
+
+        assertEquals(hostRegistry.getAgentId("host1.example.com"), "agent1");
+        assertEquals(hostRegistry.getAgentId("host2.example.com"), "agent2");
+    }
+
+    @Test
+    public void testRegistrationRateOverWindow() {
+        hostRegistry.register("host1", 0);
+        hostRegistry.register("host2", 40000);
+        hostRegistry.register("host3", 50000);
+
+        assertEquals(hostRegistry.getRegistrationsPerMinute(55000), 3.0, 0.001);
+        assertEquals(hostRegistry.getRegistrationsPerMinute(95000), 2.0, 0.001);
+    }
+
+    @Test
+    public void testRestoresHostsWithoutCountingThemAsRecentRegistrations() {
+        hostRegistry.register("gone.example.com", 1000);
+        hostRegistry.restore(ImmutableList.of("host1.example.com", "host2.example.com"));
+
+        assertEquals(hostRegistry.size(), 2);
+        assertEquals(hostRegistry.getRegistrationsPerMinute(3000), 0.0, 0.001);
+        assertEquals(hostRegistry.mapAgent("host2", "agent2"), "host2.example.com");
+        assertFalse(hostRegistry.register("host1.example.com", 4000));
+        assertNull(hostRegistry.getAgentId("gone.example.com"));
+    }
+}
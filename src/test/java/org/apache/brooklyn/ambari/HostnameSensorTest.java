@@ -0,0 +1,87 @@
+package org.apache.brooklyn.ambari;
+
+import brooklyn.entity.BrooklynAppUnitTestSupport;
+import brooklyn.entity.basic.EntityLocal;
+import brooklyn.entity.proxying.EntitySpec;
+import brooklyn.entity.trait.Startable;
+import brooklyn.test.EntityTestUtils;
+import brooklyn.test.entity.TestEntity;
+import brooklyn.util.time.Duration;
+import brooklyn.util.time.Time;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class HostnameSensorTest extends BrooklynAppUnitTestSupport {
+
+    @Test
+    public void testRetriesUntilHostnameIsRead() {
+        FlakyHostnameSensor sensor = new FlakyHostnameSensor(2);
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class).addInitializer(sensor));
+
+        entity.setAttribute(Startable.SERVICE_UP, true);
+
+        EntityTestUtils.assertAttributeEqualsEventually(entity, HostnameSensor.HOSTNAME, "node1");
+        assertEquals(sensor.attempts.get(), 3);
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        FlakyHostnameSensor sensor = new FlakyHostnameSensor(Integer.MAX_VALUE);
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class).addInitializer(sensor));
+
+        entity.setAttribute(Startable.SERVICE_UP, true);
+
+        EntityTestUtils.assertAttributeEqualsEventually(entity, Startable.SERVICE_UP, true);
+        Time.sleep(Duration.millis(500));
+        assertEquals(sensor.attempts.get(), FlakyHostnameSensor.MAX_ATTEMPTS);
+        assertNull(entity.getAttribute(HostnameSensor.HOSTNAME));
+    }
+
+    @Test
+    public void testApplyingToAnEntityThatIsAlreadyUpReadsHostname() {
+        // as when re-applied on rebind, after the entity came up
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        entity.setAttribute(Startable.SERVICE_UP, true);
+
+        new FlakyHostnameSensor(0).apply(entity);
+
+        EntityTestUtils.assertAttributeEqualsEventually(entity, HostnameSensor.HOSTNAME, "node1");
+    }
+
+    @Test
+    public void testHostnameIsNotReadAgainOnceKnown() {
+        FlakyHostnameSensor sensor = new FlakyHostnameSensor(0);
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        entity.setAttribute(HostnameSensor.HOSTNAME, "persisted");
+        entity.setAttribute(Startable.SERVICE_UP, true);
+
+        sensor.apply(entity);
+        Time.sleep(Duration.millis(100));
+
+        assertEquals(sensor.attempts.get(), 0);
+        assertEquals(entity.getAttribute(HostnameSensor.HOSTNAME), "persisted");
+    }
+
+    private static class FlakyHostnameSensor extends HostnameSensor {
+        static final int MAX_ATTEMPTS = 4;
+
+        final AtomicInteger attempts = new AtomicInteger();
+        private final int failures;
+
+        FlakyHostnameSensor(int failures) {
+            super(MAX_ATTEMPTS, Duration.millis(10), Duration.millis(20));
+            this.failures = failures;
+        }
+
+        @Override
+        String readHostname(EntityLocal entity) {
+            if (attempts.incrementAndGet() <= failures) {
+                throw new IllegalStateException("Connection refused");
+            }
+            return "node1";
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.apache.brooklyn.ambari;
+
+import brooklyn.util.time.Duration;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class InstallProbeTest {
+
+    @Test
+    public void testCommandReportsEachPackageAndCheck() {
+        String command = InstallProbe.command(ImmutableList.of("ambari-agent", "ntp"),
+                ImmutableMap.of("configured", "[ -d /etc/ambari-agent/conf ]"));
+
+        assertTrue(command.contains("echo \"package.ambari-agent="));
+        assertTrue(command.contains("echo \"package.ntp="));
+        assertTrue(command.contains("rpm -q --qf '%{VERSION}' ntp"));
+        assertTrue(command.contains("if [ -d /etc/ambari-agent/conf ]; then echo check.configured=true; else echo check.configured=false; fi"));
+    }
+
+    @Test
+    public void testParsesInstalledPackagesAndChecks() {
+        InstallProbe probe = InstallProbe.parse("package.ambari-agent=1.7.0-169\npackage.ntp=\ncheck.configured=true\n");
+
+        assertEquals(probe.getPackageVersion("ambari-agent"), "1.7.0-169");
+        assertTrue(probe.isInstalled("ambari-agent", "1.7.0"));
+        assertTrue(probe.isInstalled("ambari-agent", null));
+        assertFalse(probe.isInstalled("ambari-agent", "2.0"));
+        assertFalse(probe.isInstalled("ntp", null));
+        assertTrue(probe.passed("configured"));
+    }
+
+    @Test
+    public void testTimeSavedIsEstimateLessProbeTime() {
+        assertEquals(InstallProbe.timeSaved(Duration.minutes(5), 2000), Duration.millis(298000));
+        assertEquals(InstallProbe.timeSaved(Duration.seconds(1), 2000), Duration.ZERO);
+    }
+
+    @Test
+    public void testFullInstallDurationIsMeanOfTimedInstalls() {
+        assertEquals(InstallProbe.mean(ImmutableList.of(Duration.minutes(2), Duration.minutes(4)), Duration.minutes(5)), Duration.minutes(3));
+        assertEquals(InstallProbe.mean(ImmutableList.<Duration>of(), Duration.minutes(5)), Duration.minutes(5));
+    }
+
+    @Test
+    public void testMissingOutputMeansNotInstalled() {
+        InstallProbe probe = InstallProbe.parse("");
+
+        assertNull(probe.getPackageVersion("ambari-server"));
+        assertFalse(probe.passed("setup"));
+    }
+}
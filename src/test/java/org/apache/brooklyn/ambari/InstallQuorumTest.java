@@ -0,0 +1,37 @@
+package org.apache.brooklyn.ambari;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class InstallQuorumTest {
+
+    @Test
+    public void testRequiresFractionOfExpectedHostsRoundedUp() {
+        assertEquals(new InstallQuorum(10, 0.8, 60000).getRequiredHosts(), 8);
+        assertEquals(new InstallQuorum(4, 0.8, 60000).getRequiredHosts(), 4);
+        assertEquals(new InstallQuorum(0, 0.8, 60000).getRequiredHosts(), 1);
+    }
+
+    @Test
+    public void testReachedOnceEnoughHostsRegister() {
+        InstallQuorum quorum = new InstallQuorum(10, 0.8, 60000);
+
+        assertFalse(quorum.isReached(7, 1000));
+        assertTrue(quorum.isReached(8, 1000));
+    }
+
+    @Test
+    public void testReachedAfterDeadlineWithAnyHost() {
+        InstallQuorum quorum = new InstallQuorum(10, 0.8, 61000);
+
+        assertFalse(quorum.isReached(1, 60999));
+        assertTrue(quorum.isReached(1, 61000));
+        assertFalse(quorum.isReached(0, 120000));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsZeroQuorum() {
+        new InstallQuorum(10, 0, 60000);
+    }
+}
@@ -0,0 +1,95 @@
+package org.apache.brooklyn.ambari;
+
+import brooklyn.util.time.Duration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class ProvisioningSchedulerTest {
+
+    private ProvisioningScheduler scheduler;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        scheduler = new ProvisioningScheduler(10, 4, Duration.seconds(5), Duration.minutes(1), Duration.minutes(10));
+    }
+
+    @Test
+    public void testBatchIsBoundedByRemainingAndConcurrency() {
+        assertEquals(scheduler.nextBatch(3, 0), 3);
+        assertEquals(scheduler.nextBatch(100, 0), 4);
+
+        scheduler.onBatchStarted(4, 0);
+        scheduler.onBatchStarted(4, 0);
+
+        assertEquals(scheduler.getInFlight(), 8);
+        assertEquals(scheduler.nextBatch(100, 0), 2);
+    }
+
+    @Test
+    public void testFailedStartFreesConcurrency() {
+        scheduler.onBatchStarted(4, 0);
+        scheduler.onBatchStarted(6, 1000);
+        assertEquals(scheduler.nextBatch(100, 2000), 0);
+
+        scheduler.onStartFailed(0);
+
+        assertEquals(scheduler.getInFlight(), 9);
+        assertEquals(scheduler.nextBatch(100, 2000), 1);
+        assertFalse(scheduler.hasRegistrations());
+    }
+
+    @Test
+    public void testRegistrationFreesConcurrency() {
+        scheduler.onBatchStarted(10, 0);
+        assertEquals(scheduler.nextBatch(100, 1000), 0);
+
+        scheduler.onRegistered(1000);
+
+        assertEquals(scheduler.nextBatch(100, 1000), 1);
+    }
+
+    @Test
+    public void testUnregisteredAgentsExpireAfterTimeout() {
+        scheduler.onBatchStarted(10, 0);
+
+        assertEquals(scheduler.nextBatch(100, Duration.minutes(10).toMilliseconds()), 4);
+        assertEquals(scheduler.getInFlight(), 0);
+    }
+
+    @Test
+    public void testSlowRegistrationShrinksBatchAndStretchesDelay() {
+        scheduler.onBatchStarted(4, 0);
+
+        scheduler.onRegistered(Duration.minutes(2).toMilliseconds());
+
+        assertEquals(scheduler.getBatchSize(), 2);
+        assertEquals(scheduler.getBatchDelay(), Duration.seconds(10));
+        assertEquals(scheduler.getAverageLatencyMillis(), (double) Duration.minutes(2).toMilliseconds());
+    }
+
+    @Test
+    public void testFastRegistrationRecoversToConfiguredBatchAndDelay() {
+        long now = Duration.minutes(2).toMilliseconds();
+        scheduler.onBatchStarted(4, 0);
+        for (int i = 0; i < 4; i++) {
+            scheduler.onRegistered(now);
+        }
+        assertEquals(scheduler.getBatchSize(), 1);
+        assertEquals(scheduler.getBatchDelay(), Duration.minutes(1));
+
+        scheduler.onBatchStarted(4, now);
+        for (int i = 0; i < 4; i++) {
+            scheduler.onRegistered(now + 1000);
+        }
+
+        assertEquals(scheduler.getBatchSize(), 4);
+        assertEquals(scheduler.getBatchDelay(), Duration.seconds(5));
+    }
+
+    @Test
+    public void testAverageLatencyIsNaNBeforeAnyRegistration() {
+        assertTrue(Double.isNaN(scheduler.getAverageLatencyMillis()));
+    }
+}
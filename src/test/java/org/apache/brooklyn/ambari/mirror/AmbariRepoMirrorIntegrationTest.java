@@ -0,0 +1,52 @@
+package org.apache.brooklyn.ambari.mirror;
+
+import brooklyn.entity.BrooklynAppUnitTestSupport;
+import brooklyn.entity.basic.Attributes;
+import brooklyn.entity.proxying.EntitySpec;
+import brooklyn.location.basic.LocalhostMachineProvisioningLocation;
+import brooklyn.test.EntityTestUtils;
+import brooklyn.test.HttpTestUtils;
+import brooklyn.util.os.Os;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.*;
+
+public class AmbariRepoMirrorIntegrationTest extends BrooklynAppUnitTestSupport {
+
+    private File mirrorDir;
+
+    @BeforeMethod(alwaysRun = true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mirrorDir = Os.newTempDir(getClass());
+        File repoFile = new File(mirrorDir, "ambari/ubuntu12/1.x/updates/1.7.0/ambari.list");
+        Files.createParentDirs(repoFile);
+        Files.write("deb http://public-repo-1.hortonworks.com/ambari/ubuntu12/1.x/updates/1.7.0 Ambari main", repoFile, Charsets.UTF_8);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteMirrorDir() {
+        if (mirrorDir != null) Os.deleteRecursively(mirrorDir);
+    }
+
+    @Test(groups = "Integration")
+    public void testServesDirectory() throws Exception {
+        AmbariRepoMirror mirror = app.createAndManageChild(EntitySpec.create(AmbariRepoMirror.class)
+                .configure(AmbariRepoMirror.MIRROR_SOURCE, mirrorDir.getAbsolutePath()));
+
+        app.start(ImmutableList.of(new LocalhostMachineProvisioningLocation()));
+        EntityTestUtils.assertAttributeEqualsEventually(mirror, Attributes.SERVICE_UP, true);
+
+        String mirrorUrl = mirror.getAttribute(AmbariRepoMirror.MIRROR_URL);
+        assertNotNull(mirrorUrl);
+        HttpTestUtils.assertContentContainsText(mirrorUrl + "/ambari/ubuntu12/1.x/updates/1.7.0/ambari.list", "Ambari main");
+    }
+}
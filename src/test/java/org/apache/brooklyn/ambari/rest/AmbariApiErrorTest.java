@@ -1,8 +1,11 @@
 package org.apache.brooklyn.ambari.rest;
 
 import brooklyn.util.http.HttpToolResponse;
+import com.google.common.collect.ImmutableMap;
 import org.testng.annotations.Test;
 
+import java.util.List;
+
 import static org.testng.Assert.*;
 
 public class AmbariApiErrorTest {
@@ -13,4 +16,13 @@ public class AmbariApiErrorTest {
                 "Message from Server Dsfsd");
 
     }
+
+    @Test
+    public void testIsConflictFindsWrapped409() {
+        AmbariApiError conflict = new AmbariApiError(new HttpToolResponse(409, ImmutableMap.<String, List<String>>of(), new byte[0], 0, 0, 0));
+
+        assertTrue(AmbariApiError.isConflict(new RuntimeException(conflict)));
+        assertFalse(AmbariApiError.isConflict(new AmbariApiError("Circuit breaker open")));
+        assertFalse(AmbariApiError.isConflict(new IllegalStateException()));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package org.apache.brooklyn.ambari.rest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class BulkRequestsTest {
+
+    @Test
+    public void testHostsWithSameComponentsInAnyOrderShareAGroup() {
+        Map<List<String>, List<String>> groups = BulkRequests.groupHostsByComponents(ImmutableMap.of(
+                "host1", ImmutableList.of("DATANODE", "ZOOKEEPER_CLIENT"),
+                "host2", ImmutableList.of("ZOOKEEPER_CLIENT", "DATANODE"),
+                "host3", ImmutableList.of("NAMENODE")));
+
+        assertEquals(groups.size(), 2);
+        assertEquals(groups.get(ImmutableList.of("DATANODE", "ZOOKEEPER_CLIENT")), ImmutableList.of("host1", "host2"));
+        assertEquals(groups.get(ImmutableList.of("NAMENODE")), ImmutableList.of("host3"));
+    }
+
+    @Test
+    public void testHostsWithoutComponentsAreDropped() {
+        Map<List<String>, List<String>> groups = BulkRequests.groupHostsByComponents(ImmutableMap.of(
+                "host1", ImmutableList.<String>of()));
+
+        assertTrue(groups.isEmpty());
+    }
+
+    @Test
+    public void testBatchesAreNoLargerThanBatchSize() {
+        List<List<Integer>> batches = BulkRequests.batches(ImmutableList.of(1, 2, 3, 4, 5), 2);
+
+        assertEquals(batches, ImmutableList.of(ImmutableList.of(1, 2), ImmutableList.of(3, 4), ImmutableList.of(5)));
+    }
+}
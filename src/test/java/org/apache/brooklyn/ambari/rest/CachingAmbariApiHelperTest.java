@@ -0,0 +1,129 @@
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.time.Duration;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.brooklyn.ambari.testdoubles.AmbariApiHelperStub;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class CachingAmbariApiHelperTest {
+
+    private static final URI BASE_URI = URI.create("http://localhost:8080/");
+    private static final UsernamePasswordCredentials CREDENTIALS = new UsernamePasswordCredentials("admin", "admin");
+    private static final List<String> SERVICES = ImmutableList.of("ZOOKEEPER", "HDFS");
+
+    private AmbariApiHelperRecommendationsSpy ambariApiHelper;
+    private CachingAmbariApiHelper cachingAmbariApiHelper;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ambariApiHelper = new AmbariApiHelperRecommendationsSpy();
+        cachingAmbariApiHelper = new CachingAmbariApiHelper(ambariApiHelper, 10, Duration.minutes(1), 3);
+    }
+
+    @Test
+    public void testSameHostsAndServicesAreOnlyRecommendedOnce() {
+        List<String> hosts = ImmutableList.of("u1202.ambari.apache.org", "u1203.ambari.apache.org", "u1204.ambari.apache.org", "u1205.ambari.apache.org");
+
+        cachingAmbariApiHelper.getRecommendations(hosts, SERVICES, CREDENTIALS, BASE_URI);
+        cachingAmbariApiHelper.getRecommendations(hosts, SERVICES, CREDENTIALS, BASE_URI);
+
+        assertEquals(ambariApiHelper.recommendationCalls, 1);
+        assertEquals(cachingAmbariApiHelper.stats().hitCount(), 1);
+        assertEquals(cachingAmbariApiHelper.stats().missCount(), 1);
+    }
+
+    @Test
+    public void testCachedLayoutIsReboundToNewHostsOfTheSameShape() {
+        cachingAmbariApiHelper.getRecommendations(ImmutableList.of("u1202.ambari.apache.org", "u1203.ambari.apache.org", "u1204.ambari.apache.org", "u1205.ambari.apache.org"), SERVICES, CREDENTIALS, BASE_URI);
+
+        RecommendationResponse recommendation = cachingAmbariApiHelper.getRecommendations(ImmutableList.of("n2", "n3", "n4", "n5"), SERVICES, CREDENTIALS, BASE_URI);
+
+        assertEquals(ambariApiHelper.recommendationCalls, 1);
+        assertEquals(getHostGroupFqdn(recommendation, "host-group-2"), "n2");
+        assertEquals(getHostGroupFqdn(recommendation, "host-group-4"), "n4");
+    }
+
+    @Test
+    public void testDifferentServicesAreRecommendedAgain() {
+        List<String> hosts = ImmutableList.of("u1202.ambari.apache.org", "u1203.ambari.apache.org", "u1204.ambari.apache.org", "u1205.ambari.apache.org");
+
+        cachingAmbariApiHelper.getRecommendations(hosts, SERVICES, CREDENTIALS, BASE_URI);
+        cachingAmbariApiHelper.getRecommendations(hosts, ImmutableList.of("ZOOKEEPER"), CREDENTIALS, BASE_URI);
+
+        assertEquals(ambariApiHelper.recommendationCalls, 2);
+    }
+
+    @Test
+    public void testHostShapesAreLookedUpInBatches() {
+        List<String> hosts = ImmutableList.of("u1202.ambari.apache.org", "u1203.ambari.apache.org", "u1204.ambari.apache.org", "u1205.ambari.apache.org");
+
+        cachingAmbariApiHelper.getRecommendations(hosts, SERVICES, CREDENTIALS, BASE_URI);
+
+        assertEquals(ambariApiHelper.hostLookups, ImmutableList.of(3, 1));
+    }
+
+    @Test
+    public void testFailedHostLookupFallsThroughToAmbari() {
+        List<String> hosts = ImmutableList.of("u1202.ambari.apache.org", "u1203.ambari.apache.org", "u1204.ambari.apache.org", "u1205.ambari.apache.org");
+        ambariApiHelper.failHostLookups = true;
+
+        RecommendationResponse recommendation = cachingAmbariApiHelper.getRecommendations(hosts, SERVICES, CREDENTIALS, BASE_URI);
+
+        assertNotNull(recommendation);
+        assertEquals(ambariApiHelper.recommendationCalls, 1);
+        assertEquals(cachingAmbariApiHelper.stats().requestCount(), 0);
+    }
+
+    private String getHostGroupFqdn(RecommendationResponse recommendation, String hostGroupName) {
+        for (RecommendationResponse.Resource.Recommendations.BlueprintClusterBinding.HostGroup hostGroup : recommendation.getBlueprintClusterBinding().host_groups) {
+            if (hostGroup.name.equals(hostGroupName)) {
+                return hostGroup.hosts[0].fqdn;
+            }
+        }
+        return null;
+    }
+
+    private static class AmbariApiHelperRecommendationsSpy extends AmbariApiHelperStub {
+        public int recommendationCalls;
+        public final List<Integer> hostLookups = Lists.newArrayList();
+        public boolean failHostLookups;
+
+        @Override
+        public HostsResponse getHosts(List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+            hostLookups.add(hosts.size());
+            if (failHostLookups) {
+                throw new AmbariApiError("Request-URI Too Long");
+            }
+            HostsResponse hostsResponse = new HostsResponse();
+            hostsResponse.items = new HostsResponse.Item[hosts.size()];
+            for (int i = 0; i < hosts.size(); i++) {
+                hostsResponse.items[i] = new HostsResponse.Item();
+                hostsResponse.items[i].Hosts = new HostsResponse.Host();
+                hostsResponse.items[i].Hosts.host_name = hosts.get(i);
+                hostsResponse.items[i].Hosts.os_type = "ubuntu12";
+                hostsResponse.items[i].Hosts.cpu_count = 2;
+                hostsResponse.items[i].Hosts.total_mem = 4L * 1024 * 1024;
+            }
+            return hostsResponse;
+        }
+
+        @Override
+        public RecommendationResponse getRecommendations(List<String> hosts, Iterable<String> services, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+            recommendationCalls++;
+            try {
+                return new ObjectMapper().readValue(DefaultAmbariBluePrintTest.EXAMPLE_AMBARI_RECOMMENDATION_RESPONSE_JSON, RecommendationResponse.class);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
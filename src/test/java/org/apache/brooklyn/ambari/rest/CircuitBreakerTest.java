@@ -0,0 +1,91 @@
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.time.Duration;
+import com.google.common.base.Ticker;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class CircuitBreakerTest {
+
+    private FakeTicker ticker;
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ticker = new FakeTicker();
+        circuitBreaker = new CircuitBreaker(3, Duration.seconds(10), ticker);
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        fail(2);
+        assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+        assertTrue(circuitBreaker.allowRequest());
+
+        fail(1);
+        assertEquals(circuitBreaker.getState(), CircuitBreaker.State.OPEN);
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void testSuccessResetsFailureCount() {
+        fail(2);
+        circuitBreaker.allowRequest();
+        circuitBreaker.onSuccess();
+        fail(2);
+
+        assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testLetsSingleTrialThroughAfterOpenDuration() {
+        fail(3);
+        ticker.advance(10, TimeUnit.SECONDS);
+
+        assertTrue(circuitBreaker.allowRequest());
+        assertEquals(circuitBreaker.getState(), CircuitBreaker.State.HALF_OPEN);
+        assertFalse(circuitBreaker.allowRequest());
+
+        circuitBreaker.onSuccess();
+        assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void testFailedTrialReopens() {
+        fail(3);
+        ticker.advance(10, TimeUnit.SECONDS);
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.onFailure();
+
+        assertEquals(circuitBreaker.getState(), CircuitBreaker.State.OPEN);
+        assertFalse(circuitBreaker.allowRequest());
+        ticker.advance(10, TimeUnit.SECONDS);
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(circuitBreaker.allowRequest());
+            circuitBreaker.onFailure();
+        }
+    }
+
+    static class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long time, TimeUnit unit) {
+            nanos += unit.toNanos(time);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.apache.brooklyn.ambari.rest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class DefaultAmbariApiHelperTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    public void testAddHostsToHostGroupBody() throws Exception {
+        Object items = DefaultAmbariApiHelper.hostGroupItems("mybp", "host_group_2",
+                ImmutableList.of("host1.example.com", "host2.example.com"),
+                ImmutableMap.of("host1.example.com", "/us-east-1a"));
+
+        assertEquals(OBJECT_MAPPER.readTree(OBJECT_MAPPER.writeValueAsString(items)), OBJECT_MAPPER.readTree("["
+                + "{\"blueprint\": \"mybp\", \"host_group\": \"host_group_2\", \"host_name\": \"host1.example.com\", \"rack_info\": \"/us-east-1a\"},"
+                + "{\"blueprint\": \"mybp\", \"host_group\": \"host_group_2\", \"host_name\": \"host2.example.com\"}]"));
+    }
+}
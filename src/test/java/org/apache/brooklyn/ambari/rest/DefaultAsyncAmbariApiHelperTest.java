@@ -0,0 +1,66 @@
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.time.Duration;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.brooklyn.ambari.testdoubles.AmbariApiHelperStub;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class DefaultAsyncAmbariApiHelperTest {
+
+    private static final URI BASE_URI = URI.create("http://localhost:8080/");
+    private static final UsernamePasswordCredentials CREDENTIALS = new UsernamePasswordCredentials("admin", "admin");
+
+    @Test
+    public void testQueuedCallsFinishBeforeTermination() throws Exception {
+        AmbariApiHelperSlowSpy ambariApiHelper = new AmbariApiHelperSlowSpy();
+        DefaultAsyncAmbariApiHelper asyncAmbariApiHelper = new DefaultAsyncAmbariApiHelper(ambariApiHelper, 1);
+
+        ListenableFuture<Void> first = asyncAmbariApiHelper.addHostsToCluster("c1", ImmutableList.of("h1"), CREDENTIALS, BASE_URI);
+        ListenableFuture<Void> queued = asyncAmbariApiHelper.addHostsToCluster("c1", ImmutableList.of("h2"), CREDENTIALS, BASE_URI);
+        asyncAmbariApiHelper.shutdown();
+        ambariApiHelper.release.countDown();
+
+        assertTrue(asyncAmbariApiHelper.awaitTermination(Duration.seconds(10)));
+        assertTrue(first.isDone());
+        assertTrue(queued.isDone());
+        assertEquals(ambariApiHelper.calls.get(), 2);
+    }
+
+    @Test
+    public void testTerminationTimesOutWhileCallsAreBlocked() throws Exception {
+        AmbariApiHelperSlowSpy ambariApiHelper = new AmbariApiHelperSlowSpy();
+        DefaultAsyncAmbariApiHelper asyncAmbariApiHelper = new DefaultAsyncAmbariApiHelper(ambariApiHelper, 1);
+
+        asyncAmbariApiHelper.addHostsToCluster("c1", ImmutableList.of("h1"), CREDENTIALS, BASE_URI);
+        asyncAmbariApiHelper.shutdown();
+
+        assertFalse(asyncAmbariApiHelper.awaitTermination(Duration.millis(100)));
+        ambariApiHelper.release.countDown();
+        assertTrue(asyncAmbariApiHelper.awaitTermination(Duration.seconds(10)));
+    }
+
+    private static class AmbariApiHelperSlowSpy extends AmbariApiHelperStub {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void addHostsToCluster(String cluster, List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            calls.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.apache.brooklyn.ambari.rest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.jayway.jsonpath.PathNotFoundException;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class JsonTreePathTest {
+
+    private static final JsonTreePath HOST_NAMES = JsonTreePath.compile("$.items[*].Hosts.host_name");
+
+    @Test
+    public void testReadsEveryArrayItem() {
+        JsonElement json = parse("{\"items\": [{\"Hosts\": {\"host_name\": \"host1\"}}, {\"Hosts\": {\"host_name\": \"host2\"}}]}");
+
+        assertEquals(HOST_NAMES.readStrings(json), ImmutableList.of("host1", "host2"));
+    }
+
+    @Test
+    public void testEmptyArrayReadsNothing() {
+        assertEquals(HOST_NAMES.readStrings(parse("{\"items\": []}")), ImmutableList.of());
+    }
+
+    @Test
+    public void testSkipsItemsMissingTheRestOfThePath() {
+        JsonElement json = parse("{\"items\": [{\"Hosts\": {}}, {\"Hosts\": {\"host_name\": \"host2\"}}]}");
+
+        assertEquals(HOST_NAMES.readStrings(json), ImmutableList.of("host2"));
+    }
+
+    @Test(expectedExceptions = PathNotFoundException.class)
+    public void testMissingDefiniteMemberThrows() {
+        HOST_NAMES.read(parse("{}"));
+    }
+
+    @Test
+    public void testReadsPathWithoutWildcard() {
+        JsonElement json = parse("{\"Clusters\": {\"cluster_name\": \"Cluster1\"}}");
+
+        assertEquals(JsonTreePath.compile("Clusters.cluster_name").readStrings(json), ImmutableList.of("Cluster1"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsUnsupportedPath() {
+        JsonTreePath.compile("$.items[0].Hosts");
+    }
+
+    private JsonElement parse(String json) {
+        return new JsonParser().parse(json);
+    }
+}
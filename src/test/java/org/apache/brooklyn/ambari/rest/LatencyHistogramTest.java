@@ -0,0 +1,71 @@
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.time.Duration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private CircuitBreakerTest.FakeTicker ticker;
+    private LatencyHistogram histogram;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ticker = new CircuitBreakerTest.FakeTicker();
+        histogram = new LatencyHistogram(Duration.seconds(60), 6, ticker);
+    }
+
+    @Test
+    public void testBucketsRoundTrip() {
+        for (long value : new long[] {0, 1, 15, 16, 17, 100, 1000, 123456, Long.MAX_VALUE}) {
+            long highest = LatencyHistogram.highestValueIn(LatencyHistogram.bucketFor(value));
+            assertTrue(highest >= value, value + " -> " + highest);
+            assertTrue(highest - value <= value / 8, value + " -> " + highest);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i, TimeUnit.MILLISECONDS);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(snapshot.getCount(), 100);
+        assertEquals(snapshot.getMax(), Duration.millis(100));
+        assertWithinEighth(snapshot.getPercentile(50), 50);
+        assertWithinEighth(snapshot.getPercentile(99), 99);
+    }
+
+    @Test
+    public void testOldSamplesLeaveTheWindow() {
+        histogram.record(500, TimeUnit.MILLISECONDS);
+        ticker.advance(30, TimeUnit.SECONDS);
+        histogram.record(10, TimeUnit.MILLISECONDS);
+
+        assertEquals(histogram.snapshot().getCount(), 2);
+
+        ticker.advance(35, TimeUnit.SECONDS);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(snapshot.getCount(), 1);
+        assertEquals(snapshot.getMax(), Duration.millis(10));
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        assertEquals(histogram.snapshot().getCount(), 0);
+        assertEquals(histogram.snapshot().getPercentile(99), Duration.ZERO);
+    }
+
+    private void assertWithinEighth(Duration actual, long expectedMillis) {
+        long actualMicros = TimeUnit.NANOSECONDS.toMicros(actual.toNanoseconds());
+        long expectedMicros = TimeUnit.MILLISECONDS.toMicros(expectedMillis);
+        assertTrue(actualMicros >= expectedMicros && actualMicros - expectedMicros <= expectedMicros / 8, actual + " vs " + expectedMillis + "ms");
+    }
+}
@@ -0,0 +1,66 @@
+package org.apache.brooklyn.ambari.rest;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.apache.brooklyn.ambari.rest.RecommendationResponse.Resource.Recommendations.Blueprint;
+import static org.apache.brooklyn.ambari.rest.RecommendationResponse.Resource.Recommendations.BlueprintClusterBinding;
+import static org.testng.Assert.*;
+
+public class RecommendationResponseTest {
+
+    private RecommendationResponse recommendationResponse;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        recommendationResponse = new ObjectMapper()
+                .reader(RecommendationResponse.class)
+                .readValue(DefaultAmbariBluePrintTest.EXAMPLE_AMBARI_RECOMMENDATION_RESPONSE_JSON);
+    }
+
+    @Test
+    public void testComponentsBindToTypedComponents() {
+        Blueprint.HostGroup hostGroup = getBlueprintHostGroup("host-group-4");
+
+        assertEquals(hostGroup.components.length, 4);
+        assertEquals(hostGroup.components[0].name, "ZOOKEEPER_SERVER");
+    }
+
+    @Test
+    public void testHostsBindToTypedHosts() {
+        for (BlueprintClusterBinding.HostGroup hostGroup : recommendationResponse.getBlueprintClusterBinding().host_groups) {
+            if (hostGroup.name.equals("host-group-4")) {
+                assertEquals(hostGroup.hosts[0].fqdn, "u1204.ambari.apache.org");
+                return;
+            }
+        }
+        fail("host-group-4 not bound");
+    }
+
+    @Test
+    public void testRepeatedComponentNamesAreShared() {
+        String first = getComponentName(getBlueprintHostGroup("host-group-4"), "ZOOKEEPER_SERVER");
+        String second = getComponentName(getBlueprintHostGroup("host-group-2"), "ZOOKEEPER_SERVER");
+
+        assertSame(first, second);
+    }
+
+    private Blueprint.HostGroup getBlueprintHostGroup(String name) {
+        for (Blueprint.HostGroup hostGroup : recommendationResponse.getBlueprint().host_groups) {
+            if (hostGroup.name.equals(name)) {
+                return hostGroup;
+            }
+        }
+        return null;
+    }
+
+    private String getComponentName(Blueprint.HostGroup hostGroup, String name) {
+        for (Blueprint.Component component : hostGroup.components) {
+            if (component.name.equals(name)) {
+                return component.name;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,61 @@
+package org.apache.brooklyn.ambari.rest;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class RequestResponseTest {
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testAcceptedResponseHasRequestId() throws Exception {
+        RequestResponse response = objectMapper.readValue(ACCEPTED_RESPONSE_JSON, RequestResponse.class);
+
+        assertEquals(response.getId(), Integer.valueOf(1));
+        assertFalse(response.Requests.isFinished());
+    }
+
+    @Test
+    public void testInProgressRequestIsNotFinished() throws Exception {
+        RequestResponse response = objectMapper.readValue(IN_PROGRESS_REQUEST_JSON, RequestResponse.class);
+
+        assertEquals(response.Requests.progress_percent, 42.5);
+        assertEquals(response.Requests.task_count, Integer.valueOf(20));
+        assertEquals(response.Requests.completed_task_count, Integer.valueOf(8));
+        assertFalse(response.Requests.isFinished());
+    }
+
+    @Test
+    public void testFailedRequestIsFinishedButNotSuccessful() throws Exception {
+        RequestResponse response = objectMapper.readValue(IN_PROGRESS_REQUEST_JSON.replace("IN_PROGRESS", "FAILED"), RequestResponse.class);
+
+        assertTrue(response.Requests.isFinished());
+        assertFalse(response.Requests.isSuccessful());
+    }
+
+    private static final String ACCEPTED_RESPONSE_JSON = "{\n" +
+            "  \"href\" : \"http://u1201.ambari.apache.org:8080/api/v1/clusters/Cluster1/requests/1\",\n" +
+            "  \"Requests\" : {\n" +
+            "    \"id\" : 1,\n" +
+            "    \"status\" : \"InProgress\"\n" +
+            "  }\n" +
+            "}";
+
+    private static final String IN_PROGRESS_REQUEST_JSON = "{\n" +
+            "  \"href\" : \"http://u1201.ambari.apache.org:8080/api/v1/clusters/Cluster1/requests/1\",\n" +
+            "  \"Requests\" : {\n" +
+            "    \"aborted_task_count\" : 0,\n" +
+            "    \"cluster_name\" : \"Cluster1\",\n" +
+            "    \"completed_task_count\" : 8,\n" +
+            "    \"failed_task_count\" : 0,\n" +
+            "    \"id\" : 1,\n" +
+            "    \"progress_percent\" : 42.5,\n" +
+            "    \"queued_task_count\" : 12,\n" +
+            "    \"request_status\" : \"IN_PROGRESS\",\n" +
+            "    \"task_count\" : 20,\n" +
+            "    \"timed_out_task_count\" : 0\n" +
+            "  }\n" +
+            "}";
+}
@@ -0,0 +1,222 @@
+package org.apache.brooklyn.ambari.rest;
+
+import brooklyn.util.http.HttpToolResponse;
+import brooklyn.util.time.Duration;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.brooklyn.ambari.testdoubles.AmbariApiHelperStub;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.codehaus.jackson.map.JsonMappingException;
+import org.testng.annotations.Test;
+
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.testng.Assert.*;
+
+public class RetryingAmbariApiHelperTest {
+
+    private static final URI BASE_URI = URI.create("http://localhost:8080/");
+    private static final UsernamePasswordCredentials CREDENTIALS = new UsernamePasswordCredentials("admin", "admin");
+    private static final List<String> HOSTS = ImmutableList.of("host1");
+
+    @Test
+    public void testRetriesTransientFailuresUntilSuccess() {
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(
+                new RuntimeException(new SocketException("Connection reset")), error(503));
+        RetryingAmbariApiHelper retrying = newRetryingHelper(ambariApiHelper, 5);
+
+        retrying.getHosts(HOSTS, CREDENTIALS, BASE_URI);
+
+        assertEquals(ambariApiHelper.calls, 3);
+        assertEquals(retrying.getRetryCount(), 2);
+    }
+
+    @Test
+    public void testDoesNotRetryCreateOnceSent() {
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(
+                new RuntimeException(new SocketException("Connection reset")));
+        RetryingAmbariApiHelper retrying = newRetryingHelper(ambariApiHelper, 5);
+
+        try {
+            retrying.createClusterAPI("cluster", CREDENTIALS, BASE_URI);
+            fail("Expected the connection reset");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof SocketException);
+        }
+        assertEquals(ambariApiHelper.calls, 1);
+    }
+
+    @Test
+    public void testDoesNotRetryCreateOnServerError() {
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(error(503));
+        RetryingAmbariApiHelper retrying = newRetryingHelper(ambariApiHelper, 5);
+
+        try {
+            retrying.createClusterAPI("cluster", CREDENTIALS, BASE_URI);
+            fail("Expected AmbariApiError");
+        } catch (AmbariApiError e) {
+            assertEquals(e.getResponseCode(), 503);
+        }
+        assertEquals(ambariApiHelper.calls, 1);
+    }
+
+    @Test
+    public void testRetriesCreateWhenConnectionCouldNotBeMade() {
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(
+                new RuntimeException(new ConnectException("Connection refused")));
+        RetryingAmbariApiHelper retrying = newRetryingHelper(ambariApiHelper, 5);
+
+        retrying.createClusterAPI("cluster", CREDENTIALS, BASE_URI);
+
+        assertEquals(ambariApiHelper.calls, 2);
+    }
+
+    @Test
+    public void testThrowsConflictOnCreate() {
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(error(409));
+        RetryingAmbariApiHelper retrying = newRetryingHelper(ambariApiHelper, 5);
+
+        try {
+            retrying.createClusterAPI("cluster", CREDENTIALS, BASE_URI);
+            fail("Expected AmbariApiError");
+        } catch (AmbariApiError e) {
+            assertEquals(e.getResponseCode(), 409);
+        }
+        assertEquals(ambariApiHelper.calls, 1);
+        assertEquals(retrying.getCircuitBreakerState(), CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testThrowsConflictOnCreateRetriedAfterConnectFailure() {
+        // The first attempt never reached the server, so the resource existed before the call
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(
+                new RuntimeException(new ConnectException("Connection refused")), error(409));
+        RetryingAmbariApiHelper retrying = newRetryingHelper(ambariApiHelper, 5);
+
+        try {
+            retrying.createClusterAPI("cluster", CREDENTIALS, BASE_URI);
+            fail("Expected AmbariApiError");
+        } catch (AmbariApiError e) {
+            assertEquals(e.getResponseCode(), 409);
+        }
+        assertEquals(ambariApiHelper.calls, 2);
+    }
+
+    @Test
+    public void testDoesNotRetryConflictOnRead() {
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(error(409));
+        RetryingAmbariApiHelper retrying = newRetryingHelper(ambariApiHelper, 5);
+
+        try {
+            retrying.getHosts(HOSTS, CREDENTIALS, BASE_URI);
+            fail("Expected AmbariApiError");
+        } catch (AmbariApiError e) {
+            assertEquals(e.getResponseCode(), 409);
+        }
+        assertEquals(ambariApiHelper.calls, 1);
+    }
+
+    @Test
+    public void testDoesNotRetryUnparseableResponses() {
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(
+                new RuntimeException(new JsonMappingException("Unexpected token")));
+        RetryingAmbariApiHelper retrying = newRetryingHelper(ambariApiHelper, 5);
+
+        try {
+            retrying.getHosts(HOSTS, CREDENTIALS, BASE_URI);
+            fail("Expected the parse failure");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof JsonMappingException);
+        }
+        assertEquals(ambariApiHelper.calls, 1);
+        assertEquals(retrying.getCircuitBreakerState(), CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testDoesNotRetryClientErrors() {
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(error(400));
+        RetryingAmbariApiHelper retrying = newRetryingHelper(ambariApiHelper, 5);
+
+        try {
+            retrying.createClusterAPI("cluster", CREDENTIALS, BASE_URI);
+            fail("Expected AmbariApiError");
+        } catch (AmbariApiError e) {
+            assertEquals(e.getResponseCode(), 400);
+        }
+        assertEquals(ambariApiHelper.calls, 1);
+        assertEquals(retrying.getCircuitBreakerState(), CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(error(500), error(500), error(500));
+        RetryingAmbariApiHelper retrying = newRetryingHelper(ambariApiHelper, 2);
+
+        try {
+            retrying.getHosts(HOSTS, CREDENTIALS, BASE_URI);
+            fail("Expected AmbariApiError");
+        } catch (AmbariApiError e) {
+            assertEquals(e.getResponseCode(), 500);
+        }
+        assertEquals(ambariApiHelper.calls, 2);
+    }
+
+    @Test
+    public void testOpenCircuitBreakerRefusesCalls() {
+        FailingAmbariApiHelper ambariApiHelper = new FailingAmbariApiHelper(error(503), error(503));
+        RetryingAmbariApiHelper retrying = new RetryingAmbariApiHelper(ambariApiHelper, 5, Duration.millis(1), Duration.millis(1),
+                new CircuitBreaker(2, Duration.minutes(1)));
+
+        try {
+            retrying.getHosts(HOSTS, CREDENTIALS, BASE_URI);
+            fail("Expected AmbariApiError");
+        } catch (AmbariApiError e) {
+            assertEquals(e.getResponseCode(), -1);
+        }
+        assertEquals(ambariApiHelper.calls, 2);
+        assertEquals(retrying.getCircuitBreakerState(), CircuitBreaker.State.OPEN);
+    }
+
+    private RetryingAmbariApiHelper newRetryingHelper(AmbariApiHelper ambariApiHelper, int maxAttempts) {
+        return new RetryingAmbariApiHelper(ambariApiHelper, maxAttempts, Duration.millis(1), Duration.millis(1),
+                new CircuitBreaker(10, Duration.minutes(1)));
+    }
+
+    private static AmbariApiError error(int responseCode) {
+        return new AmbariApiError(new HttpToolResponse(responseCode, ImmutableMap.<String, List<String>>of(), new byte[0], 0, 0, 0));
+    }
+
+    private static class FailingAmbariApiHelper extends AmbariApiHelperStub {
+        private final Queue<RuntimeException> failures;
+        int calls;
+
+        FailingAmbariApiHelper(RuntimeException... failures) {
+            this.failures = new LinkedList<RuntimeException>(Arrays.asList(failures));
+        }
+
+        @Override
+        public void createClusterAPI(String cluster, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+            call();
+        }
+
+        @Override
+        public HostsResponse getHosts(List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+            call();
+            return new HostsResponse();
+        }
+
+        private void call() {
+            calls++;
+            RuntimeException failure = failures.poll();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.apache.brooklyn.ambari.server;
+
+import brooklyn.util.time.Duration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class AdaptivePollingPolicyTest {
+
+    private AdaptivePollingPolicy policy;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        policy = new AdaptivePollingPolicy(Duration.millis(500), Duration.seconds(4), 2);
+    }
+
+    @Test
+    public void testStartsFast() {
+        assertEquals(policy.getPeriod(), Duration.millis(500));
+    }
+
+    @Test
+    public void testBacksOffAfterIdleCyclesUpToSlowPeriod() {
+        assertFalse(policy.onIdle());
+        assertFalse(policy.onIdle());
+
+        assertTrue(policy.onIdle());
+        assertEquals(policy.getPeriod(), Duration.seconds(1));
+        policy.onIdle();
+        policy.onIdle();
+        assertEquals(policy.getPeriod(), Duration.seconds(4));
+
+        assertFalse(policy.onIdle());
+        assertEquals(policy.getPeriod(), Duration.seconds(4));
+    }
+
+    @Test
+    public void testActivitySnapsBackToFast() {
+        for (int i = 0; i < 5; i++) {
+            policy.onIdle();
+        }
+
+        assertTrue(policy.onActivity());
+        assertEquals(policy.getPeriod(), Duration.millis(500));
+        assertFalse(policy.onIdle());
+    }
+
+    @Test
+    public void testFailureSnapsBackToFast() {
+        for (int i = 0; i < 5; i++) {
+            policy.onIdle();
+        }
+
+        assertTrue(policy.onFailure());
+        assertEquals(policy.getPeriod(), Duration.millis(500));
+    }
+}
@@ -0,0 +1,111 @@
+package org.apache.brooklyn.ambari.server;
+
+import brooklyn.util.http.HttpToolResponse;
+import brooklyn.util.time.Duration;
+import com.google.common.collect.ImmutableMap;
+import org.apache.brooklyn.ambari.rest.AmbariApiError;
+import org.apache.brooklyn.ambari.rest.RequestResponse;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.*;
+
+public class AmbariRequestTrackerTest {
+
+    private ScheduledExecutorService scheduler;
+    private final AtomicReference<Duration> estimate = new AtomicReference<Duration>();
+    private final AmbariRequestTracker.Listener listener = new AmbariRequestTracker.Listener() {
+        @Override
+        public void onStatus(RequestResponse.Request request, @Nullable Duration estimatedTimeRemaining) {
+            estimate.set(estimatedTimeRemaining);
+        }
+    };
+
+    @BeforeMethod
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testStopsOnUnknownRequest() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        AmbariRequestTracker tracker = newTracker(new Callable<RequestResponse>() {
+            @Override
+            public RequestResponse call() {
+                calls.incrementAndGet();
+                throw new AmbariApiError(new HttpToolResponse(404, ImmutableMap.<String, List<String>>of(), new byte[0], 0, 0, 0));
+            }
+        });
+
+        tracker.start();
+
+        try {
+            tracker.getResult().get(10, TimeUnit.SECONDS);
+            fail("Expected the unknown request to fail the result");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AmbariApiError);
+        }
+        Thread.sleep(50);
+        assertEquals(calls.get(), 1);
+    }
+
+    @Test
+    public void testStopsOnTerminalState() throws Exception {
+        AmbariRequestTracker tracker = newTracker(fixedResponse(request("FAILED", 40.0, null)));
+
+        tracker.start();
+
+        assertEquals(tracker.getResult().get(10, TimeUnit.SECONDS).request_status, "FAILED");
+    }
+
+    @Test
+    public void testEstimatesFromRequestStartTime() throws Exception {
+        final long startTime = System.currentTimeMillis() - 60000;
+        AmbariRequestTracker tracker = newTracker(fixedResponse(request("IN_PROGRESS", 50.0, startTime)));
+
+        tracker.run();
+        tracker.cancel();
+
+        assertTrue(estimate.get().toMilliseconds() >= 55000, "estimate " + estimate.get());
+        assertTrue(estimate.get().toMilliseconds() <= 65000, "estimate " + estimate.get());
+    }
+
+    private AmbariRequestTracker newTracker(Callable<RequestResponse> fetcher) {
+        return new AmbariRequestTracker(fetcher, scheduler, listener, Duration.millis(1), Duration.millis(10));
+    }
+
+    private static Callable<RequestResponse> fixedResponse(final RequestResponse response) {
+        return new Callable<RequestResponse>() {
+            @Override
+            public RequestResponse call() {
+                return response;
+            }
+        };
+    }
+
+    private static RequestResponse request(String status, Double progress, Long startTime) {
+        RequestResponse response = new RequestResponse();
+        response.Requests = new RequestResponse.Request();
+        response.Requests.id = 1;
+        response.Requests.request_status = status;
+        response.Requests.progress_percent = progress;
+        response.Requests.start_time = startTime;
+        return response;
+    }
+}
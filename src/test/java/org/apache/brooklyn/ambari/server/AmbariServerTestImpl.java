@@ -35,7 +35,7 @@ public class AmbariServerTestImpl extends AmbariServerImpl implements AmbariServ
     }
     @Override
     public void emitHosts(List<String> hosts) {
-        emit(REGISTERED_HOSTS, hosts);
+        onHostsPolled(hosts);
     }
 
     @Override
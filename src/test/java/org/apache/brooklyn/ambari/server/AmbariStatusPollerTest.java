@@ -0,0 +1,141 @@
+package org.apache.brooklyn.ambari.server;
+
+import brooklyn.util.http.HttpToolResponse;
+import brooklyn.util.time.Duration;
+import com.google.common.base.Charsets;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import org.apache.brooklyn.ambari.rest.AmbariApiMetrics;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class AmbariStatusPollerTest {
+
+    private static final String HOSTS_JSON = "{\"items\": [{\"Hosts\": {\"host_name\": \"host1.example.com\"}}]}";
+
+    private static final String CLUSTER_JSON = "{"
+            + "\"Clusters\": {\"health_report\": {\"Host/host_state/HEALTHY\": 3, \"Host/host_state/UNHEALTHY\": 1}},"
+            + "\"services\": ["
+            + "{\"ServiceInfo\": {\"service_name\": \"HDFS\", \"state\": \"STARTED\"}},"
+            + "{\"ServiceInfo\": {\"service_name\": \"YARN\", \"state\": \"INSTALLED\"}}],"
+            + "\"alerts_summary\": {\"CRITICAL\": 2, \"WARNING\": 5}}";
+
+    private AmbariApiMetrics metrics;
+    private Map<String, HttpToolResponse> responses;
+    private AmbariStatusPoller poller;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        metrics = new AmbariApiMetrics(Duration.ONE_MINUTE);
+        responses = new HashMap<String, HttpToolResponse>();
+        poller = new AmbariStatusPoller(null, metrics, new UsernamePasswordCredentials("admin", "admin"),
+                URI.create("http://ambari.example.com:8080"), Suppliers.ofInstance("Cluster1")) {
+            @Override
+            HttpToolResponse httpGet(URI uri) {
+                HttpToolResponse response = responses.get(uri.getPath());
+                if (response == null) {
+                    throw new IllegalStateException("Connection refused");
+                }
+                return response;
+            }
+        };
+    }
+
+    @Test
+    public void testRecordsUnparseableResponseAsError() {
+        responses.put("/api/v1/hosts", response(200, "{\"items\": ["));
+
+        try {
+            poller.poll();
+            fail("Expected the poll to fail");
+        } catch (AmbariStatusPoller.RecordedPollFailure e) {
+            // expected
+        }
+
+        assertEquals(errors(AmbariStatusPoller.HOSTS_ENDPOINT), 1L);
+    }
+
+    @Test
+    public void testRecordsFailedRequestAsError() {
+        try {
+            poller.poll();
+            fail("Expected the poll to fail");
+        } catch (AmbariStatusPoller.RecordedPollFailure e) {
+            // expected
+        }
+
+        assertEquals(errors(AmbariStatusPoller.HOSTS_ENDPOINT), 1L);
+    }
+
+    @Test
+    public void testRecordsSuccessfulRequestWithoutError() {
+        responses.put("/api/v1/hosts", response(200, HOSTS_JSON));
+        responses.put("/api/v1/clusters/Cluster1", response(200, "{}"));
+
+        poller.poll();
+
+        assertEquals(errors(AmbariStatusPoller.HOSTS_ENDPOINT), 0L);
+        assertEquals(metrics.snapshot().get(AmbariStatusPoller.HOSTS_ENDPOINT).get(AmbariApiMetrics.CALLS), 1L);
+    }
+
+    @Test
+    public void testClusterFailureLeavesHostsAndReportsNoCluster() {
+        responses.put("/api/v1/hosts", response(200, HOSTS_JSON));
+        responses.put("/api/v1/clusters/Cluster1", response(404, "{}"));
+
+        AmbariStatusPoller.Status status = poller.poll();
+
+        assertNotNull(status.hosts);
+        assertNull(status.cluster);
+        assertEquals(errors(AmbariStatusPoller.CLUSTER_ENDPOINT), 1L);
+    }
+
+    @Test
+    public void testClusterCallRejectingFieldsReportsNoCluster() {
+        responses.put("/api/v1/hosts", response(200, HOSTS_JSON));
+        responses.put("/api/v1/clusters/Cluster1", response(400, "{\"status\": 400, \"message\": \"Invalid field\"}"));
+
+        assertNull(poller.poll().cluster);
+    }
+
+    @Test
+    public void testFansClusterStatusOutToSensors() {
+        responses.put("/api/v1/hosts", response(200, HOSTS_JSON));
+        responses.put("/api/v1/clusters/Cluster1", response(200, CLUSTER_JSON));
+
+        AmbariStatusPoller.Status status = poller.poll();
+
+        assertEquals(AmbariServerImpl.serviceStates().apply(status), ImmutableMap.of("HDFS", "STARTED", "YARN", "INSTALLED"));
+        assertEquals(AmbariServerImpl.clusterHealthReport().apply(status), ImmutableMap.of("Host/host_state/HEALTHY", 3, "Host/host_state/UNHEALTHY", 1));
+        assertEquals(AmbariServerImpl.alertCount(AmbariServerImpl.ALERTS_CRITICAL_COUNT).apply(status), (Integer) 2);
+        assertEquals(AmbariServerImpl.alertCount(AmbariServerImpl.ALERTS_WARNING_COUNT).apply(status), (Integer) 5);
+    }
+
+    @Test
+    public void testFansMissingClusterOutToEmptySensors() {
+        responses.put("/api/v1/hosts", response(200, HOSTS_JSON));
+        responses.put("/api/v1/clusters/Cluster1", response(503, ""));
+
+        AmbariStatusPoller.Status status = poller.poll();
+
+        assertNull(AmbariServerImpl.serviceStates().apply(status));
+        assertNull(AmbariServerImpl.clusterHealthReport().apply(status));
+        assertNull(AmbariServerImpl.alertCount(AmbariServerImpl.ALERTS_CRITICAL_COUNT).apply(status));
+    }
+
+    static HttpToolResponse response(int code, String body) {
+        return new HttpToolResponse(code, ImmutableMap.<String, List<String>>of(), body.getBytes(Charsets.UTF_8), 0, 0, 0);
+    }
+
+    private Object errors(String endpoint) {
+        return metrics.snapshot().get(endpoint).get(AmbariApiMetrics.ERRORS);
+    }
+}
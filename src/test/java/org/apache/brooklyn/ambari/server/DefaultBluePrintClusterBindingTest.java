@@ -1,5 +1,6 @@
 package org.apache.brooklyn.ambari.server;
 
+import com.google.common.collect.ImmutableMap;
 import org.apache.brooklyn.ambari.rest.DefaultAmbariBluePrintTest;
 import org.apache.brooklyn.ambari.rest.DefaultBluePrintClusterBinding;
 import org.apache.brooklyn.ambari.rest.RecommendationResponse;
@@ -15,11 +16,12 @@ import static org.testng.Assert.*;
 public class DefaultBluePrintClusterBindingTest {
 
     private ObjectMapper objectMapper = new ObjectMapper();
+    private DefaultBluePrintClusterBinding defaultBluePrintClusterBinding;
     private Map mapOfJsonFromDefaultAmbariClusterBinding;
 
     @BeforeMethod
     public void setUp() throws Exception {
-        DefaultBluePrintClusterBinding defaultBluePrintClusterBinding = DefaultBluePrintClusterBinding.createFromRecommendation(createClusterBindingFromExampleJson());
+        defaultBluePrintClusterBinding = DefaultBluePrintClusterBinding.createFromRecommendation(createClusterBindingFromExampleJson());
         defaultBluePrintClusterBinding.setBluePrintName("bp1");
         mapOfJsonFromDefaultAmbariClusterBinding = objectMapper.readValue(defaultBluePrintClusterBinding.toJson(), Map.class);
 
@@ -36,6 +38,22 @@ public class DefaultBluePrintClusterBindingTest {
 
     }
 
+    @Test
+    public void testHostGroupsListBoundHosts() throws Exception {
+        Map<String, List<String>> hostGroups = defaultBluePrintClusterBinding.getHostGroups();
+
+        assertEquals(hostGroups.size(), 4);
+        assertTrue(hostGroups.get("host-group-2").contains("u1202.ambari.apache.org"));
+    }
+
+    @Test
+    public void testWritesRackInfoOfHostsWithRack() throws Exception {
+        defaultBluePrintClusterBinding.setHostRacks(ImmutableMap.of("u1202.ambari.apache.org", "/us-east-1a"));
+        mapOfJsonFromDefaultAmbariClusterBinding = objectMapper.readValue(defaultBluePrintClusterBinding.toJson(), Map.class);
+
+        assertEquals(getHost(getHostGroup("host-group-2"), "u1202.ambari.apache.org").get("rack_info"), "/us-east-1a");
+    }
+
     private Map getHost(Map hostGroup, String fqdn) {
         for (Map map : getHosts(hostGroup)) {
             if(map.get("fqdn").equals(fqdn)){
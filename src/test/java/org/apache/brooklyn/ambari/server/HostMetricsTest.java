@@ -0,0 +1,86 @@
+package org.apache.brooklyn.ambari.server;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonParser;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class HostMetricsTest {
+
+    private HostMetrics hostMetrics;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        hostMetrics = new HostMetrics(4);
+    }
+
+    @Test
+    public void testIngestsEveryHostFromOneResponse() {
+        hostMetrics.ingest(new JsonParser().parse(JSON_WITH_TWO_HOSTS));
+
+        Map<String, Map<String, Double>> snapshot = hostMetrics.snapshot();
+
+        assertEquals(snapshot.keySet().size(), 2);
+        Map<String, Double> host1 = snapshot.get("host1.example.com");
+        assertEquals(host1.get(HostMetrics.average(HostMetrics.CPU_PERCENT)), 15.0, 0.001);
+        assertEquals(host1.get(HostMetrics.average(HostMetrics.MEMORY_USED_PERCENT)), 75.0, 0.001);
+        assertEquals(host1.get(HostMetrics.average(HostMetrics.DISK_USED_PERCENT)), 50.0, 0.001);
+        assertEquals(host1.get(HostMetrics.average(HostMetrics.NETWORK_BYTES_IN)), 1000.0, 0.001);
+        assertNull(snapshot.get("host2.example.com").get(HostMetrics.average(HostMetrics.CPU_PERCENT)));
+    }
+
+    @Test
+    public void testHostsMissingFromResponseAreForgotten() {
+        hostMetrics.ingest(new JsonParser().parse(JSON_WITH_TWO_HOSTS));
+        hostMetrics.ingest(new JsonParser().parse("{\"items\": []}"));
+
+        assertTrue(hostMetrics.snapshot().isEmpty());
+    }
+
+    @Test
+    public void testWindowKeepsMostRecentSamples() {
+        for (double value : new double[] {100, 1, 2, 3, 4}) {
+            hostMetrics.record("host1", HostMetrics.CPU_PERCENT, value);
+        }
+
+        Map<String, Double> host1 = hostMetrics.snapshot().get("host1");
+
+        assertEquals(host1.get(HostMetrics.average(HostMetrics.CPU_PERCENT)), 2.5, 0.001);
+        assertEquals(host1.get(HostMetrics.p95(HostMetrics.CPU_PERCENT)), 4.0, 0.001);
+    }
+
+    @Test
+    public void testRollupAcrossHosts() {
+        Map<String, Double> rollup = HostMetrics.rollup(ImmutableMap.<String, Map<String, Double>>of(
+                "host1", ImmutableMap.of(HostMetrics.average(HostMetrics.CPU_PERCENT), 10.0),
+                "host2", ImmutableMap.of(HostMetrics.average(HostMetrics.CPU_PERCENT), 30.0)));
+
+        assertEquals(rollup.get(HostMetrics.average(HostMetrics.CPU_PERCENT)), 20.0, 0.001);
+        assertEquals(rollup.get(HostMetrics.max(HostMetrics.CPU_PERCENT)), 30.0, 0.001);
+        assertNull(rollup.get(HostMetrics.average(HostMetrics.DISK_USED_PERCENT)));
+    }
+
+    private static final String JSON_WITH_TWO_HOSTS = "{\n" +
+            "  \"items\" : [\n" +
+            "    {\n" +
+            "      \"Hosts\" : { \"host_name\" : \"host1.example.com\" },\n" +
+            "      \"metrics\" : {\n" +
+            "        \"cpu\" : { \"cpu_user\" : 10.0, \"cpu_system\" : 5.0 },\n" +
+            "        \"memory\" : { \"mem_free\" : 1024, \"mem_total\" : 4096 },\n" +
+            "        \"disk\" : { \"disk_free\" : 50.0, \"disk_total\" : 100.0 },\n" +
+            "        \"network\" : { \"bytes_in\" : 1000.0, \"bytes_out\" : 500.0 }\n" +
+            "      }\n" +
+            "    },\n" +
+            "    {\n" +
+            "      \"Hosts\" : { \"host_name\" : \"host2.example.com\" },\n" +
+            "      \"metrics\" : {\n" +
+            "        \"memory\" : { \"mem_free\" : 2048, \"mem_total\" : 4096 }\n" +
+            "      }\n" +
+            "    }\n" +
+            "  ]\n" +
+            "}";
+}
@@ -0,0 +1,119 @@
+package org.apache.brooklyn.ambari.server;
+
+import brooklyn.util.time.Duration;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static org.testng.Assert.*;
+
+public class ReadinessGateTest {
+
+    private ReadinessGate readinessGate;
+    private int lastQueued;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        readinessGate = new ReadinessGate(new ReadinessGate.Listener() {
+            @Override
+            public void onQueuedChanged(int queued) {
+                lastQueued = queued;
+            }
+        });
+    }
+
+    @Test
+    public void testRequestWaitsForServiceUp() throws Exception {
+        CountingRequest request = new CountingRequest();
+
+        ListenableFuture<String> result = readinessGate.then(request, Duration.minutes(1));
+
+        assertEquals(request.calls, 0);
+        assertEquals(lastQueued, 1);
+
+        readinessGate.onServiceUp(true);
+
+        assertEquals(result.get(), "done");
+        assertEquals(request.calls, 1);
+        assertEquals(lastQueued, 0);
+    }
+
+    @Test
+    public void testOpeningGateCancelsTimeouts() throws Exception {
+        int pendingTimeouts = ReadinessGate.getPendingTimeouts();
+        readinessGate.then(new CountingRequest(), Duration.minutes(1));
+        readinessGate.then(new CountingRequest(), Duration.minutes(1));
+        assertEquals(ReadinessGate.getPendingTimeouts(), pendingTimeouts + 2);
+
+        readinessGate.onServiceUp(true);
+
+        assertEquals(ReadinessGate.getPendingTimeouts(), pendingTimeouts);
+    }
+
+    @Test
+    public void testRequestRunsStraightAwayWhenUp() throws Exception {
+        readinessGate.onServiceUp(true);
+
+        assertEquals(readinessGate.then(new CountingRequest(), Duration.minutes(1)).get(), "done");
+        readinessGate.await(Duration.millis(1));
+        assertEquals(readinessGate.getQueued(), 0);
+    }
+
+    @Test
+    public void testCancelFailsQueuedRequests() throws Exception {
+        ListenableFuture<String> result = readinessGate.then(new CountingRequest(), Duration.minutes(1));
+
+        readinessGate.cancel();
+
+        try {
+            result.get();
+            fail("Expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException, "cause=" + e.getCause());
+        }
+        assertEquals(lastQueued, 0);
+    }
+
+    @Test
+    public void testReopensAfterRestart() throws Exception {
+        readinessGate.onServiceUp(true);
+        readinessGate.cancel();
+        readinessGate.onServiceUp(false);
+        assertFalse(readinessGate.whenReady().isDone());
+
+        readinessGate.onServiceUp(true);
+
+        assertTrue(readinessGate.whenReady().isDone());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAwaitTimesOut() {
+        readinessGate.await(Duration.millis(10));
+    }
+
+    @Test
+    public void testThenTimesOut() throws Exception {
+        ListenableFuture<String> result = readinessGate.then(new CountingRequest(), Duration.millis(10));
+
+        try {
+            result.get();
+            fail("Expected timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException, "cause=" + e.getCause());
+        }
+    }
+
+    private static class CountingRequest implements Callable<ListenableFuture<String>> {
+        int calls;
+
+        @Override
+        public ListenableFuture<String> call() {
+            calls++;
+            return Futures.immediateFuture("done");
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.apache.brooklyn.ambari.server;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class RegisteredHostsTest {
+
+    private RegisteredHosts registeredHosts = new RegisteredHosts();
+
+    @Test
+    public void testFirstPollRegistersEveryHost() {
+        RegisteredHosts.Delta delta = registeredHosts.update(ImmutableList.of("host1", "host2"));
+
+        assertEquals(delta.registered, ImmutableSet.of("host1", "host2"));
+        assertTrue(delta.lost.isEmpty());
+    }
+
+    @Test
+    public void testUnchangedPollIsEmpty() {
+        registeredHosts.update(ImmutableList.of("host1", "host2"));
+
+        assertTrue(registeredHosts.update(ImmutableList.of("host2", "host1")).isEmpty());
+    }
+
+    @Test
+    public void testOnlyChangedHostsAreReported() {
+        registeredHosts.update(ImmutableList.of("host1", "host2"));
+
+        RegisteredHosts.Delta delta = registeredHosts.update(ImmutableList.of("host2", "host3"));
+
+        assertEquals(delta.registered, ImmutableSet.of("host3"));
+        assertEquals(delta.lost, ImmutableSet.of("host1"));
+        assertEquals(registeredHosts.size(), 2);
+    }
+}
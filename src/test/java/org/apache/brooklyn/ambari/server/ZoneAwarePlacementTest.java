@@ -0,0 +1,68 @@
+package org.apache.brooklyn.ambari.server;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public class ZoneAwarePlacementTest {
+
+    private static final Map<String, String> RACKS = ImmutableMap.<String, String>builder()
+            .put("a1", "/a").put("a2", "/a").put("a3", "/a")
+            .put("b1", "/b").put("b2", "/b").put("b3", "/b")
+            .put("c1", "/c").put("c2", "/c").put("c3", "/c")
+            .build();
+
+    @Test
+    public void testSpreadsMastersAcrossRacks() {
+        Map<String, List<String>> placed = ZoneAwarePlacement.place(ImmutableMap.<String, List<String>>of(
+                "host-group-1", ImmutableList.of("a1"),
+                "host-group-2", ImmutableList.of("a2"),
+                "host-group-3", ImmutableList.of("a3"),
+                "host-group-4", ImmutableList.of("b1", "b2", "b3", "c1", "c2", "c3")), RACKS);
+
+        Set<String> masterRacks = Sets.newHashSet();
+        for (String hostGroup : ImmutableList.of("host-group-1", "host-group-2", "host-group-3")) {
+            assertEquals(placed.get(hostGroup).size(), 1);
+            masterRacks.add(RACKS.get(placed.get(hostGroup).get(0)));
+        }
+        assertEquals(masterRacks.size(), 3);
+        assertEquals(placed.get("host-group-4").size(), 6);
+    }
+
+    @Test
+    public void testKeepsWorkerGroupsRackLocal() {
+        Map<String, List<String>> placed = ZoneAwarePlacement.place(ImmutableMap.<String, List<String>>of(
+                "host-group-1", ImmutableList.of("a1", "b1", "c1"),
+                "host-group-2", ImmutableList.of("a2", "b2", "c2"),
+                "host-group-3", ImmutableList.of("a3", "b3", "c3")), RACKS);
+
+        for (List<String> hosts : placed.values()) {
+            Set<String> racks = Sets.newHashSet();
+            for (String host : hosts) {
+                racks.add(RACKS.get(host));
+            }
+            assertEquals(racks.size(), 1, hosts.toString());
+        }
+    }
+
+    @Test
+    public void testPlacesEveryHostOnce() {
+        Map<String, List<String>> placed = ZoneAwarePlacement.place(ImmutableMap.<String, List<String>>of(
+                "host-group-1", ImmutableList.of("a1"),
+                "host-group-2", ImmutableList.of("a2", "unracked", "b1", "b2")), RACKS);
+
+        Set<String> hosts = Sets.newHashSet();
+        for (List<String> groupHosts : placed.values()) {
+            hosts.addAll(groupHosts);
+        }
+        assertEquals(hosts, Sets.newHashSet("a1", "a2", "unracked", "b1", "b2"));
+        assertEquals(placed.get("host-group-2").size(), 4);
+    }
+}
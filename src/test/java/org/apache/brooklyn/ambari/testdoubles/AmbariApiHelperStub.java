@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.ambari.testdoubles;
+
+import org.apache.brooklyn.ambari.rest.AmbariApiHelper;
+import org.apache.brooklyn.ambari.rest.DefaultAmbariBluePrint;
+import org.apache.brooklyn.ambari.rest.DefaultBluePrintClusterBinding;
+import org.apache.brooklyn.ambari.rest.HostsResponse;
+import org.apache.brooklyn.ambari.rest.RecommendationResponse;
+import org.apache.brooklyn.ambari.rest.RequestResponse;
+import org.apache.http.auth.UsernamePasswordCredentials;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+public class AmbariApiHelperStub implements AmbariApiHelper {
+    @Override
+    public void createClusterAPI(String cluster, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to create cluster");
+    }
+
+    @Override
+    public void addHostToCluster(String cluster, String host, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to add host to cluster");
+    }
+
+    @Override
+    public void addHostsToCluster(String cluster, List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to add hosts to cluster");
+    }
+
+    @Override
+    public void addServiceToCluster(String cluster, String service, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to add service to cluster");
+    }
+
+    @Override
+    public void createComponent(String cluster, String service, String component, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to create component");
+    }
+
+    @Override
+    public void createHostComponent(String cluster, String hostName, String component, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to create a host component");
+    }
+
+    @Override
+    public void createHostComponents(String cluster, List<String> hostNames, List<String> components, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to create host components");
+    }
+
+    @Override
+    public HostsResponse getHosts(List<String> hosts, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to get hosts");
+    }
+
+    @Override
+    public RecommendationResponse getRecommendations(List<String> hosts, Iterable<String> services, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to get recommendations");
+    }
+
+    @Override
+    public void createBlueprint(String blueprintName, DefaultAmbariBluePrint blueprint, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials) {
+        throw new RuntimeException("Should not have tried to create blueprint");
+    }
+
+    @Override
+    public RequestResponse createCluster(String clusterName, String blueprintName, DefaultBluePrintClusterBinding bluePrintClusterBinding, URI baseUri, UsernamePasswordCredentials usernamePasswordCredentials) {
+        throw new RuntimeException("Should not have tried to create cluster");
+    }
+
+    @Override
+    public RequestResponse addHostsToHostGroup(String cluster, String blueprintName, String hostGroup, List<String> hosts, Map<String, String> hostRacks, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to add hosts to host group");
+    }
+
+    @Override
+    public RequestResponse getRequest(String cluster, int requestId, UsernamePasswordCredentials usernamePasswordCredentials, URI baseUri) {
+        throw new RuntimeException("Should not have tried to get request");
+    }
+}
@@ -30,6 +30,7 @@ import brooklyn.policy.EnricherSpec;
 import brooklyn.policy.Policy;
 import brooklyn.policy.PolicySpec;
 import brooklyn.util.guava.Maybe;
+import brooklyn.util.time.Duration;
 import org.apache.brooklyn.ambari.server.AmbariServer;
 
 import javax.annotation.Nullable;
@@ -57,6 +58,11 @@ public class AmbariServerStub implements AmbariServer {
         throw new RuntimeException("Should not have tried to add host to cluster");
     }
 
+    @Override
+    public void addHostsToCluster(@EffectorParam(name = "Cluster name") String cluster, @EffectorParam(name = "Hosts") List<String> hosts) {
+        throw new RuntimeException("Should not have tried to add hosts to cluster");
+    }
+
     @Override
     public void addServiceToCluster(@EffectorParam(name = "Cluster name") String cluster, @EffectorParam(name = "Service") String service) {
         throw new RuntimeException("Should not have tried to add host to cluster");
@@ -73,7 +79,22 @@ public class AmbariServerStub implements AmbariServer {
     }
 
     @Override
-    public void installHDP(String clusterName, String blueprintName, List<String> hosts, List<String> services) {
+    public void createHostComponents(@EffectorParam(name = "Cluster name") String cluster, @EffectorParam(name = "Host components") Map<String, List<String>> hostComponents) {
+        throw new RuntimeException("Should not have tried to create host components");
+    }
+
+    @Override
+    public void addHostsToHostGroup(@EffectorParam(name = "Cluster name") String cluster, @EffectorParam(name = "Blueprint name") String blueprintName, @EffectorParam(name = "Host group") String hostGroup, @EffectorParam(name = "Hosts") List<String> hosts, @EffectorParam(name = "Host racks") Map<String, String> hostRacks) {
+        throw new RuntimeException("Should not have tried to add hosts to host group");
+    }
+
+    @Override
+    public String waitForRequest(@EffectorParam(name = "Cluster name") String cluster, @EffectorParam(name = "Request id") Integer requestId, @EffectorParam(name = "Timeout") Duration timeout) {
+        throw new RuntimeException("Should not have tried to wait for a request");
+    }
+
+    @Override
+    public Integer installHDP(String clusterName, String blueprintName, List<String> hosts, List<String> services, Map<String, String> hostRacks) {
         throw new RuntimeException("Should not have tried to create cluster");
     }
 